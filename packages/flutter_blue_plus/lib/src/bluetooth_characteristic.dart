@@ -65,6 +65,9 @@ class BluetoothCharacteristic {
   @override
   int get hashCode => Object.hash(remoteId, primaryServiceUuid, serviceUuid, characteristicUuid, instanceId);
 
+  // see: FlutterBluePlus._bleAttributeMutexKey
+  String get _mutexKey => "${primaryServiceUuid ?? ""}:$serviceUuid:$characteristicUuid:$instanceId";
+
   /// this variable is updated:
   ///   - anytime `read()` is called
   ///   - anytime `write()` is called
@@ -105,6 +108,20 @@ class BluetoothCharacteristic {
       .where((p) => p.success == true)
       .map((c) => c.value);
 
+  /// Android only. The values received on the dedicated stream
+  /// opened by `setNotifyValue(true, androidStream: true)`, with their arrival time.
+  ///   - values on this stream are not sent to [onValueReceived] & [lastValueStream],
+  ///     while it has a listener
+  ///   - the stream ends when notifications are disabled, on disconnection, or when services are rediscovered
+  Stream<NotifyValue> get androidNotifyStream {
+    String key = "${primaryServiceUuid ?? ""}:$serviceUuid:$characteristicUuid:$instanceId";
+    int? handle = FlutterBluePlus._notifyStreams[remoteId]?[key];
+    if (handle == null) {
+      return Stream.empty();
+    }
+    return FlutterBluePlusPlatform.instance.notifyStream(handle).map((v) => NotifyValue._(v));
+  }
+
   /// return true if we're subscribed to this characteristic
   ///   -  you can subscribe using setNotifyValue(true)
   bool get isNotifying {
@@ -128,7 +145,7 @@ class BluetoothCharacteristic {
     }
 
     // Only allow a single BLE operation to be underway per device.
-    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleOperationMutexKey(remoteId));
+    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleAttributeMutexKey(remoteId, _mutexKey));
     await mtx.take();
 
     // return value
@@ -200,7 +217,7 @@ class BluetoothCharacteristic {
     }
 
     // Only allow a single BLE operation to be underway per device.
-    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleOperationMutexKey(remoteId));
+    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleAttributeMutexKey(remoteId, _mutexKey));
     await mtx.take();
 
     try {
@@ -249,11 +266,101 @@ class BluetoothCharacteristic {
     }
   }
 
+  /// Writes a large value (OTA, log uploads, ...) without response, as fast as the
+  /// connection allows. It is split into chunks natively, sized to the current mtu,
+  /// and paced by android's write buffer, instead of a [write] call per chunk.
+  ///  - [onProgress]: called about every 100ms
+  ///  - [timeout]: seconds without progress
+  /// Returns the final progress, i.e. the achieved throughput.
+  /// Android only. The characteristic must support write without response.
+  Future<BulkWriteProgress> writeBulk(List<int> value,
+      {void Function(BulkWriteProgress progress)? onProgress, int timeout = 15}) async {
+    // check android
+    if (kIsWeb || !Platform.isAndroid) {
+      throw FlutterBluePlusException(ErrorPlatform.fbp, "writeBulk", FbpErrorCode.androidOnly.index, "android-only");
+    }
+
+    // check connected
+    if (device.isDisconnected) {
+      throw FlutterBluePlusException(
+          ErrorPlatform.fbp, "writeBulk", FbpErrorCode.deviceIsDisconnected.index, "device is not connected");
+    }
+
+    // Only allow a single BLE operation to be underway per device.
+    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleAttributeMutexKey(remoteId, _mutexKey));
+    await mtx.take();
+
+    try {
+      var request = BmWriteBulkRequest(
+        remoteId: remoteId,
+        primaryServiceUuid: primaryServiceUuid,
+        serviceUuid: serviceUuid,
+        characteristicUuid: characteristicUuid,
+        instanceId: instanceId,
+        value: value,
+      );
+
+      var responseStream = FlutterBluePlusPlatform.instance.onBulkWriteProgress
+          .where((p) => p.remoteId == request.remoteId)
+          .where((p) => p.primaryServiceUuid == request.primaryServiceUuid)
+          .where((p) => p.serviceUuid == request.serviceUuid)
+          .where((p) => p.characteristicUuid == request.characteristicUuid)
+          .where((p) => p.instanceId == request.instanceId);
+
+      // Start listening now, before invokeMethod, to ensure we don't miss the response.
+      // The timeout restarts with each progress
+      Future<BmBulkWriteProgress> futureResponse = responseStream.timeout(Duration(seconds: timeout),
+          onTimeout: (sink) {
+        sink.addError(FlutterBluePlusException(
+            ErrorPlatform.fbp, "writeBulk", FbpErrorCode.timeout.index, "Timed out after ${timeout}s without progress"));
+      }).firstWhere((p) {
+        if (!p.done && onProgress != null) {
+          onProgress(BulkWriteProgress._(p));
+        }
+        return p.done;
+      });
+
+      // invoke
+      await FlutterBluePlus._invokePlatform(() => FlutterBluePlusPlatform.instance.writeBulk(request));
+
+      // wait for the last chunk. On timeout or error, stop writing natively,
+      // so the next operation does not wait for a write nobody waits for
+      BmBulkWriteProgress response;
+      try {
+        response = await futureResponse
+            .fbpEnsureAdapterIsOn("writeBulk")
+            .fbpEnsureDeviceIsConnected(device, "writeBulk");
+      } catch (e) {
+        var cancel = BmCancelBulkWriteRequest(
+          remoteId: remoteId,
+          primaryServiceUuid: primaryServiceUuid,
+          serviceUuid: serviceUuid,
+          characteristicUuid: characteristicUuid,
+          instanceId: instanceId,
+        );
+        await FlutterBluePlusPlatform.instance.cancelBulkWrite(cancel).catchError((_) => false);
+        rethrow;
+      }
+
+      // failed?
+      if (!response.success) {
+        throw FlutterBluePlusException(_nativeError, "writeBulk", response.errorCode, response.errorString);
+      }
+
+      return BulkWriteProgress._(response);
+    } finally {
+      mtx.give();
+    }
+  }
+
   /// Sets notifications or indications for the characteristic.
   ///   - If a characteristic supports both notifications and indications,
   ///     we use notifications. This is a limitation of CoreBluetooth on iOS.
   ///   - [forceIndications] Android Only. force indications to be used instead of notifications.
-  Future<bool> setNotifyValue(bool notify, {int timeout = 15, bool forceIndications = false}) async {
+  ///   - [androidStream] Android Only. deliver the values on a dedicated stream, as raw bytes
+  ///     & a timestamp, instead of the shared method channel. see: [androidNotifyStream]
+  Future<bool> setNotifyValue(bool notify,
+      {int timeout = 15, bool forceIndications = false, bool androidStream = false}) async {
     // check connected
     if (device.isDisconnected) {
       throw FlutterBluePlusException(
@@ -263,10 +370,11 @@ class BluetoothCharacteristic {
     // check
     if (!kIsWeb && !Platform.isAndroid) {
       assert(forceIndications == false, "Only Android supports forcing indications");
+      assert(androidStream == false, "Only Android supports notify streams");
     }
 
     // Only allow a single BLE operation to be underway per device.
-    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleOperationMutexKey(remoteId));
+    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleAttributeMutexKey(remoteId, "$_mutexKey:$cccdUuid"));
     await mtx.take();
 
     try {
@@ -294,8 +402,23 @@ class BluetoothCharacteristic {
       Future<BmDescriptorData> futureResponse = responseStream.first;
 
       // invoke
-      bool hasCCCD =
-          await FlutterBluePlus._invokePlatform(() => FlutterBluePlusPlatform.instance.setNotifyValue(request));
+      bool hasCCCD;
+      String key = "${primaryServiceUuid ?? ""}:$serviceUuid:$characteristicUuid:$instanceId";
+      if (notify && androidStream) {
+        BmNotifyStream stream =
+            await FlutterBluePlus._invokePlatform(() => FlutterBluePlusPlatform.instance.setNotifyValueStream(request));
+        hasCCCD = stream.hasCccd;
+        if (stream.handle != null) {
+          FlutterBluePlus._notifyStreams[remoteId] ??= {};
+          FlutterBluePlus._notifyStreams[remoteId]![key] = stream.handle!;
+        }
+      } else {
+        hasCCCD =
+            await FlutterBluePlus._invokePlatform(() => FlutterBluePlusPlatform.instance.setNotifyValue(request));
+        if (notify == false) {
+          FlutterBluePlus._notifyStreams[remoteId]?.remove(key);
+        }
+      }
 
       // wait for CCCD descriptor to be written?
       if (hasCCCD) {
@@ -306,6 +429,9 @@ class BluetoothCharacteristic {
 
         // failed?
         if (!response.success) {
+          if (notify && androidStream) {
+            FlutterBluePlus._notifyStreams[remoteId]?.remove(key); // ended natively
+          }
           throw FlutterBluePlusException(_nativeError, "setNotifyValue", response.errorCode, response.errorString);
         }
       }
@@ -392,3 +518,46 @@ class CharacteristicProperties {
         '}';
   }
 }
+
+/// a value received on [BluetoothCharacteristic.androidNotifyStream]
+class NotifyValue {
+  final BmNotifyValue _bm;
+
+  NotifyValue._(this._bm);
+
+  List<int> get value => _bm.value;
+
+  /// when android received the value
+  DateTime get timestamp => DateTime.fromMicrosecondsSinceEpoch(_bm.timestamp);
+
+  @override
+  String toString() {
+    return 'NotifyValue{'
+        'timestamp: $timestamp, '
+        'value: $value'
+        '}';
+  }
+}
+
+/// see: [BluetoothCharacteristic.writeBulk]
+class BulkWriteProgress {
+  final BmBulkWriteProgress _bm;
+
+  BulkWriteProgress._(this._bm);
+
+  int get bytesWritten => _bm.bytesWritten;
+
+  int get totalBytes => _bm.totalBytes;
+
+  /// average, since the write started
+  double get bytesPerSecond => _bm.bytesPerSecond;
+
+  @override
+  String toString() {
+    return 'BulkWriteProgress{'
+        'bytesWritten: $bytesWritten, '
+        'totalBytes: $totalBytes, '
+        'bytesPerSecond: $bytesPerSecond'
+        '}';
+  }
+}
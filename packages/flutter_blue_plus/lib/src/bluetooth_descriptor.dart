@@ -55,6 +55,9 @@ class BluetoothDescriptor {
         descriptorUuid,
       );
 
+  // see: FlutterBluePlus._bleAttributeMutexKey
+  String get _mutexKey => "${primaryServiceUuid ?? ""}:$serviceUuid:$characteristicUuid:$instanceId:$descriptorUuid";
+
   /// this variable is updated:
   ///   - anytime `read()` is called
   ///   - anytime `write()` is called
@@ -101,7 +104,7 @@ class BluetoothDescriptor {
     }
 
     // Only allow a single BLE operation to be underway per device.
-    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleOperationMutexKey(remoteId));
+    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleAttributeMutexKey(remoteId, _mutexKey));
     await mtx.take();
 
     // return value
@@ -159,7 +162,7 @@ class BluetoothDescriptor {
     }
 
     // Only allow a single BLE operation to be underway per device.
-    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleOperationMutexKey(remoteId));
+    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleAttributeMutexKey(remoteId, _mutexKey));
     await mtx.take();
 
     try {
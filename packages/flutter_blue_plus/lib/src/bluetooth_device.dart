@@ -315,6 +315,111 @@ class BluetoothDevice {
     return result;
   }
 
+  /// Reads many characteristics of this device at once, e.g. a device info block.
+  /// On Android, the reads are sent in one call & run back-to-back natively,
+  /// and all values come back together. Elsewhere, they are read one by one.
+  ///   - Returns a result per characteristic, in the same order. A failed read
+  ///     does not stop the others, check [CharacteristicReadResult.error]
+  ///   - [timeout] for all the reads
+  ///   - On Android, [BluetoothCharacteristic.lastValue] is updated, but the values
+  ///     are not emitted on `onValueReceived` or `lastValueStream`
+  Future<List<CharacteristicReadResult>> readCharacteristics(List<BluetoothCharacteristic> characteristics,
+      {int timeout = 15}) async {
+    assert(characteristics.every((c) => c.remoteId == remoteId), "characteristics must be of this device");
+
+    // check connected
+    if (isDisconnected) {
+      throw FlutterBluePlusException(
+          ErrorPlatform.fbp, "readCharacteristics", FbpErrorCode.deviceIsDisconnected.index, "device is not connected");
+    }
+
+    // one by one
+    if (kIsWeb || !Platform.isAndroid) {
+      List<CharacteristicReadResult> results = [];
+      for (final c in characteristics) {
+        try {
+          results.add(CharacteristicReadResult._(c, await c.read(timeout: timeout), null));
+        } on FlutterBluePlusException catch (e) {
+          results.add(CharacteristicReadResult._(c, [], e));
+        }
+      }
+      return results;
+    }
+
+    // Only allow a single BLE operation to be underway per device.
+    _Mutex mtx = _MutexFactory.getMutexForKey(FlutterBluePlus._bleOperationMutexKey(remoteId));
+    await mtx.take();
+
+    try {
+      // a result that arrives after a timeout must not answer the next request
+      int requestId = ++FlutterBluePlus._readCharacteristicsId;
+
+      var request = BmReadCharacteristicsRequest(
+        remoteId: remoteId,
+        requestId: requestId,
+        characteristics: characteristics
+            .map((c) => BmReadCharacteristicRequest(
+                  remoteId: remoteId,
+                  primaryServiceUuid: c.primaryServiceUuid,
+                  serviceUuid: c.serviceUuid,
+                  characteristicUuid: c.characteristicUuid,
+                  instanceId: c.instanceId,
+                ))
+            .toList(),
+      );
+
+      var responseStream = FlutterBluePlusPlatform.instance.onCharacteristicsRead
+          .where((p) => p.remoteId == remoteId)
+          .where((p) => p.requestId == requestId);
+
+      // Start listening now, before invokeMethod, to ensure we don't miss the response
+      Future<BmReadCharacteristicsResult> futureResponse = responseStream.first;
+
+      // invoke
+      await FlutterBluePlus._invokePlatform(() => FlutterBluePlusPlatform.instance.readCharacteristics(request));
+
+      // wait for response
+      BmReadCharacteristicsResult response = await futureResponse
+          .fbpEnsureAdapterIsOn("readCharacteristics")
+          .fbpEnsureDeviceIsConnected(this, "readCharacteristics")
+          .fbpTimeout(timeout, "readCharacteristics");
+
+      // in request order
+      List<CharacteristicReadResult> results = [];
+      for (int i = 0; i < characteristics.length; i++) {
+        final c = characteristics[i];
+        final v = i < response.values.length ? response.values[i] : null;
+
+        // check identity
+        if (v == null ||
+            v.primaryServiceUuid != c.primaryServiceUuid ||
+            v.serviceUuid != c.serviceUuid ||
+            v.characteristicUuid != c.characteristicUuid ||
+            v.instanceId != c.instanceId) {
+          results.add(CharacteristicReadResult._(c, [],
+              FlutterBluePlusException(ErrorPlatform.fbp, "readCharacteristics",
+                  FbpErrorCode.characteristicNotFound.index, "no value for characteristic")));
+          continue;
+        }
+
+        // update lastValue. The values are not emitted on onValueReceived, so that
+        // a concurrent read() of the same characteristic cannot resolve with them
+        if (v.success) {
+          String key = "${c.primaryServiceUuid ?? ""}:${c.serviceUuid}:${c.characteristicUuid}:${c.instanceId}";
+          FlutterBluePlus._lastChrs[remoteId] ??= {};
+          FlutterBluePlus._lastChrs[remoteId]![key] = v.value;
+        }
+        final error = v.success
+            ? null
+            : FlutterBluePlusException(_nativeError, "readCharacteristics", v.errorCode, v.errorString);
+        results.add(CharacteristicReadResult._(c, v.value, error));
+      }
+      return results;
+    } finally {
+      mtx.give();
+    }
+  }
+
   /// The most recent disconnection reason
   DisconnectReason? get disconnectReason {
     if (FlutterBluePlus._connectionStates[remoteId] == null) {
@@ -738,6 +843,30 @@ class BluetoothDevice {
   BluetoothDevice.fromProto(BmBluetoothDevice p) : remoteId = p.remoteId;
 }
 
+/// see: [BluetoothDevice.readCharacteristics]
+class CharacteristicReadResult {
+  final BluetoothCharacteristic characteristic;
+
+  /// empty if the read failed
+  final List<int> value;
+
+  /// null if the read succeeded
+  final FlutterBluePlusException? error;
+
+  CharacteristicReadResult._(this.characteristic, this.value, this.error);
+
+  bool get success => error == null;
+
+  @override
+  String toString() {
+    return 'CharacteristicReadResult{'
+        'characteristic: ${characteristic.uuid}, '
+        'value: $value, '
+        'error: $error'
+        '}';
+  }
+}
+
 /// License type for using FlutterBluePlus.
 /// See the LICENSE file in the root of the project for full terms.
 enum License {
@@ -20,6 +20,8 @@ class FlutterBluePlus {
   static final Map<DeviceIdentifier, String> _advNames = {};
   static final Map<DeviceIdentifier, Map<String, List<int>>> _lastChrs = {};
   static final Map<DeviceIdentifier, Map<String, List<int>>> _lastDescs = {};
+  static final Map<DeviceIdentifier, Map<String, int>> _notifyStreams = {};
+  static int _readCharacteristicsId = 0;
   static final Map<DeviceIdentifier, List<StreamSubscription>> _deviceSubscriptions = {};
   static final Map<DeviceIdentifier, List<StreamSubscription>> _delayedSubscriptions = {};
   static final Map<DeviceIdentifier, DateTime> _connectTimestamp = {};
@@ -111,6 +113,9 @@ class FlutterBluePlus {
   ///   only one BLE operation at a time across the whole app.
   /// - [OperationQueueMode.perDevice] allows operations for different devices
   ///   to proceed concurrently, while still serializing operations per device.
+  /// - [OperationQueueMode.perAttribute] also allows operations on different
+  ///   characteristics & descriptors of the same device to be sent together.
+  ///   Android queues them natively. Other platforms behave like perDevice.
   ///
   /// We recommend [OperationQueueMode.perDevice] for new apps.
   /// [OperationQueueMode.global] remains the default for backward
@@ -141,21 +146,36 @@ class FlutterBluePlus {
   ///   - [restoreState] Whether to opt into state restoration (iOS & MacOS only). i.e. CBCentralManagerOptionRestoreIdentifierKey
   ///       Defaults to `false` unless explicity set. To set this option you must call this method first before any other in this package.
   ///       See Apple Documentation for more details. This option has no effect on Android.
+  ///   - [androidBinaryChannel] Android only. Characteristic writes & notifications use a raw
+  ///       binary channel, with small integer handles instead of uuid maps. Faster for
+  ///       high rate or large payloads, e.g. firmware updates & sensor logging. Defaults to `false`.
   ///   - Any option left `null` keeps its existing value.
   static Future<void> setOptions({
     bool? showPowerAlert,
     bool? restoreState,
+    bool? androidBinaryChannel,
   }) async {
-    await _invokePlatform(() => FlutterBluePlusPlatform.instance
-        .setOptions(BmSetOptionsRequest(showPowerAlert: showPowerAlert, restoreState: restoreState)));
+    await _invokePlatform(() => FlutterBluePlusPlatform.instance.setOptions(BmSetOptionsRequest(
+        showPowerAlert: showPowerAlert, restoreState: restoreState, androidBinaryChannel: androidBinaryChannel)));
   }
 
   static String _bleOperationMutexKey(DeviceIdentifier remoteId) {
-    return _operationQueueMode == OperationQueueMode.perDevice ? "device:$remoteId" : "global";
+    return _operationQueueMode != OperationQueueMode.global ? "device:$remoteId" : "global";
+  }
+
+  /// operations on a characteristic or descriptor. In perAttribute mode, different
+  /// attributes are not serialized here: android queues them natively, and starts
+  /// each one from the completion of the previous, without a round-trip to dart.
+  /// The same attribute is still serialized, as responses are matched by attribute.
+  static String _bleAttributeMutexKey(DeviceIdentifier remoteId, String attribute) {
+    if (_operationQueueMode == OperationQueueMode.perAttribute && !kIsWeb && Platform.isAndroid) {
+      return "device:$remoteId:$attribute";
+    }
+    return _bleOperationMutexKey(remoteId);
   }
 
   static String _disconnectMutexKey(DeviceIdentifier remoteId) {
-    return _operationQueueMode == OperationQueueMode.perDevice ? "disconnect:$remoteId" : "disconnect";
+    return _operationQueueMode != OperationQueueMode.global ? "disconnect:$remoteId" : "disconnect";
   }
 
   static bool _hasOperationMutexesForMode(OperationQueueMode mode) {
@@ -263,6 +283,50 @@ class FlutterBluePlus {
   ///        dependent on the your Bluetooth stack implementation.
   ///   - [androidScanMode] choose the android scan mode to use when scanning
   ///   - [androidUsesFineLocation] request `ACCESS_FINE_LOCATION` permission at runtime
+  ///   - [androidReportDelay] Android only. If non-zero, the bluetooth controller buffers advertisements
+  ///        and delivers them together in a single batch every X duration. This greatly reduces cpu wakeups
+  ///        & platform channel traffic when many devices are nearby. If the controller does not support
+  ///        offloaded scan batching, advertisements are coalesced natively instead (see [androidCoalesceWindow]).
+  ///   - [androidCoalesceWindow] Android only. If non-zero, advertisements are collected natively for X duration
+  ///        and sent to dart together. Only the latest advertisement of each device is kept within the window.
+  ///   - [androidCoalesceMaxSize] Android only. Send the coalesced advertisements early, once this many
+  ///        devices are pending. Only matters when [androidCoalesceWindow] is non-zero.
+  ///   - [androidScanStateCapacity] Android only. The maximum number of devices remembered natively for
+  ///        duplicate filtering & [continuousDivisor]. When full, the least recently seen device is forgotten.
+  ///        This keeps memory flat during long scans near phones that rotate their random address.
+  ///   - [androidScanStateTtl] Android only. If non-zero, forget devices that have not been seen for X duration.
+  ///   - [androidBinaryScan] Android only. Send scan results to dart as one packed binary message per batch,
+  ///        instead of a map per advertisement. Reduces cpu usage & message size when scanning many devices.
+  ///   - [androidKeywordsIgnoreCase] Android only. Match [withKeywords] ignoring ascii case.
+  ///   - [androidMaxHwFilters] Android only. The number of filters the bluetooth controller can hold. If there
+  ///        are more filters, they are loosened to fit (e.g. msd filters by manufacturer id only), and matched
+  ///        exactly by fbp instead. Some phones fail to scan with too many filters. 0 = no limit.
+  ///        Remote ids cannot be loosened: if they do not fit, the scan has no hardware filters at all,
+  ///        and a warning is logged.
+  ///   - [androidRssiDelta] Android only. Only matters for `continuousUpdates` mode. If non-zero, a device's
+  ///        advertisement is only returned when its payload changes, or when its rssi moved by at least
+  ///        this many dB since it was last returned. Replaces [continuousDivisor].
+  ///   - [androidHeartbeat] Android only. Only matters for `continuousUpdates` mode. If non-zero, a device's
+  ///        advertisement is only returned when its payload changes, or at least once per X duration.
+  ///        Can be combined with [androidRssiDelta]. Replaces [continuousDivisor].
+  ///   - [androidRateLimit] Android only. Only matters for `continuousUpdates` mode. If non-zero, return at most
+  ///        one advertisement per X duration per device, e.g. 500ms for 2 Hz, regardless of how often each
+  ///        device advertises. Replaces [continuousDivisor]. Can be combined with [androidRssiDelta] & [androidHeartbeat].
+  ///   - [androidRateLimitBurst] Android only. How many updates a quiet device may send back-to-back
+  ///        before [androidRateLimit] applies.
+  ///   - [androidDeviceTable] Android only. Aggregate every advertisement natively, per device (latest advertisement,
+  ///        first & last seen, packet count, rssi min/max/avg), so you can poll [getScanDevices] instead of
+  ///        processing [scanResults]. Holds at most [androidScanStateCapacity] devices.
+  ///   - [androidTracePath] Android only. Record every raw scan result, before filtering, to this file
+  ///        (replaced if it exists) until the scan stops. For debugging scan load: the trace can be replayed
+  ///        through fbp's scan processing in a JVM unit test, see `ScanTraceReplayTest.java`.
+  ///   - [androidPeriodicOnly] Android only. Only return devices that advertise a periodic advertising train,
+  ///        see [AdvertisementData.androidPeriodicInterval]. Requires `androidLegacy: false` & Android 8.0.
+  ///   - [androidBeacons] Android only. Decode iBeacon, AltBeacon & Eddystone (UID, URL, TLM) frames natively,
+  ///        see [AdvertisementData.androidBeacon]. Not available with androidBinaryScan.
+  ///   - [androidBeaconCompact] Android only. Omit the raw manufacturer or service data a beacon was decoded from.
+  ///   - [androidWithBeacons] Android only. Only return beacons matching any of these filters, on their decoded
+  ///        fields (e.g. `BeaconFilter(major: 12)`). Applied in addition to the other filters.
   ///   - [webOptionalServices] the [optional services](https://developer.mozilla.org/en-US/docs/Web/API/Bluetooth/requestDevice#optionalservices)
   ///     for the web target. Required to [access device services](https://webbluetoothcg.github.io/web-bluetooth/#dom-requestdeviceoptions-optionalservices)
   ///     when scanning without [withServices] parameter.
@@ -282,12 +346,35 @@ class FlutterBluePlus {
     AndroidScanMode androidScanMode = AndroidScanMode.lowLatency,
     bool androidUsesFineLocation = false,
     bool androidCheckLocationServices = true,
+    Duration androidReportDelay = Duration.zero,
+    Duration androidCoalesceWindow = Duration.zero,
+    int androidCoalesceMaxSize = 100,
+    int androidScanStateCapacity = 2048,
+    Duration androidScanStateTtl = Duration.zero,
+    bool androidBinaryScan = false,
+    bool androidKeywordsIgnoreCase = false,
+    int androidMaxHwFilters = 0,
+    int androidRssiDelta = 0,
+    Duration androidHeartbeat = Duration.zero,
+    Duration androidRateLimit = Duration.zero,
+    int androidRateLimitBurst = 1,
+    bool androidDeviceTable = false,
+    String? androidTracePath,
+    bool androidPeriodicOnly = false,
+    bool androidBeacons = false,
+    bool androidBeaconCompact = false,
+    List<BeaconFilter> androidWithBeacons = const [],
     List<Guid> webOptionalServices = const [],
   }) async {
     // check args
     assert(removeIfGone == null || continuousUpdates, "removeIfGone requires continuousUpdates");
     assert(removeIfGone == null || !oneByOne, "removeIfGone is not compatible with oneByOne");
     assert(continuousDivisor >= 1, "divisor must be >= 1");
+    assert(androidCoalesceMaxSize >= 1, "androidCoalesceMaxSize must be >= 1");
+    assert(androidScanStateCapacity >= 1, "androidScanStateCapacity must be >= 1");
+    assert(androidRssiDelta >= 0, "androidRssiDelta must be >= 0");
+    assert(androidRateLimitBurst >= 1, "androidRateLimitBurst must be >= 1");
+    assert(!androidPeriodicOnly || !androidLegacy, "androidPeriodicOnly requires androidLegacy false");
 
     // check filters
     bool hasOtherFilter = withServices.isNotEmpty ||
@@ -329,6 +416,24 @@ class FlutterBluePlus {
           androidScanMode: androidScanMode.value,
           androidUsesFineLocation: androidUsesFineLocation,
           androidCheckLocationServices: androidCheckLocationServices,
+          androidReportDelay: androidReportDelay.inMilliseconds,
+          androidCoalesceWindow: androidCoalesceWindow.inMilliseconds,
+          androidCoalesceMaxSize: androidCoalesceMaxSize,
+          androidScanStateCapacity: androidScanStateCapacity,
+          androidScanStateTtl: androidScanStateTtl.inMilliseconds,
+          androidBinaryScan: androidBinaryScan,
+          androidKeywordsIgnoreCase: androidKeywordsIgnoreCase,
+          androidMaxHwFilters: androidMaxHwFilters,
+          androidRssiDelta: androidRssiDelta,
+          androidHeartbeat: androidHeartbeat.inMilliseconds,
+          androidRateLimitInterval: androidRateLimit.inMilliseconds,
+          androidRateLimitBurst: androidRateLimitBurst,
+          androidDeviceTable: androidDeviceTable,
+          androidTracePath: androidTracePath,
+          androidPeriodicOnly: androidPeriodicOnly,
+          androidBeacons: androidBeacons,
+          androidBeaconCompact: androidBeaconCompact,
+          androidWithBeacons: androidWithBeacons.map((d) => d._bm).toList(),
           webOptionalServices: webOptionalServices);
 
       Stream<BmScanResponse> responseStream = FlutterBluePlusPlatform.instance.onScanResponse;
@@ -463,6 +568,134 @@ class FlutterBluePlus {
     return await _invokePlatform(() => FlutterBluePlusPlatform.instance.getPhySupport(PhySupportRequest()));
   }
 
+  /// The devices seen by the current (or last) scan, see `androidDeviceTable` in [startScan] (Android only)
+  ///   - [since] the [ScanDevices.version] of your previous call. Only the devices that changed since then,
+  ///        and the devices removed since then, are returned. If 0, or if the table was cleared by a new scan,
+  ///        the whole table is returned and [ScanDevices.isFull] is true.
+  static Future<ScanDevices> getScanDevices({int since = 0}) async {
+    // check android
+    if (kIsWeb || !Platform.isAndroid) {
+      throw FlutterBluePlusException(
+          ErrorPlatform.fbp, "getScanDevices", FbpErrorCode.androidOnly.index, "android-only");
+    }
+
+    var response = await _invokePlatform(
+        () => FlutterBluePlusPlatform.instance.getScanDevices(BmScanDevicesRequest(since: since)));
+
+    return ScanDevices.fromProto(response);
+  }
+
+  /// Start a background scan (Android only)
+  /// Unlike [startScan], results are delivered to the app by the system, even when the app is in the
+  /// background, cached, or was killed. The scan keeps running until [stopBackgroundScan] is called,
+  /// or the phone restarts. Results are buffered natively and delivered via [onBackgroundScanResults].
+  ///   - Filters are the same as [startScan], except `withKeywords`, which is not supported.
+  ///     Android requires at least one filter to scan while the screen is off.
+  ///   - [androidReportDelay] the bluetooth controller buffers advertisements and wakes the app once
+  ///        every X duration. Larger values save power. Requires offloaded scan batching.
+  ///   - [androidScanMode] typically [AndroidScanMode.lowPower] for background scans
+  ///   - requires Android 8.0 or newer
+  static Future<void> startBackgroundScan({
+    List<Guid> withServices = const [],
+    List<String> withRemoteIds = const [],
+    List<String> withNames = const [],
+    List<MsdFilter> withMsd = const [],
+    List<ServiceDataFilter> withServiceData = const [],
+    bool androidLegacy = false,
+    AndroidScanMode androidScanMode = AndroidScanMode.lowPower,
+    bool androidUsesFineLocation = false,
+    bool androidCheckLocationServices = true,
+    Duration androidReportDelay = const Duration(seconds: 10),
+  }) async {
+    // check android
+    if (kIsWeb || !Platform.isAndroid) {
+      throw FlutterBluePlusException(
+          ErrorPlatform.fbp, "startBackgroundScan", FbpErrorCode.androidOnly.index, "android-only");
+    }
+
+    var settings = BmScanSettings(
+        withServices: withServices,
+        withRemoteIds: withRemoteIds,
+        withNames: withNames,
+        withKeywords: [],
+        withMsd: withMsd.map((d) => d._bm).toList(),
+        withServiceData: withServiceData.map((d) => d._bm).toList(),
+        continuousUpdates: false,
+        continuousDivisor: 1,
+        androidLegacy: androidLegacy,
+        androidScanMode: androidScanMode.value,
+        androidUsesFineLocation: androidUsesFineLocation,
+        androidCheckLocationServices: androidCheckLocationServices,
+        androidReportDelay: androidReportDelay.inMilliseconds,
+        webOptionalServices: []);
+
+    await _invokePlatform(() => FlutterBluePlusPlatform.instance.startBackgroundScan(settings));
+  }
+
+  /// Stop a background scan (Android only)
+  static Future<void> stopBackgroundScan() async {
+    // check android
+    if (kIsWeb || !Platform.isAndroid) {
+      throw FlutterBluePlusException(
+          ErrorPlatform.fbp, "stopBackgroundScan", FbpErrorCode.androidOnly.index, "android-only");
+    }
+
+    await _invokePlatform(() => FlutterBluePlusPlatform.instance.stopBackgroundScan(BmStopScanRequest()));
+  }
+
+  /// Background scan results, see [startBackgroundScan] (Android only)
+  /// - results received while nobody was listening (e.g. while the app was killed) are
+  ///   delivered when you listen, with their original [ScanResult.timeStamp]
+  /// - each event is a batch of advertisements, possibly including duplicates
+  static Stream<List<ScanResult>> get onBackgroundScanResults {
+    if (kIsWeb || !Platform.isAndroid) {
+      return Stream.empty();
+    }
+
+    StreamSubscription<BmScanResponse>? subscription;
+    late StreamController<List<ScanResult>> controller;
+    controller = StreamController<List<ScanResult>>(
+      onListen: () {
+        subscription = FlutterBluePlusPlatform.instance.onBackgroundScanResponse.listen((response) {
+          // failure?
+          if (response.success == false) {
+            controller.addError(
+                FlutterBluePlusException(_nativeError, "backgroundScan", response.errorCode, response.errorString));
+          }
+
+          List<ScanResult> results = [];
+          for (BmScanAdvertisement bm in response.advertisements) {
+            // cache platform name
+            if (bm.platformName != null) {
+              _platformNames[bm.remoteId] = bm.platformName!;
+            }
+
+            // cache advertised name
+            if (bm.advName != null) {
+              _advNames[bm.remoteId] = bm.advName!;
+            }
+
+            results.add(ScanResult.fromProto(bm));
+          }
+
+          if (results.isNotEmpty) {
+            controller.add(results);
+          }
+        });
+
+        // now that we are listening, ask for the buffered results
+        _invokePlatform(() => FlutterBluePlusPlatform.instance.flushBackgroundScan(BmFlushBackgroundScanRequest()))
+            .onError((e, s) {
+          controller.addError(e!, s);
+          return false;
+        });
+      },
+      onCancel: () => subscription?.cancel(),
+    );
+
+    return controller.stream;
+  }
+
   static Future<void> _initFlutterBluePlus() async {
     if (_initialized) {
       return;
@@ -512,6 +745,9 @@ class FlutterBluePlus {
         // clear lastChrs (api consistency)
         _lastChrs.remove(r.remoteId);
 
+        // clear notify streams (ended natively)
+        _notifyStreams.remove(r.remoteId);
+
         // cancel & delete subscriptions
         _deviceSubscriptions[r.remoteId]?.forEach((s) => s.cancel());
         _deviceSubscriptions.remove(r.remoteId);
@@ -556,6 +792,9 @@ class FlutterBluePlus {
       if (r.success == true) {
         _knownServices[r.remoteId] = r;
       }
+
+      // notify streams end on rediscovery (new characteristics)
+      _notifyStreams.remove(r.remoteId);
     });
 
     // keep track of mtu values
@@ -675,6 +914,14 @@ enum OperationQueueMode {
   /// This allows operations on different devices to run concurrently while
   /// still preserving ordering for each individual device.
   perDevice,
+
+  /// Like [perDevice], but operations on different characteristics & descriptors
+  /// of a device are sent without waiting for each other. They are queued natively,
+  /// and each one starts as soon as the previous completes. Operations on the same
+  /// characteristic or descriptor still run one at a time.
+  ///
+  /// Android only. Other platforms behave like [perDevice].
+  perAttribute,
 }
 
 class AndroidScanMode {
@@ -706,6 +953,35 @@ class MsdFilter {
   }
 }
 
+enum BeaconType {
+  iBeacon, // 0
+  altBeacon, // 1
+  eddystoneUid, // 2
+  eddystoneUrl, // 3
+  eddystoneTlm, // 4
+}
+
+/// Filter beacons on their decoded fields. Unset fields match any beacon.
+///   - [uuid], [major] & [minor] only match iBeacon & AltBeacon
+///   - [namespace] (10 bytes) & [instance] (6 bytes) only match Eddystone UID
+class BeaconFilter {
+  BeaconType? type;
+  Guid? uuid;
+  int? major;
+  int? minor;
+  List<int>? namespace;
+  List<int>? instance;
+
+  BeaconFilter({this.type, this.uuid, this.major, this.minor, this.namespace, this.instance});
+
+  // convert to bmMsg
+  BmBeaconFilter get _bm {
+    assert(namespace == null || namespace!.length == 10, "namespace must be 10 bytes");
+    assert(instance == null || instance!.length == 6, "instance must be 6 bytes");
+    return BmBeaconFilter(type?.index, uuid, major, minor, namespace, instance);
+  }
+}
+
 class ServiceDataFilter {
   Guid service;
 
@@ -743,7 +1019,7 @@ class ScanResult {
       : device = BluetoothDevice(remoteId: p.remoteId),
         advertisementData = AdvertisementData.fromProto(p),
         rssi = p.rssi,
-        timeStamp = DateTime.now();
+        timeStamp = p.timestamp ?? DateTime.now();
 
   @override
   bool operator ==(Object other) =>
@@ -763,6 +1039,131 @@ class ScanResult {
   }
 }
 
+/// A device aggregated by the native device table, see [FlutterBluePlus.getScanDevices]
+class ScanDevice {
+  final ScanResult result; // the latest advertisement
+  final DateTime firstSeen;
+  final DateTime lastSeen;
+  final int packets; // advertisements received
+  final int rssiMin;
+  final int rssiMax;
+  final int rssiAvg;
+
+  ScanDevice.fromProto(BmScanDevice p)
+      : result = ScanResult(
+          device: BluetoothDevice(remoteId: p.advertisement.remoteId),
+          advertisementData: AdvertisementData.fromProto(p.advertisement),
+          rssi: p.advertisement.rssi,
+          timeStamp: p.lastSeen,
+        ),
+        firstSeen = p.firstSeen,
+        lastSeen = p.lastSeen,
+        packets = p.packets,
+        rssiMin = p.rssiMin,
+        rssiMax = p.rssiMax,
+        rssiAvg = p.rssiAvg;
+
+  BluetoothDevice get device => result.device;
+
+  @override
+  String toString() {
+    return 'ScanDevice{'
+        'result: $result, '
+        'firstSeen: $firstSeen, '
+        'lastSeen: $lastSeen, '
+        'packets: $packets, '
+        'rssiMin: $rssiMin, '
+        'rssiMax: $rssiMax, '
+        'rssiAvg: $rssiAvg'
+        '}';
+  }
+}
+
+/// see [FlutterBluePlus.getScanDevices]
+class ScanDevices {
+  /// pass this as `since` next time
+  final int version;
+
+  /// if true, [devices] is the whole table. Forget the devices you had
+  final bool isFull;
+
+  /// the devices that changed
+  final List<ScanDevice> devices;
+
+  /// the devices removed from the table. Apply these before [devices]
+  final List<DeviceIdentifier> removed;
+
+  ScanDevices.fromProto(BmScanDevicesResponse p)
+      : version = p.version,
+        isFull = p.full,
+        devices = p.devices.map((d) => ScanDevice.fromProto(d)).toList(),
+        removed = p.removed;
+}
+
+/// A beacon frame, decoded natively. see `androidBeacons` in [FlutterBluePlus.startScan]
+class Beacon {
+  final BeaconType type;
+
+  /// iBeacon & AltBeacon
+  final Guid? uuid;
+  final int? major;
+  final int? minor;
+
+  /// dBm at 1 meter (iBeacon & AltBeacon), or at 0 meters (Eddystone UID & URL)
+  final int? measuredPower;
+
+  /// AltBeacon
+  final int? manufacturerId;
+  final int? reserved;
+
+  /// Eddystone UID
+  final List<int>? namespace;
+  final List<int>? instance;
+
+  /// Eddystone URL
+  final String? url;
+
+  /// Eddystone TLM
+  final int? batteryMv;
+  final double? temperature; // celsius
+  final int? advCount;
+  final Duration? uptime;
+
+  Beacon.fromProto(BmBeacon p)
+      : type = BeaconType.values[p.type],
+        uuid = p.uuid,
+        major = p.major,
+        minor = p.minor,
+        measuredPower = p.measuredPower,
+        manufacturerId = p.manufacturerId,
+        reserved = p.reserved,
+        namespace = p.namespace,
+        instance = p.instance,
+        url = p.url,
+        batteryMv = p.batteryMv,
+        temperature = p.temperature,
+        advCount = p.advCount,
+        uptime = p.uptime != null ? Duration(milliseconds: p.uptime!) : null;
+
+  @override
+  String toString() {
+    return 'Beacon{'
+        'type: $type, '
+        'uuid: $uuid, '
+        'major: $major, '
+        'minor: $minor, '
+        'measuredPower: $measuredPower, '
+        'namespace: $namespace, '
+        'instance: $instance, '
+        'url: $url, '
+        'batteryMv: $batteryMv, '
+        'temperature: $temperature, '
+        'advCount: $advCount, '
+        'uptime: $uptime'
+        '}';
+  }
+}
+
 class AdvertisementData {
   final String advName;
   final int? txPowerLevel;
@@ -772,6 +1173,18 @@ class AdvertisementData {
   final Map<Guid, List<int>> serviceData; // key: service guid
   final List<Guid> serviceUuids;
 
+  /// Android only. Extended advertising (androidLegacy: false), not available with androidBinaryScan
+  ///   - [androidAdvertisingSid] the advertising set id
+  ///   - [androidPeriodicInterval] if the device also advertises a periodic advertising train, its interval
+  ///   - [androidPrimaryPhy] & [androidSecondaryPhy] see `BluetoothDevice.PHY_LE_*`
+  final int? androidAdvertisingSid;
+  final Duration? androidPeriodicInterval;
+  final int? androidPrimaryPhy;
+  final int? androidSecondaryPhy;
+
+  /// Android only. The decoded beacon frame, see `androidBeacons` in [FlutterBluePlus.startScan]
+  final Beacon? androidBeacon;
+
   /// for convenience, raw msd data
   ///   * interprets the first two byte as raw data,
   ///     as opposed to a `manufacturerId`
@@ -793,6 +1206,11 @@ class AdvertisementData {
     required this.manufacturerData,
     required this.serviceData,
     required this.serviceUuids,
+    this.androidAdvertisingSid,
+    this.androidPeriodicInterval,
+    this.androidPrimaryPhy,
+    this.androidSecondaryPhy,
+    this.androidBeacon,
   });
 
   AdvertisementData.fromProto(BmScanAdvertisement p)
@@ -802,7 +1220,13 @@ class AdvertisementData {
         connectable = p.connectable,
         manufacturerData = p.manufacturerData,
         serviceData = p.serviceData,
-        serviceUuids = p.serviceUuids;
+        serviceUuids = p.serviceUuids,
+        androidAdvertisingSid = p.advSid,
+        androidPeriodicInterval =
+            p.periodicInterval != null ? Duration(microseconds: p.periodicInterval! * 1250) : null,
+        androidPrimaryPhy = p.primaryPhy,
+        androidSecondaryPhy = p.secondaryPhy,
+        androidBeacon = p.beacon != null ? Beacon.fromProto(p.beacon!) : null;
 
   @override
   String toString() {
@@ -0,0 +1,399 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+// Single pass parser over the raw advertisement bytes (AD structures).
+//
+// perf: ScanRecord parses the whole advertisement into its own lists and maps,
+// and we then walked the bytes again for the appearance and the manufacturer data.
+// This parser walks the bytes once and only remembers offsets into them. It is a
+// flyweight: reuse one instance, and parse() does not allocate once the offset
+// arrays have grown to fit the busiest advertisement.
+//
+// The results match ScanRecord, except manufacturer data, which is
+// concatenated the same way as getManufacturerSpecificData used to.
+class AdvParser
+{
+    // AD types, see: Bluetooth Assigned Numbers, 2.3
+    static final int TYPE_UUID16_INCOMPLETE = 0x02;
+    static final int TYPE_UUID16_COMPLETE = 0x03;
+    static final int TYPE_UUID32_INCOMPLETE = 0x04;
+    static final int TYPE_UUID32_COMPLETE = 0x05;
+    static final int TYPE_UUID128_INCOMPLETE = 0x06;
+    static final int TYPE_UUID128_COMPLETE = 0x07;
+    static final int TYPE_NAME_SHORT = 0x08;
+    static final int TYPE_NAME_COMPLETE = 0x09;
+    static final int TYPE_TX_POWER = 0x0A;
+    static final int TYPE_SERVICE_DATA16 = 0x16;
+    static final int TYPE_APPEARANCE = 0x19;
+    static final int TYPE_SERVICE_DATA32 = 0x20;
+    static final int TYPE_SERVICE_DATA128 = 0x21;
+    static final int TYPE_MSD = 0xFF;
+
+    static final int NO_TX_POWER = Integer.MIN_VALUE;
+
+    private byte[] bytes;
+
+    private int nameOffset;
+    private int nameLength;
+    private int txPower;
+    private int appearance;
+
+    // manufacturer specific data. offset of the manufacturer id
+    private int msdCount;
+    private int msdLength; // total
+    private int[] msdOffsets = new int[4];
+    private int[] msdLengths = new int[4];
+
+    // service uuids
+    private int uuidCount;
+    private int[] uuidOffsets = new int[8];
+    private int[] uuidWidths = new int[8];
+
+    // service data. offset of the uuid, then the data follows it
+    private int serviceDataCount;
+    private int[] serviceDataOffsets = new int[4];
+    private int[] serviceDataWidths = new int[4];
+    private int[] serviceDataLengths = new int[4];
+
+    // returns false if there is nothing to parse
+    boolean parse(byte[] bytes)
+    {
+        this.bytes = bytes;
+        nameOffset = -1;
+        nameLength = 0;
+        txPower = NO_TX_POWER;
+        appearance = 0;
+        msdCount = 0;
+        msdLength = 0;
+        uuidCount = 0;
+        serviceDataCount = 0;
+
+        if (bytes == null) {
+            return false;
+        }
+
+        int n = 0;
+        while (n < bytes.length) {
+
+            // layout:
+            // n[0] = fieldlen (includes the type)
+            // n[1] = datatype
+            // n[2] = data...
+            int fieldLen = bytes[n] & 0xFF;
+
+            // no more or malformed data
+            if (fieldLen <= 0) {
+                break;
+            }
+
+            // Ensuring we don't go past the bytes array
+            if (n + fieldLen >= bytes.length) {
+                break;
+            }
+
+            int dataType = bytes[n + 1] & 0xFF;
+            int data = n + 2;
+            int dataLen = fieldLen - 1;
+
+            switch (dataType) {
+                case TYPE_UUID16_INCOMPLETE:
+                case TYPE_UUID16_COMPLETE:
+                    addUuids(data, dataLen, 2);
+                    break;
+                case TYPE_UUID32_INCOMPLETE:
+                case TYPE_UUID32_COMPLETE:
+                    addUuids(data, dataLen, 4);
+                    break;
+                case TYPE_UUID128_INCOMPLETE:
+                case TYPE_UUID128_COMPLETE:
+                    addUuids(data, dataLen, 16);
+                    break;
+                case TYPE_NAME_SHORT:
+                case TYPE_NAME_COMPLETE:
+                    // like ScanRecord, the last name wins
+                    nameOffset = data;
+                    nameLength = dataLen;
+                    break;
+                case TYPE_TX_POWER:
+                    if (dataLen >= 1) {
+                        txPower = bytes[data];
+                    }
+                    break;
+                case TYPE_SERVICE_DATA16:
+                    addServiceData(data, dataLen, 2);
+                    break;
+                case TYPE_SERVICE_DATA32:
+                    addServiceData(data, dataLen, 4);
+                    break;
+                case TYPE_SERVICE_DATA128:
+                    addServiceData(data, dataLen, 16);
+                    break;
+                case TYPE_APPEARANCE:
+                    if (dataLen == 2) {
+                        appearance = (bytes[data] & 0xFF) | ((bytes[data + 1] & 0xFF) << 8);
+                    }
+                    break;
+                case TYPE_MSD:
+                    addMsd(data, dataLen);
+                    break;
+            }
+
+            n += fieldLen + 1;
+        }
+
+        return true;
+    }
+
+    byte[] bytes()
+    {
+        return bytes;
+    }
+
+    boolean hasName()
+    {
+        return nameOffset >= 0;
+    }
+
+    int nameOffset()
+    {
+        return nameOffset;
+    }
+
+    int nameLength()
+    {
+        return nameLength;
+    }
+
+    // allocates
+    String name()
+    {
+        return hasName() ? new String(bytes, nameOffset, nameLength, StandardCharsets.UTF_8) : null;
+    }
+
+    int txPower()
+    {
+        return txPower;
+    }
+
+    int appearance()
+    {
+        return appearance;
+    }
+
+    //
+    // manufacturer specific data
+    //
+
+    int msdCount()
+    {
+        return msdCount;
+    }
+
+    int msdOffset(int i)
+    {
+        return msdOffsets[i];
+    }
+
+    int msdLength(int i)
+    {
+        return msdLengths[i];
+    }
+
+    // total length of all entries, including their manufacturer ids
+    int msdTotalLength()
+    {
+        return msdLength;
+    }
+
+    // little-endian manufacturer id of the first entry, or -1
+    int manufacturerId()
+    {
+        if (msdLength < 2) {
+            return -1;
+        }
+        // the first 2 bytes of the concatenation
+        int lo = bytes[msdOffsets[0]] & 0xFF;
+        int hi = msdLengths[0] >= 2 ? bytes[msdOffsets[0] + 1] & 0xFF : bytes[msdOffsets[1]] & 0xFF;
+        return lo | (hi << 8);
+    }
+
+    // copies the concatenation of all entries, skipping the first 'skip' bytes
+    void copyMsd(int skip, byte[] dst, int dstOffset)
+    {
+        for (int i = 0; i < msdCount; i++) {
+            int off = msdOffsets[i];
+            int len = msdLengths[i];
+            if (skip >= len) {
+                skip -= len;
+                continue;
+            }
+            System.arraycopy(bytes, off + skip, dst, dstOffset, len - skip);
+            dstOffset += len - skip;
+            skip = 0;
+        }
+    }
+
+    //
+    // service uuids
+    //
+
+    int uuidCount()
+    {
+        return uuidCount;
+    }
+
+    int uuidOffset(int i)
+    {
+        return uuidOffsets[i];
+    }
+
+    // 2, 4, or 16 bytes
+    int uuidWidth(int i)
+    {
+        return uuidWidths[i];
+    }
+
+    // allocates
+    UUID uuid(int i)
+    {
+        return toUuid(bytes, uuidOffsets[i], uuidWidths[i]);
+    }
+
+    //
+    // service data
+    //
+
+    int serviceDataCount()
+    {
+        return serviceDataCount;
+    }
+
+    int serviceDataUuidOffset(int i)
+    {
+        return serviceDataOffsets[i];
+    }
+
+    int serviceDataUuidWidth(int i)
+    {
+        return serviceDataWidths[i];
+    }
+
+    int serviceDataOffset(int i)
+    {
+        return serviceDataOffsets[i] + serviceDataWidths[i];
+    }
+
+    int serviceDataLength(int i)
+    {
+        return serviceDataLengths[i];
+    }
+
+    // allocates
+    UUID serviceDataUuid(int i)
+    {
+        return toUuid(bytes, serviceDataOffsets[i], serviceDataWidths[i]);
+    }
+
+    // allocates
+    byte[] serviceData(int i)
+    {
+        byte[] out = new byte[serviceDataLengths[i]];
+        System.arraycopy(bytes, serviceDataOffset(i), out, 0, out.length);
+        return out;
+    }
+
+    // little-endian 16, 32, or 128-bit uuid -> UUID
+    static UUID toUuid(byte[] b, int off, int width)
+    {
+        return new UUID(uuidMsb(b, off, width), uuidLsb(b, off, width));
+    }
+
+    // most significant bits of a little-endian 16, 32, or 128-bit uuid
+    static long uuidMsb(byte[] b, int off, int width)
+    {
+        if (width == 16) {
+            long msb = 0;
+            for (int i = 15; i >= 8; i--) {
+                msb = (msb << 8) | (b[off + i] & 0xFF);
+            }
+            return msb;
+        }
+        long v = (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+        if (width == 4) {
+            v |= ((long) (b[off + 2] & 0xFF) << 16) | ((long) (b[off + 3] & 0xFF) << 24);
+        }
+        return (v << 32) | UuidCache.BASE_MSB;
+    }
+
+    // least significant bits of a little-endian 16, 32, or 128-bit uuid
+    static long uuidLsb(byte[] b, int off, int width)
+    {
+        if (width == 16) {
+            long lsb = 0;
+            for (int i = 7; i >= 0; i--) {
+                lsb = (lsb << 8) | (b[off + i] & 0xFF);
+            }
+            return lsb;
+        }
+        return UuidCache.BASE_LSB;
+    }
+
+    private void addUuids(int data, int dataLen, int width)
+    {
+        for (int off = data; off + width <= data + dataLen; off += width) {
+            if (uuidCount == uuidOffsets.length) {
+                uuidOffsets = grow(uuidOffsets);
+                uuidWidths = grow(uuidWidths);
+            }
+            uuidOffsets[uuidCount] = off;
+            uuidWidths[uuidCount] = width;
+            uuidCount++;
+        }
+    }
+
+    private void addServiceData(int data, int dataLen, int width)
+    {
+        if (dataLen < width) {
+            return;
+        }
+        if (serviceDataCount == serviceDataOffsets.length) {
+            serviceDataOffsets = grow(serviceDataOffsets);
+            serviceDataWidths = grow(serviceDataWidths);
+            serviceDataLengths = grow(serviceDataLengths);
+        }
+        serviceDataOffsets[serviceDataCount] = data;
+        serviceDataWidths[serviceDataCount] = width;
+        serviceDataLengths[serviceDataCount] = dataLen - width;
+        serviceDataCount++;
+    }
+
+    private void addMsd(int data, int dataLen)
+    {
+        // empty entries add nothing to the concatenation, and
+        // would break manufacturerId(). The old parser skipped them too
+        if (dataLen < 1) {
+            return;
+        }
+        if (msdCount == msdOffsets.length) {
+            msdOffsets = grow(msdOffsets);
+            msdLengths = grow(msdLengths);
+        }
+        msdOffsets[msdCount] = data;
+        msdLengths[msdCount] = dataLen;
+        msdCount++;
+        msdLength += dataLen;
+    }
+
+    private static int[] grow(int[] a)
+    {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+}
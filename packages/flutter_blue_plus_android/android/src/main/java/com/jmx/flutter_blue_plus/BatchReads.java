@@ -0,0 +1,197 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Reads of many characteristics, back-to-back, answered together. see: readCharacteristics
+//
+// perf: reading a device info block (model, serial, firmware, battery, ...) took a
+// readCharacteristic call & an OnCharacteristicReceived event per characteristic,
+// each a channel round-trip. Here, each read starts from the onCharacteristicRead
+// of the previous one, and all values & statuses are sent in one OnCharacteristicsRead.
+//
+// A batch is a single gatt operation (see: GattOpQueue), so there is at most
+// one batch per device at a time.
+class BatchReads
+{
+    interface Reader {
+        // starts the read. returns an error, or null
+        String read(BluetoothGatt gatt, BluetoothGattCharacteristic chr);
+    }
+
+    interface Reporter {
+        // done: all items have a value or an error. else, an item was read
+        void report(Batch b, boolean done);
+    }
+
+    static class Item
+    {
+        final HashMap<String, Object> identity;           // see: BmReadCharacteristicRequest
+        final BluetoothGattCharacteristic characteristic; // null: see error
+        byte[] value = new byte[0];
+        int status = BluetoothGatt.GATT_FAILURE;
+        String error;                                     // null: see status
+
+        Item(HashMap<String, Object> identity, BluetoothGattCharacteristic characteristic, String error)
+        {
+            this.identity = identity;
+            this.characteristic = characteristic;
+            this.error = error;
+        }
+    }
+
+    class Batch
+    {
+        final String remoteId;
+        final int requestId; // see: BmReadCharacteristicsResult
+        final BluetoothGatt gatt;
+        final List<Item> items;
+
+        GattOpQueue.Op op = null;
+
+        private int next = 0;
+        private Item reading = null;
+        private boolean finished = false;
+
+        Batch(String remoteId, int requestId, BluetoothGatt gatt, List<Item> items)
+        {
+            this.remoteId = remoteId;
+            this.requestId = requestId;
+            this.gatt = gatt;
+            this.items = items;
+        }
+
+        // holding this. returns false when there is nothing left to read
+        private boolean readNext()
+        {
+            reading = null;
+            while (next < items.size()) {
+                Item item = items.get(next++);
+                if (item.characteristic == null) {
+                    continue; // not found, or not readable
+                }
+                String error = mReader.read(gatt, item.characteristic);
+                if (error == null) {
+                    reading = item;
+                    return true;
+                }
+                item.error = error;
+            }
+            return false;
+        }
+    }
+
+    private final Reader mReader;
+    private final Reporter mReporter;
+    private final Map<String, Batch> mBatches = new ConcurrentHashMap<>(); // by remoteId
+
+    BatchReads(Reader reader, Reporter reporter)
+    {
+        mReader = reader;
+        mReporter = reporter;
+    }
+
+    Batch create(String remoteId, int requestId, BluetoothGatt gatt, List<Item> items)
+    {
+        return new Batch(remoteId, requestId, gatt, items);
+    }
+
+    // starts the first read. returns an error, or null
+    String start(Batch b)
+    {
+        boolean reading;
+        synchronized (b) {
+            mBatches.put(b.remoteId, b);
+            reading = b.readNext();
+        }
+        if (reading == false) {
+            finish(b, null);
+        }
+        return null;
+    }
+
+    // onCharacteristicRead. returns false if not part of a batch. binder thread
+    boolean onRead(BluetoothGatt gatt, BluetoothGattCharacteristic chr, byte[] value, int status, String statusString)
+    {
+        Batch b = mBatches.get(gatt.getDevice().getAddress());
+        if (b == null) {
+            return false;
+        }
+
+        boolean reading;
+        synchronized (b) {
+            Item item = b.reading;
+            if (item == null || item.characteristic != chr) {
+                return false; // not ours
+            }
+            item.value = value != null ? value : new byte[0];
+            item.status = status;
+            item.error = status == BluetoothGatt.GATT_SUCCESS ? null : statusString;
+            reading = b.readNext();
+        }
+
+        if (reading) {
+            mReporter.report(b, false);
+        } else {
+            finish(b, null);
+        }
+        return true;
+    }
+
+    // failed to start, timed out, or disconnected. unread items fail
+    void abort(Batch b, String error)
+    {
+        finish(b, error);
+    }
+
+    void clearDevice(String remoteId, String error)
+    {
+        Batch b = mBatches.get(remoteId);
+        if (b != null) {
+            abort(b, error);
+        }
+    }
+
+    void clearAll(String error)
+    {
+        for (Batch b : new ArrayList<>(mBatches.values())) {
+            abort(b, error);
+        }
+    }
+
+    // error: for the items not read yet
+    private void finish(Batch b, String error)
+    {
+        // only once
+        synchronized (b) {
+            if (b.finished) {
+                return;
+            }
+            b.finished = true;
+            if (error != null) {
+                if (b.reading != null) {
+                    b.reading.error = error;
+                }
+                for (int i = b.next; i < b.items.size(); i++) {
+                    Item item = b.items.get(i);
+                    if (item.error == null) {
+                        item.error = error;
+                    }
+                }
+            }
+            b.reading = null;
+        }
+        mBatches.remove(b.remoteId, b);
+        mReporter.report(b, true);
+    }
+}
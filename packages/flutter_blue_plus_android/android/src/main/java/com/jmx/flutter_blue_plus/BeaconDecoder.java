@@ -0,0 +1,310 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Decodes beacon frames from a parsed advertisement: iBeacon, AltBeacon,
+// and Eddystone UID, URL & TLM.
+//
+// Like AdvParser, this is a flyweight: decode() only remembers the beacon type
+// and offsets into the advertisement bytes, so filtering on the decoded fields
+// (see: Filter) does not allocate. toMap() builds the BmBeacon.
+class BeaconDecoder
+{
+    // see: BeaconType (dart)
+    static final int NONE = -1;
+    static final int IBEACON = 0;
+    static final int ALTBEACON = 1;
+    static final int EDDYSTONE_UID = 2;
+    static final int EDDYSTONE_URL = 3;
+    static final int EDDYSTONE_TLM = 4;
+
+    static final int APPLE_ID = 0x004C;
+    static final int EDDYSTONE_SERVICE = 0xFEAA;
+
+    private byte[] b;
+    private int type = NONE;
+
+    // offset of the frame. For MSD beacons, just after the manufacturer id.
+    // For Eddystone, the frame type byte
+    private int off;
+    private int len;
+    private int manufacturerId;
+
+    // returns false if the advertisement holds no beacon frame
+    boolean decode(AdvParser p)
+    {
+        type = NONE;
+        b = p.bytes();
+        if (b == null) {
+            return false;
+        }
+
+        // iBeacon & AltBeacon: manufacturer specific data
+        for (int i = 0; i < p.msdCount(); i++) {
+            int o = p.msdOffset(i);
+            int l = p.msdLength(i);
+            if (l < 4) {
+                continue;
+            }
+            int id = (b[o] & 0xFF) | ((b[o + 1] & 0xFF) << 8);
+            int b0 = b[o + 2] & 0xFF;
+            int b1 = b[o + 3] & 0xFF;
+            // 0x02 0x15: type & length. uuid (16), major (2), minor (2), measured power (1)
+            if (id == APPLE_ID && b0 == 0x02 && b1 == 0x15 && l >= 2 + 23) {
+                return found(IBEACON, o + 2, l - 2, id);
+            }
+            // 0xBE 0xAC: beacon code. id (20), reference rssi (1), reserved (1)
+            if (b0 == 0xBE && b1 == 0xAC && l >= 2 + 24) {
+                return found(ALTBEACON, o + 2, l - 2, id);
+            }
+        }
+
+        // Eddystone: service data 0xFEAA
+        for (int i = 0; i < p.serviceDataCount(); i++) {
+            int uo = p.serviceDataUuidOffset(i);
+            if (p.serviceDataUuidWidth(i) != 2) {
+                continue;
+            }
+            int uuid16 = (b[uo] & 0xFF) | ((b[uo + 1] & 0xFF) << 8);
+            int o = p.serviceDataOffset(i);
+            int l = p.serviceDataLength(i);
+            if (uuid16 != EDDYSTONE_SERVICE || l < 1) {
+                continue;
+            }
+            switch (b[o] & 0xFF) {
+                case 0x00: // frame type, tx power (1), namespace (10), instance (6)
+                    if (l >= 18) {return found(EDDYSTONE_UID, o, l, 0);}
+                    break;
+                case 0x10: // frame type, tx power (1), scheme (1), encoded url
+                    if (l >= 3) {return found(EDDYSTONE_URL, o, l, 0);}
+                    break;
+                case 0x20: // frame type, version (1), battery (2), temperature (2), adv count (4), uptime (4)
+                    if (l >= 14 && b[o + 1] == 0) {return found(EDDYSTONE_TLM, o, l, 0);}
+                    break;
+            }
+        }
+
+        return false;
+    }
+
+    int type()
+    {
+        return type;
+    }
+
+    // iBeacon & AltBeacon: uuid, the first 16 bytes of the id (big-endian)
+    long uuidMsb()
+    {
+        return be(off + 2, 8);
+    }
+
+    long uuidLsb()
+    {
+        return be(off + 10, 8);
+    }
+
+    int major()
+    {
+        return (int) be(off + 18, 2);
+    }
+
+    int minor()
+    {
+        return (int) be(off + 20, 2);
+    }
+
+    // dBm at 1 meter (iBeacon & AltBeacon), or at 0 meters (Eddystone)
+    int measuredPower()
+    {
+        switch (type) {
+            case IBEACON:       return b[off + 22];
+            case ALTBEACON:     return b[off + 22];
+            case EDDYSTONE_UID: return b[off + 1];
+            case EDDYSTONE_URL: return b[off + 1];
+            default:            return 0;
+        }
+    }
+
+    // true if the eddystone uid namespace (10 bytes) or instance (6 bytes) equals 'value'
+    boolean namespaceEquals(byte[] value)
+    {
+        return type == EDDYSTONE_UID && rangeEquals(off + 2, 10, value);
+    }
+
+    boolean instanceEquals(byte[] value)
+    {
+        return type == EDDYSTONE_UID && rangeEquals(off + 12, 6, value);
+    }
+
+    // see: BmBeacon
+    HashMap<String, Object> toMap()
+    {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("type", type);
+        switch (type) {
+            case IBEACON:
+            case ALTBEACON:
+                map.put("uuid", UuidCache.str(new UUID(uuidMsb(), uuidLsb())));
+                map.put("major", major());
+                map.put("minor", minor());
+                map.put("measured_power", measuredPower());
+                if (type == ALTBEACON) {
+                    map.put("manufacturer_id", manufacturerId);
+                    map.put("reserved", b[off + 23] & 0xFF);
+                }
+                break;
+            case EDDYSTONE_UID:
+                map.put("measured_power", measuredPower());
+                map.put("namespace", copy(off + 2, 10));
+                map.put("instance", copy(off + 12, 6));
+                break;
+            case EDDYSTONE_URL:
+                map.put("measured_power", measuredPower());
+                String url = url();
+                if (url != null) {
+                    map.put("url", url);
+                }
+                break;
+            case EDDYSTONE_TLM:
+                map.put("battery_mv", (int) be(off + 2, 2));
+                map.put("temperature", (short) be(off + 4, 2) / 256.0); // signed 8.8 fixed point
+                map.put("adv_count", be(off + 6, 4));
+                map.put("uptime", be(off + 10, 4) * 100); // units of 0.1s -> ms
+                break;
+        }
+        return map;
+    }
+
+    private static final String[] URL_SCHEMES = {"http://www.", "https://www.", "http://", "https://"};
+
+    private static final String[] URL_EXPANSIONS = {
+        ".com/", ".org/", ".edu/", ".net/", ".info/", ".biz/", ".gov/",
+        ".com", ".org", ".edu", ".net", ".info", ".biz", ".gov",
+    };
+
+    // see: Eddystone-URL specification. null if malformed
+    private String url()
+    {
+        int scheme = b[off + 2] & 0xFF;
+        if (scheme >= URL_SCHEMES.length) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(URL_SCHEMES[scheme]);
+        for (int i = off + 3; i < off + len; i++) {
+            int c = b[i] & 0xFF;
+            if (c < URL_EXPANSIONS.length) {
+                sb.append(URL_EXPANSIONS[c]);
+            } else if (c > 0x20 && c < 0x7F) {
+                sb.append((char) c);
+            } else {
+                return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean found(int type, int off, int len, int manufacturerId)
+    {
+        this.type = type;
+        this.off = off;
+        this.len = len;
+        this.manufacturerId = manufacturerId;
+        return true;
+    }
+
+    private long be(int o, int n)
+    {
+        long v = 0;
+        for (int i = 0; i < n; i++) {
+            v = (v << 8) | (b[o + i] & 0xFF);
+        }
+        return v;
+    }
+
+    private boolean rangeEquals(int o, int n, byte[] value)
+    {
+        if (value.length != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (b[o + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] copy(int o, int n)
+    {
+        byte[] out = new byte[n];
+        System.arraycopy(b, o, out, 0, n);
+        return out;
+    }
+
+    // a filter on the decoded fields. Unset fields match anything. see: BmBeaconFilter
+    static class Filter
+    {
+        int type = NONE;
+        UUID uuid;
+        int major = -1;
+        int minor = -1;
+        byte[] namespace;
+        byte[] instance;
+
+        @SuppressWarnings("unchecked") // type safety uses bluetooth_msgs.dart
+        static List<Filter> fromList(List<Object> list)
+        {
+            List<Filter> out = new ArrayList<>();
+            for (Object o : list) {
+                Map<String, Object> m = (Map<String, Object>) o;
+                Filter f = new Filter();
+                if (m.get("type") != null)      {f.type = (int) m.get("type");}
+                if (m.get("uuid") != null)      {f.uuid = UuidCache.parse((String) m.get("uuid"));}
+                if (m.get("major") != null)     {f.major = (int) m.get("major");}
+                if (m.get("minor") != null)     {f.minor = (int) m.get("minor");}
+                if (m.get("namespace") != null) {f.namespace = (byte[]) m.get("namespace");}
+                if (m.get("instance") != null)  {f.instance = (byte[]) m.get("instance");}
+                out.add(f);
+            }
+            return out;
+        }
+
+        boolean matches(BeaconDecoder d)
+        {
+            if (d.type() == NONE) {
+                return false;
+            }
+            if (type != NONE && type != d.type()) {
+                return false;
+            }
+            boolean hasId = d.type() == IBEACON || d.type() == ALTBEACON;
+            if (uuid != null && (hasId == false ||
+                    uuid.getMostSignificantBits() != d.uuidMsb() ||
+                    uuid.getLeastSignificantBits() != d.uuidLsb())) {
+                return false;
+            }
+            if (major >= 0 && (hasId == false || major != d.major())) {
+                return false;
+            }
+            if (minor >= 0 && (hasId == false || minor != d.minor())) {
+                return false;
+            }
+            if (namespace != null && d.namespaceEquals(namespace) == false) {
+                return false;
+            }
+            if (instance != null && d.instanceEquals(instance) == false) {
+                return false;
+            }
+            return true;
+        }
+    }
+}
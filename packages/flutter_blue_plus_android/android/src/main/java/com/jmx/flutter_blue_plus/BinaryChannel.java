@@ -0,0 +1,182 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.BinaryMessenger.BinaryMessageHandler;
+import io.flutter.plugin.common.BinaryMessenger.BinaryReply;
+
+// A raw BinaryMessenger channel for characteristic writes & notifications,
+// enabled with setOptions(androidBinaryChannel: true).
+//
+// perf: no StandardMessageCodec maps, no uuid strings. Characteristics are
+// referred to by handle (see: GattHandles), and payloads are read from &
+// written to direct ByteBuffers.
+//
+// frame (little-endian):
+//   [0]      op, see: OP_*
+//   [1]      flags, see: FLAG_*
+//   [2..3]   device index
+//   [4..5]   generation, see: GattHandles
+//   [6..7]   characteristic index
+//   [8..11]  sequence number
+//   [12..13] status. 0: success, else gatt status (OP_WRITTEN), or error (replies)
+//   [14..]   payload: value, or error string
+//
+// dart -> android: OP_WRITE, OP_WRITE_NO_RESPONSE. The reply has the same header,
+//   with the status of the request (not of the write, see: OP_WRITTEN)
+// android -> dart: OP_WRITTEN (onCharacteristicWrite), OP_NOTIFY (onCharacteristicChanged)
+class BinaryChannel implements BinaryMessageHandler, EventDispatcher.Target
+{
+    static final String NAME = "flutter_blue_plus/binary";
+
+    static final int HEADER_LEN = 14;
+
+    static final int OP_WRITE = 1;
+    static final int OP_WRITE_NO_RESPONSE = 2;
+    static final int OP_WRITTEN = 3;
+    static final int OP_NOTIFY = 4;
+
+    static final int FLAG_ALLOW_LONG_WRITE = 0x01;
+
+    static final int STATUS_ERROR = 0xFFFF;
+
+    interface Writer {
+        // returns an error, or null
+        String write(GattHandles.Entry e, byte[] value, boolean withResponse, boolean allowLongWrite, int seq);
+    }
+
+    private final GattHandles mHandles;
+    private final EventDispatcher mEvents;
+    private final Writer mWriter;
+    private final AtomicInteger mNotifySeq = new AtomicInteger(0);
+    private volatile BinaryMessenger mMessenger = null;
+    private volatile boolean mEnabled = false;
+
+    BinaryChannel(GattHandles handles, EventDispatcher events, Writer writer)
+    {
+        mHandles = handles;
+        mEvents = events;
+        mWriter = writer;
+    }
+
+    void attach(BinaryMessenger messenger, BinaryMessenger.TaskQueue taskQueue)
+    {
+        mMessenger = messenger;
+        messenger.setMessageHandler(NAME, this, taskQueue);
+    }
+
+    void detach()
+    {
+        BinaryMessenger messenger = mMessenger;
+        if (messenger != null) {
+            messenger.setMessageHandler(NAME, null);
+        }
+        mMessenger = null;
+        mEnabled = false;
+    }
+
+    void setEnabled(boolean enabled)
+    {
+        mEnabled = enabled;
+    }
+
+    boolean isEnabled()
+    {
+        return mEnabled;
+    }
+
+    // writes. task queue
+    @Override
+    public void onMessage(ByteBuffer message, BinaryReply reply)
+    {
+        // Note: the message is only valid during this call
+        if (message == null || message.remaining() < HEADER_LEN) {
+            reply.reply(null);
+            return;
+        }
+        message.order(ByteOrder.LITTLE_ENDIAN);
+        int op = message.get() & 0xFF;
+        int flags = message.get() & 0xFF;
+        int device = message.getShort() & 0xFFFF;
+        int generation = message.getShort() & 0xFFFF;
+        int index = message.getShort() & 0xFFFF;
+        int seq = message.getInt();
+        message.getShort(); // status, unused in requests
+
+        String error;
+        GattHandles.Entry e = mHandles.get(device, generation, index);
+        if (op != OP_WRITE && op != OP_WRITE_NO_RESPONSE) {
+            error = "unknown op " + op;
+        } else if (e == null) {
+            error = "unknown handle. services were rediscovered, or the device disconnected";
+        } else {
+            // the one copy: android's write apis take a byte[]
+            byte[] value = new byte[message.remaining()];
+            message.get(value);
+            error = mWriter.write(e, value, op == OP_WRITE, (flags & FLAG_ALLOW_LONG_WRITE) != 0, seq);
+        }
+
+        byte[] payload = error != null ? error.getBytes(StandardCharsets.UTF_8) : null;
+        reply.reply(frame(op, 0, device, generation, index, seq, error != null ? STATUS_ERROR : 0, payload));
+    }
+
+    // returns false if the characteristic has no handle, so
+    // the value should go the usual way. any thread
+    boolean sendNotify(BluetoothGattCharacteristic chr, byte[] value)
+    {
+        if (mEnabled == false) {
+            return false;
+        }
+        GattHandles.Entry e = mHandles.find(chr);
+        if (e == null) {
+            return false;
+        }
+        mEvents.postTo(this, e.remoteId, frame(OP_NOTIFY, 0, e.device, e.generation, e.index, mNotifySeq.incrementAndGet(), 0, value));
+        return true;
+    }
+
+    // seq: of the write. A completion, so not queued behind scan results. see: EventDispatcher
+    void sendWritten(GattHandles.Entry e, int seq, int status, String error)
+    {
+        byte[] payload = status != 0 && error != null ? error.getBytes(StandardCharsets.UTF_8) : null;
+        mEvents.postTo(EventDispatcher.CONTROL, this, e.remoteId, frame(OP_WRITTEN, 0, e.device, e.generation, e.index, seq, status, payload));
+    }
+
+    // main thread
+    @Override
+    public void deliver(Object data)
+    {
+        BinaryMessenger messenger = mMessenger;
+        if (messenger != null) {
+            messenger.send(NAME, (ByteBuffer) data);
+        }
+    }
+
+    // Note: flutter sends the bytes before the buffer position, so we do not flip
+    static ByteBuffer frame(int op, int flags, int device, int generation, int index, int seq, int status, byte[] payload)
+    {
+        int len = payload != null ? payload.length : 0;
+        ByteBuffer buf = ByteBuffer.allocateDirect(HEADER_LEN + len).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) op);
+        buf.put((byte) flags);
+        buf.putShort((short) device);
+        buf.putShort((short) generation);
+        buf.putShort((short) index);
+        buf.putInt(seq);
+        buf.putShort((short) Math.min(status, STATUS_ERROR));
+        if (len > 0) {
+            buf.put(payload);
+        }
+        return buf;
+    }
+}
@@ -0,0 +1,328 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Large writes, chunked natively & streamed without response. see: writeBulk
+//
+// perf: writeCharacteristic takes one payload of at most mtu-3 bytes, so large
+// transfers (OTA, log uploads) were split & paced from dart, a channel round-trip
+// per chunk. Here the next chunk is written from onCharacteristicWrite. For
+// no-response writes android calls it as long as its buffer has space, which
+// is the flow control. If the stack is busy anyway (ERROR_GATT_WRITE_REQUEST_BUSY,
+// or false before android 13), the same chunk is retried shortly after.
+//
+// Progress is reported at most every PROGRESS_INTERVAL_MS, and once at the end.
+// A write can be cancelled while queued or writing. see: cancel
+//
+// A chunk handed to android always gets its onCharacteristicWrite. Until then
+// the stack is busy, so a cancelled write stays registered, swallows that
+// callback, and only then reports done (which starts the next gatt operation).
+class BulkWrites
+{
+    // see: Writer
+    static final String BUSY = "busy";
+
+    static final long RETRY_MS = 2;
+    static final long BUSY_TIMEOUT_MS = 5000;
+    static final long PROGRESS_INTERVAL_MS = 100;
+
+    interface Writer {
+        // writes a chunk without response. returns null, BUSY, or an error
+        String write(BluetoothGatt gatt, BluetoothGattCharacteristic chr, byte[] chunk);
+    }
+
+    interface Reporter {
+        // done: the last report of this write. status: a gatt status, 0 on success
+        void report(Session s, boolean done, int status, String error);
+    }
+
+    class Session
+    {
+        final String remoteId;
+        final BluetoothGatt gatt;
+        final BluetoothGattCharacteristic characteristic;
+        final byte[] data;
+        final int chunkSize;
+        final HashMap<String, Object> identity; // see: BmBulkWriteProgress
+
+        GattOpQueue.Op op = null;
+
+        private int offset = 0;   // bytes accepted by android
+        private byte[] chunk = null; // being written
+        private long startNanos = 0;
+        private long lastProgressNanos = 0;
+        private long busySinceNanos = 0;
+        private volatile boolean started = false;
+        private boolean retrying = false;
+        private boolean writing = false;  // a chunk is waiting for its onCharacteristicWrite
+        private boolean finished = false; // no more chunks
+        private boolean reported = false; // done was reported
+        private int finalStatus = BluetoothGatt.GATT_SUCCESS;
+        private String finalError = null;
+        private final Runnable retry = this::onRetry;
+
+        Session(String remoteId,
+                BluetoothGatt gatt,
+                BluetoothGattCharacteristic characteristic,
+                byte[] data,
+                int chunkSize,
+                HashMap<String, Object> identity)
+        {
+            this.remoteId = remoteId;
+            this.gatt = gatt;
+            this.characteristic = characteristic;
+            this.data = data;
+            this.chunkSize = chunkSize;
+            this.identity = identity;
+        }
+
+        synchronized int bytesWritten()
+        {
+            return offset;
+        }
+
+        synchronized double bytesPerSecond()
+        {
+            long elapsed = SystemClock.elapsedRealtimeNanos() - startNanos;
+            return elapsed > 0 ? offset * 1e9 / elapsed : 0;
+        }
+
+        // holding this. returns an error, or null (written, or retry scheduled)
+        private String writeNext()
+        {
+            if (chunk == null) {
+                int end = Math.min(offset + chunkSize, data.length);
+                chunk = Arrays.copyOfRange(data, offset, end);
+            }
+
+            String error = mWriter.write(gatt, characteristic, chunk);
+
+            if (BUSY.equals(error)) {
+                long now = SystemClock.elapsedRealtimeNanos();
+                if (busySinceNanos == 0) {
+                    busySinceNanos = now;
+                } else if (now - busySinceNanos > BUSY_TIMEOUT_MS * 1000000) {
+                    return "gatt busy for " + BUSY_TIMEOUT_MS + "ms";
+                }
+                retrying = true;
+                mHandler.postDelayed(retry, RETRY_MS);
+                return null;
+            }
+
+            if (error == null) {
+                offset += chunk.length;
+                chunk = null;
+                busySinceNanos = 0;
+                writing = true;
+            }
+            return error;
+        }
+
+        // main thread
+        private void onRetry()
+        {
+            String error;
+            synchronized (this) {
+                retrying = false;
+                if (finished) {
+                    return;
+                }
+                error = writeNext();
+            }
+            if (error != null) {
+                finish(this, BluetoothGatt.GATT_FAILURE, error, false);
+            }
+        }
+    }
+
+    private final Handler mHandler;
+    private final Writer mWriter;
+    private final Reporter mReporter;
+    private final Map<BluetoothGattCharacteristic, Session> mSessions = new ConcurrentHashMap<>();
+
+    BulkWrites(Handler handler, Writer writer, Reporter reporter)
+    {
+        mHandler = handler;
+        mWriter = writer;
+        mReporter = reporter;
+    }
+
+    // null if a bulk write is already queued or in progress on this characteristic
+    Session create(String remoteId,
+                   BluetoothGatt gatt,
+                   BluetoothGattCharacteristic characteristic,
+                   byte[] data,
+                   int chunkSize,
+                   HashMap<String, Object> identity)
+    {
+        Session s = new Session(remoteId, gatt, characteristic, data, chunkSize, identity);
+        Session existing = mSessions.putIfAbsent(characteristic, s);
+        if (existing == null) {
+            return s;
+        }
+        // timed out while writing a chunk, & still waiting for its callback. see: finish
+        synchronized (existing) {
+            if (existing.reported == false) {
+                return null;
+            }
+        }
+        return mSessions.replace(characteristic, existing, s) ? s : null;
+    }
+
+    // writes the first chunk. returns an error, or null. data must not be empty
+    String start(Session s)
+    {
+        synchronized (s) {
+            if (s.finished) {
+                return "cancelled"; // while queued
+            }
+            s.started = true;
+            s.startNanos = SystemClock.elapsedRealtimeNanos();
+            s.lastProgressNanos = s.startNanos;
+            String error = s.writeNext();
+            if (error != null) {
+                mSessions.remove(s.characteristic, s);
+            }
+            return error;
+        }
+    }
+
+    // onCharacteristicWrite. returns false if not a bulk write. binder thread
+    boolean onWrite(BluetoothGattCharacteristic chr, int status, String statusString)
+    {
+        Session s = mSessions.get(chr);
+        if (s == null || s.started == false) {
+            return false; // queued: a plain write
+        }
+
+        boolean finished;
+        synchronized (s) {
+            s.writing = false;
+            finished = s.finished;
+        }
+
+        // the chunk written when it was cancelled, or timed out. swallowed
+        if (finished) {
+            mSessions.remove(chr, s);
+            finish(s, status, statusString, false);
+            return true;
+        }
+
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            finish(s, status, statusString, false);
+            return true;
+        }
+
+        boolean done;
+        boolean progress = false;
+        String error = null;
+        synchronized (s) {
+            done = s.offset >= s.data.length;
+            if (done == false && s.retrying == false) { // retrying: the retry writes the next chunk
+                error = s.writeNext();
+                long now = SystemClock.elapsedRealtimeNanos();
+                if (error == null && now - s.lastProgressNanos >= PROGRESS_INTERVAL_MS * 1000000) {
+                    s.lastProgressNanos = now;
+                    progress = true;
+                }
+            }
+        }
+
+        if (done || error != null) {
+            finish(s, error == null ? BluetoothGatt.GATT_SUCCESS : BluetoothGatt.GATT_FAILURE, error, false);
+        } else if (progress) {
+            mReporter.report(s, false, BluetoothGatt.GATT_SUCCESS, null);
+        }
+        return true;
+    }
+
+    // failed to start, or timed out. reported right away
+    void abort(Session s, String error)
+    {
+        finish(s, BluetoothGatt.GATT_FAILURE, error, false);
+    }
+
+    // returns false if there is no bulk write on this characteristic.
+    // If a chunk is being written, done is reported from its callback
+    boolean cancel(BluetoothGattCharacteristic chr, String error)
+    {
+        Session s = mSessions.get(chr);
+        if (s == null) {
+            return false;
+        }
+        finish(s, BluetoothGatt.GATT_FAILURE, error, true);
+        return true;
+    }
+
+    // the submit failed. forgets the session, without a report
+    void discard(Session s)
+    {
+        mSessions.remove(s.characteristic, s);
+    }
+
+    void clearDevice(String remoteId, String error)
+    {
+        List<Session> sessions = new ArrayList<>();
+        for (Session s : mSessions.values()) {
+            if (s.remoteId.equals(remoteId)) {
+                sessions.add(s);
+            }
+        }
+        // disconnected: no callbacks will come
+        for (Session s : sessions) {
+            abort(s, error);
+            mSessions.remove(s.characteristic, s);
+        }
+    }
+
+    void clearAll(String error)
+    {
+        for (Session s : new ArrayList<>(mSessions.values())) {
+            abort(s, error);
+            mSessions.remove(s.characteristic, s);
+        }
+    }
+
+    // waitForChunk: if a chunk is being written, report from its callback instead. see: onWrite
+    private void finish(Session s, int status, String error, boolean waitForChunk)
+    {
+        boolean writing;
+        synchronized (s) {
+            // only once
+            if (s.reported) {
+                return;
+            }
+            // the first reason wins
+            if (s.finished == false) {
+                s.finished = true;
+                s.finalStatus = status;
+                s.finalError = error;
+            }
+            if (waitForChunk && s.writing) {
+                return;
+            }
+            s.reported = true;
+            writing = s.writing;
+        }
+        // still writing (timed out): stays registered, to swallow the callback
+        if (writing == false) {
+            mSessions.remove(s.characteristic, s);
+        }
+        mHandler.removeCallbacks(s.retry);
+        mReporter.report(s, true, s.finalStatus, s.finalError);
+    }
+}
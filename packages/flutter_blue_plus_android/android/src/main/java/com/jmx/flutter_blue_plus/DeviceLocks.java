@@ -0,0 +1,76 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.util.concurrent.Semaphore;
+
+// Per-device locks, striped by remote_id, plus one global section
+// for adapter-level operations (scanning, turnOn, flutterRestart, ...).
+//
+// perf: a single mutex serializes every device behind the slowest one.
+// Here, operations on different devices only contend if their
+// remote_ids hash to the same stripe.
+//
+// The global section is a semaphore with one permit per stripe:
+//   - device operations take 1 permit, then their stripe
+//   - adapter operations take every permit, so they exclude all devices
+// It is fair, so adapter operations are not starved by a busy device.
+// Stripes are fair too, so calls for the same device, waiting on
+// concurrent task queue threads, run in the order they arrived.
+//
+// Lock order is always: global, then stripe. A thread holds at most one stripe.
+class DeviceLocks
+{
+    // power of 2. More stripes than concurrent connections android allows
+    static final int STRIPES = 16;
+
+    private final Semaphore mGlobal = new Semaphore(STRIPES, true);
+    private final Semaphore[] mStripes = new Semaphore[STRIPES];
+
+    DeviceLocks()
+    {
+        for (int i = 0; i < STRIPES; i++) {
+            mStripes[i] = new Semaphore(1, true);
+        }
+    }
+
+    // returns the stripe, to pass to releaseDevice
+    int acquireDevice(String remoteId)
+    {
+        int stripe = stripe(remoteId);
+        mGlobal.acquireUninterruptibly(1);
+        mStripes[stripe].acquireUninterruptibly();
+        return stripe;
+    }
+
+    void releaseDevice(int stripe)
+    {
+        mStripes[stripe].release();
+        mGlobal.release(1);
+    }
+
+    // excludes every device
+    void acquireAdapter()
+    {
+        mGlobal.acquireUninterruptibly(STRIPES);
+    }
+
+    void releaseAdapter()
+    {
+        mGlobal.release(STRIPES);
+    }
+
+    // the same device must always map to the same stripe,
+    // whatever the case of its address
+    static int stripe(String remoteId)
+    {
+        int h = 0;
+        for (int i = 0; i < remoteId.length(); i++) {
+            h = 31 * h + Character.toUpperCase(remoteId.charAt(i));
+        }
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,225 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.os.Handler;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Delivers events to dart on the main thread.
+//
+// perf: events come from binder threads, the task queue & the main thread.
+// Instead of a post per event, they are queued (lock-free, many producers)
+// and a single post drains them, delivering many events per looper pass.
+//
+// Events go in one of two lanes:
+//   - control: connection state, mtu, reads, writes, ... always drained first
+//   - data:    scan results & notifications. drained in bounded batches
+// so control events are never stuck behind a flood of scan results.
+// Scan results use the data lane by method name. Others pick their lane
+// explicitly: OnCharacteristicReceived is a notification or the completion
+// of a read, and only notifications use the data lane.
+//
+// Events of the same device keep their order across lanes: before a control
+// event of a device, its data events posted earlier are delivered. So a
+// notification never arrives after the disconnection that followed it.
+//
+// Values for other channels (see: NotifyStreams, BinaryChannel) use the data lane too.
+class EventDispatcher
+{
+    interface Sink {
+        void send(String method, Object data);
+    }
+
+    // see: postTo
+    interface Target {
+        void deliver(Object data);
+    }
+
+    static final int CONTROL = 0;
+    static final int DATA = 1;
+
+    // data events per looper pass. The rest wait for the next pass,
+    // so the main thread stays responsive during heavy scanning
+    static final int MAX_DATA_PER_PASS = 64;
+
+    private static class Event
+    {
+        final long seq;
+        final String remoteId; // null: not about a device
+        final Target target;   // null: the method channel
+        final String method;
+        final Object data;
+
+        Event(long seq, String remoteId, Target target, String method, Object data)
+        {
+            this.seq = seq;
+            this.remoteId = remoteId;
+            this.target = target;
+            this.method = method;
+            this.data = data;
+        }
+    }
+
+    private final Handler handler;
+    private final Sink sink;
+    private final ConcurrentLinkedQueue<Event> control = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Event> data = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong nextSeq = new AtomicLong(0);
+    private final AtomicInteger deviceData = new AtomicInteger(0); // queued data events with a remoteId
+    private final Runnable drainRunnable = this::drain;
+
+    EventDispatcher(Handler handler, Sink sink)
+    {
+        this.handler = handler;
+        this.sink = sink;
+    }
+
+    static int laneOf(String method)
+    {
+        switch (method) {
+            case "OnScanResponse":
+            case "OnScanResponseBinary":
+            case "OnBackgroundScanResponse":
+                return DATA;
+            default:
+                return CONTROL;
+        }
+    }
+
+    // any thread
+    void post(String method, Object data)
+    {
+        post(laneOf(method), method, data);
+    }
+
+    // any thread
+    void post(int lane, String method, Object data)
+    {
+        add(lane, new Event(nextSeq.getAndIncrement(), remoteIdOf(data), null, method, data));
+    }
+
+    // any thread. delivered to 'target' on the main thread, in the data lane
+    void postTo(Target target, String remoteId, Object data)
+    {
+        postTo(DATA, target, remoteId, data);
+    }
+
+    // any thread. delivered to 'target' on the main thread
+    void postTo(int lane, Target target, String remoteId, Object data)
+    {
+        add(lane, new Event(nextSeq.getAndIncrement(), remoteId, target, null, data));
+    }
+
+    private void add(int lane, Event e)
+    {
+        if (lane == DATA) {
+            if (e.remoteId != null) {
+                deviceData.incrementAndGet();
+            }
+            this.data.add(e);
+        } else {
+            control.add(e);
+        }
+        schedule();
+    }
+
+    // see: bmBluetoothDevice, BmCharacteristicData, ...
+    private static String remoteIdOf(Object data)
+    {
+        if (data instanceof Map) {
+            Object remoteId = ((Map<?, ?>) data).get("remote_id");
+            if (remoteId instanceof String) {
+                return (String) remoteId;
+            }
+        }
+        return null;
+    }
+
+    private void schedule()
+    {
+        // at most one pending post. the drain picks up everything queued before it runs
+        if (scheduled.compareAndSet(false, true)) {
+            handler.post(drainRunnable);
+        }
+    }
+
+    // main thread
+    private void drain()
+    {
+        // clear first: events queued while draining schedule another pass
+        scheduled.set(false);
+
+        drainControl();
+
+        Event e;
+        int n = 0;
+        while (n < MAX_DATA_PER_PASS && (e = data.poll()) != null) {
+            delivered(e);
+            deliver(e);
+            n++;
+            // control events that arrived meanwhile go first
+            drainControl();
+        }
+
+        if (data.isEmpty() == false) {
+            schedule();
+        }
+    }
+
+    private void drainControl()
+    {
+        Event e;
+        while ((e = control.poll()) != null) {
+            if (e.remoteId != null) {
+                drainDataBefore(e);
+            }
+            deliver(e);
+        }
+    }
+
+    // delivers the data events of the same device, posted before 'barrier'
+    private void drainDataBefore(Event barrier)
+    {
+        if (deviceData.get() == 0) {
+            return; // common case: no notifications waiting
+        }
+        Iterator<Event> it = data.iterator();
+        while (it.hasNext()) {
+            Event e = it.next();
+            if (e.seq >= barrier.seq) {
+                break;
+            }
+            if (barrier.remoteId.equals(e.remoteId)) {
+                it.remove();
+                delivered(e);
+                deliver(e);
+            }
+        }
+    }
+
+    // a data event left the queue
+    private void delivered(Event e)
+    {
+        if (e.remoteId != null) {
+            deviceData.decrementAndGet();
+        }
+    }
+
+    private void deliver(Event e)
+    {
+        if (e.target == null) {
+            sink.send(e.method, e.data);
+        } else {
+            e.target.deliver(e.data);
+        }
+    }
+}
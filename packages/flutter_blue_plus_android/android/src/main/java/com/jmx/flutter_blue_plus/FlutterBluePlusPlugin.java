@@ -33,6 +33,7 @@ import android.location.LocationManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.os.ParcelUuid;
 import android.provider.Settings;
 import android.util.Log;
@@ -49,10 +50,14 @@ import java.util.UUID;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.PrintWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -78,6 +83,7 @@ import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.PluginRegistry.RequestPermissionsResultListener;
 import io.flutter.plugin.common.PluginRegistry.ActivityResultListener;
+import io.flutter.plugin.common.StandardMethodCodec;
 
 public class FlutterBluePlusPlugin implements
     FlutterPlugin,
@@ -88,22 +94,48 @@ public class FlutterBluePlusPlugin implements
 {
     private static final String TAG = "[FBP-Android]";
 
-    private LogLevel logLevel = LogLevel.DEBUG;
+    private volatile LogLevel logLevel = LogLevel.DEBUG;
 
-    private Context context;
-    private MethodChannel methodChannel;
+    // method calls run on a background task queue, while callbacks, receivers
+    // & the activity run on the main thread. see: onAttachedToEngine
+    // context & pluginBinding are nulled on detach, while calls may still run:
+    // read them once into a local, & check for null
+    private volatile Context context;
+    private MethodChannel methodChannel; // main thread
     private static final String NAMESPACE = "flutter_blue_plus";
 
-    private BluetoothManager mBluetoothManager;
-    private BluetoothAdapter mBluetoothAdapter;
-    private boolean mIsScanning = false;
+    private volatile BluetoothManager mBluetoothManager;
+    private volatile BluetoothAdapter mBluetoothAdapter;
+    private volatile boolean mIsScanning = false;
+    private volatile boolean mScanBatched = false;
+    private volatile boolean mScanBinary = false;
+    private volatile boolean mScanPeriodicOnly = false;
 
-    private FlutterPluginBinding pluginBinding;
-    private ActivityPluginBinding activityBinding;
+    private volatile FlutterPluginBinding pluginBinding;
+    private volatile ActivityPluginBinding activityBinding;
 
     static final private String CCCD = "2902";
-
-    private final Semaphore mMethodCallMutex = new Semaphore(1);
+    static final private UUID CCCD_UUID = UuidCache.fromShort(0x2902);
+    static final private UUID GATT_SERVICE_UUID = UuidCache.fromShort(0x1801);
+    static final private UUID SERVICE_CHANGED_UUID = UuidCache.fromShort(0x2A05);
+
+    private final DeviceLocks mLocks = new DeviceLocks();
+
+    // see: runExclusive. its thread ends when idle
+    private final ThreadPoolExecutor mExclusive =
+        new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final EventDispatcher mEvents = new EventDispatcher(mMainHandler, this::sendEvent);
+    private final NotifyStreams mNotifyStreams = new NotifyStreams(mEvents);
+    private final GattHandles mGattHandles = new GattHandles();
+    private final BinaryChannel mBinaryChannel = new BinaryChannel(mGattHandles, mEvents, this::binaryWrite);
+    private final Map<BluetoothGattCharacteristic, BinaryWrite> mBinaryWrites = new ConcurrentHashMap<>();
+    private final GattOpQueue mGattOps = new GattOpQueue(mMainHandler);
+    private final BulkWrites mBulkWrites = new BulkWrites(mMainHandler, this::bulkWriteChunk, this::bulkWriteReport);
+    private final BatchReads mBatchReads = new BatchReads(
+        (gatt, chr) -> gatt.readCharacteristic(chr) ? null : "gatt.readCharacteristic() returned false",
+        this::batchReadReport);
     private final Map<String, BluetoothGatt> mConnectedDevices = new ConcurrentHashMap<>();
     private final Map<String, BluetoothGatt> mCurrentlyConnectingDevices = new ConcurrentHashMap<>();
     private final Map<String, BluetoothDevice> mBondingDevices = new ConcurrentHashMap<>();
@@ -112,15 +144,69 @@ public class FlutterBluePlusPlugin implements
     private final Map<String, BluetoothGatt> mAutoConnected = new ConcurrentHashMap<>();
     private final Map<String, byte[]> mWriteChr = new ConcurrentHashMap<>();
     private final Map<String, byte[]> mWriteDesc = new ConcurrentHashMap<>();
-    private final Map<String, String> mAdvSeen = new ConcurrentHashMap<>();
-    private final Map<String, Integer> mScanCounts = new ConcurrentHashMap<>();
-    private HashMap<String, Object> mScanFilters = new HashMap<String, Object>();
+    private final ScanPipeline mScanPipeline = new ScanPipeline();
+    private volatile ScanTraceRecorder mScanTrace = null;
+    private final ScanCoalescer<ScanResult> mScanCoalescer =
+        new ScanCoalescer<>(mMainHandler, this::sendScanResults);
+    private final ScanWireEncoder mScanWireEncoder = new ScanWireEncoder();
+    private final ScanSessionManager<HwScan> mScanSession =
+        new ScanSessionManager<>(mMainHandler, new ScanSessionManager.Scanner<HwScan>() {
+            @Override
+            public boolean start(HwScan scan) {
+                BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
+                if (scanner == null) {
+                    log(LogLevel.ERROR, "startScan: getBluetoothLeScanner() is null");
+                    return false;
+                }
+                log(LogLevel.DEBUG, "calling startScan");
+                scanner.startScan(scan.filters, scan.settings, getScanCallback());
+                return true;
+            }
+            @Override
+            public void stop() {
+                BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
+                if (scanner == null) {
+                    return;
+                }
+                try {
+                    log(LogLevel.DEBUG, "calling stopScan");
+                    scanner.stopScan(getScanCallback());
+                } catch (IllegalStateException e) {
+                    // adapter turned off while the stop was deferred
+                    log(LogLevel.WARNING, "stopScan: " + e.getMessage());
+                }
+            }
+            @Override
+            public void log(LogLevel level, String message) {
+                FlutterBluePlusPlugin.this.log(level, message);
+            }
+        });
+
+    // see: ScanResultReceiver. results arrive on the main thread.
+    // Only sent once dart listens (see: flushBackgroundScan), until then they stay buffered
+    private volatile boolean mBackgroundScanDelivering = false;
+    private final ScanResultReceiver.Listener mBackgroundScanListener = () -> {
+        if (mBackgroundScanDelivering) {
+            sendBackgroundScanResults();
+        }
+    };
 
-    private final Map<Integer, OperationOnPermission> operationsOnPermission = new HashMap<>();
-    private int lastEventId = 1452;
+    private final Map<Integer, OperationOnPermission> operationsOnPermission = new ConcurrentHashMap<>();
+    private final AtomicInteger lastEventId = new AtomicInteger(1452);
 
     private final int enableBluetoothRequestCode = 13106;
 
+    // a write from the binary channel, waiting for onCharacteristicWrite
+    private static class BinaryWrite {
+        final GattHandles.Entry entry;
+        final int seq;
+
+        BinaryWrite(GattHandles.Entry entry, int seq) {
+            this.entry = entry;
+            this.seq = seq;
+        }
+    }
+
     private interface OperationOnPermission {
         void op(boolean granted, String permission);
     }
@@ -130,63 +216,58 @@ public class FlutterBluePlusPlugin implements
     // returns 128-bit representation
     public String uuid128(Object uuid)
     {
-        if (!(uuid instanceof UUID) && !(uuid instanceof String)) {
-            throw new IllegalArgumentException("input must be UUID or String");
-        }
-
-        String s = uuid.toString();
-
-        if (s.length() == 4)
-        {
-            // 16-bit uuid
-            return String.format("0000%s-0000-1000-8000-00805f9b34fb", s).toLowerCase();
-        }
-        else if (s.length() == 8)
-        {
-            // 32-bit uuid
-            return String.format("%s-0000-1000-8000-00805f9b34fb", s).toLowerCase();
+        if (uuid instanceof UUID) {
+            return UuidCache.str128((UUID) uuid);
         }
-        else
-        {
-            // 128-bit uuid
-            return s.toLowerCase();
+        if (!(uuid instanceof String)) {
+            throw new IllegalArgumentException("input must be UUID or String");
         }
+        UUID u = UuidCache.parse((String) uuid);
+        return u != null ? UuidCache.str128(u) : ((String) uuid).toLowerCase();
     }
 
     // returns shortest representation
     public String uuidStr(Object uuid)
     {
-        String s = uuid128(uuid);
-        boolean starts = s.startsWith("0000");
-        boolean ends = s.endsWith("-0000-1000-8000-00805f9b34fb");
-        if (starts && ends)
-        {
-            // 16-bit
-            return s.substring(4,8);
+        if (uuid instanceof UUID) {
+            return UuidCache.str((UUID) uuid);
         }
-        else if (ends)
-        {
-            // 32-bit
-                return s.substring(0,8);
+        if (!(uuid instanceof String)) {
+            throw new IllegalArgumentException("input must be UUID or String");
         }
-        else
-        {
-            // 128-bit
-            return s;
+        UUID u = UuidCache.parse((String) uuid);
+        return u != null ? UuidCache.str(u) : ((String) uuid).toLowerCase();
+    }
+
+    // device calls can run concurrently with callbacks, so initialize once
+    private synchronized void initAdapter()
+    {
+        Context context = this.context;
+        if (mBluetoothAdapter == null && context != null) {
+            log(LogLevel.DEBUG, "initializing BluetoothAdapter");
+            mBluetoothManager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
+            mBluetoothAdapter = mBluetoothManager != null ? mBluetoothManager.getAdapter() : null;
         }
     }
 
-    private void acquireMutex(@NonNull Semaphore mutex)
+    // calls with a remote_id only lock that device. see: DeviceLocks
+    private static String lockRemoteId(@NonNull MethodCall call)
     {
-        boolean mutexAcquired = false;
-        while (mutexAcquired == false) {
-            try {
-                mutex.acquire();
-                mutexAcquired = true;
-            } catch (InterruptedException e) {
-                log(LogLevel.ERROR, "failed to acquire mutex, retrying");
-            }
+        if (call.arguments instanceof Map) {
+            Object remoteId = ((Map<?, ?>) call.arguments).get("remote_id");
+            return remoteId instanceof String ? (String) remoteId : null;
         }
+        // these take the remote_id itself as argument
+        switch (call.method) {
+            case "disconnect":
+            case "discoverServices":
+            case "readRssi":
+            case "getBondState":
+            case "removeBond":
+            case "clearGattCache":
+                return call.arguments instanceof String ? (String) call.arguments : null;
+        }
+        return null;
     }
 
     @Override
@@ -198,9 +279,19 @@ public class FlutterBluePlusPlugin implements
 
         this.context = (Application) pluginBinding.getApplicationContext();
 
-        methodChannel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), NAMESPACE + "/methods");
+        // perf: method calls run off the main thread, so BLE calls (binder IPC,
+        // gatt lookups) do not cause UI jank, and the UI does not delay BLE calls.
+        // concurrent: a slow call on one device does not delay other devices.
+        // DeviceLocks serializes calls on the same device, & adapter-level calls
+        BinaryMessenger messenger = flutterPluginBinding.getBinaryMessenger();
+        BinaryMessenger.TaskQueue taskQueue =
+            messenger.makeBackgroundTaskQueue(new BinaryMessenger.TaskQueueOptions().setIsSerial(false));
+        methodChannel = new MethodChannel(messenger, NAMESPACE + "/methods", StandardMethodCodec.INSTANCE, taskQueue);
         methodChannel.setMethodCallHandler(this);
 
+        // writes & notifications, see: setOptions
+        mBinaryChannel.attach(messenger, messenger.makeBackgroundTaskQueue());
+
         IntentFilter filterAdapter = new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED);
         this.context.registerReceiver(mBluetoothAdapterStateReceiver, filterAdapter);
 
@@ -209,6 +300,10 @@ public class FlutterBluePlusPlugin implements
 
         IntentFilter filterBond = new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
         this.context.registerReceiver(mBluetoothBondStateReceiver, filterBond);
+
+        // background scan results, see: flushBackgroundScan
+        mBackgroundScanDelivering = false;
+        ScanResultReceiver.setListener(mBackgroundScanListener);
     }
 
     @Override
@@ -216,21 +311,22 @@ public class FlutterBluePlusPlugin implements
     {
         log(LogLevel.DEBUG, "onDetachedFromEngine");
 
+        detachFromEngine();
+
+        // after in-flight method calls, which run on the task queue
+        runExclusive(this::releaseAdapterState);
+    }
+
+    // main thread
+    private void detachFromEngine()
+    {
         invokeMethodUIThread("OnDetachedFromEngine", new HashMap<>());
 
         pluginBinding = null;
 
-        // stop scanning
-        if (mBluetoothAdapter != null && mIsScanning) {
-            BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
-            if (scanner != null) {
-                log(LogLevel.DEBUG, "calling stopScan (OnDetachedFromEngine)");
-                scanner.stopScan(getScanCallback());
-                mIsScanning = false;
-            }
-        }
-
-        disconnectAllDevices("onDetachedFromEngine");
+        // keep buffering background scan results until the next engine
+        ScanResultReceiver.setListener(null);
+        mBackgroundScanDelivering = false;
 
         context.unregisterReceiver(mBluetoothBondStateReceiver);
         context.unregisterReceiver(mBluetoothPairRequestReceiver);
@@ -240,6 +336,26 @@ public class FlutterBluePlusPlugin implements
         methodChannel.setMethodCallHandler(null);
         methodChannel = null;
 
+        mBinaryChannel.detach();
+    }
+
+    // holding the adapter lock. see: onDetachedFromEngine
+    private void releaseAdapterState()
+    {
+        // stop scanning
+        if (mBluetoothAdapter != null && mIsScanning) {
+            log(LogLevel.DEBUG, "stopping scan (OnDetachedFromEngine)");
+            mScanSession.reset();
+            mIsScanning = false;
+            mScanCoalescer.reset();
+        }
+        closeScanTrace();
+
+        disconnectAllDevices("onDetachedFromEngine");
+
+        mGattHandles.clear();
+        mBinaryWrites.clear();
+
         mBluetoothAdapter = null;
         mBluetoothManager = null;
     }
@@ -293,17 +409,21 @@ public class FlutterBluePlusPlugin implements
     public void onMethodCall(@NonNull MethodCall call,
                                  @NonNull Result result)
     {
-        try {
-            acquireMutex(mMethodCallMutex);
+        // device operations: that device only.
+        // everything else: adapter-level, exclusive
+        String lockRemoteId = lockRemoteId(call);
+        int lockStripe = -1;
+        if (lockRemoteId != null) {
+            lockStripe = mLocks.acquireDevice(lockRemoteId);
+        } else {
+            mLocks.acquireAdapter();
+        }
 
+        try {
             log(LogLevel.DEBUG, "onMethodCall: " + call.method);
 
             // initialize adapter
-            if (mBluetoothAdapter == null) {
-                log(LogLevel.DEBUG, "initializing BluetoothAdapter");
-                mBluetoothManager = (BluetoothManager) this.context.getSystemService(Context.BLUETOOTH_SERVICE);
-                mBluetoothAdapter = mBluetoothManager != null ? mBluetoothManager.getAdapter() : null;
-            }
+            initAdapter();
 
             // check that we have an adapter, except for
             // the functions that do not need it
@@ -322,6 +442,11 @@ public class FlutterBluePlusPlugin implements
 
                 case "flutterRestart":
                 {
+                    // dart must opt in again
+                    mBinaryChannel.setEnabled(false);
+                    mGattHandles.clear();
+                    mBinaryWrites.clear();
+
                     // no adapter?
                     if (mBluetoothAdapter == null) {
                         result.success(0); // no work to do
@@ -329,12 +454,13 @@ public class FlutterBluePlusPlugin implements
                     }
 
                     // stop scanning
-                    BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
-                    if(scanner != null && mIsScanning) {
-                        log(LogLevel.DEBUG, "calling stopScan (flutterRestart)");
-                        scanner.stopScan(getScanCallback());
+                    if (mIsScanning) {
+                        log(LogLevel.DEBUG, "stopping scan (flutterRestart)");
+                        mScanSession.reset();
                         mIsScanning = false;
+                        mScanCoalescer.reset();
                     }
+                    closeScanTrace();
 
                     // all dart state is reset after flutter restart
                     // (i.e. Hot Restart) so also reset native state
@@ -348,11 +474,55 @@ public class FlutterBluePlusPlugin implements
 
                 case "setOptions":
                 {
-                    // Currently ignored on Android
+                    // see: BmSetOptionsRequest
+                    // showPowerAlert & restoreState are ignored on Android
+                    HashMap<String, Object> data = call.arguments();
+                    if (data.get("android_binary_channel") != null) {
+                        mBinaryChannel.setEnabled((boolean) data.get("android_binary_channel"));
+                    }
                     result.success(true);
                     break;
                 }
 
+                case "registerGattHandle":
+                {
+                    // a handle for the binary channel. see: GattHandles
+                    HashMap<String, Object> data = call.arguments();
+                    String remoteId =           (String) data.get("remote_id");
+                    String primaryServiceUuid = (String) data.get("primary_service_uuid");
+                    String serviceUuid =        (String) data.get("service_uuid");
+                    String characteristicUuid = (String) data.get("characteristic_uuid");
+                    Integer instanceId =       (Integer) data.get("instance_id");
+
+                    // check connection
+                    BluetoothGatt gatt = mConnectedDevices.get(remoteId);
+                    if(gatt == null) {
+                        result.error("registerGattHandle", "device is disconnected", null);
+                        break;
+                    }
+
+                    // find characteristic
+                    ChrFound found = locateCharacteristic(gatt, primaryServiceUuid, serviceUuid, characteristicUuid, instanceId);
+                    if (found.error != null) {
+                        result.error("registerGattHandle", found.error, null);
+                        break;
+                    }
+
+                    // null: out of handles. dart uses the method channel
+                    GattHandles.Entry e = mGattHandles.register(remoteId, found.characteristic);
+                    if (e == null) {
+                        result.success(null);
+                        break;
+                    }
+
+                    HashMap<String, Object> response = new HashMap<>();
+                    response.put("device", e.device);
+                    response.put("generation", e.generation);
+                    response.put("characteristic", e.index);
+                    result.success(response);
+                    break;
+                }
+
                 case "connectedCount":
                 {
                     log(LogLevel.DEBUG, "connectedPeripherals: " + mConnectedDevices.size());
@@ -450,7 +620,12 @@ public class FlutterBluePlusPlugin implements
 
                         Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
 
-                        activityBinding.getActivity().startActivityForResult(enableBtIntent, enableBluetoothRequestCode);
+                        runOnMainThread(() -> {
+                            ActivityPluginBinding binding = activityBinding;
+                            if (binding != null) {
+                                binding.getActivity().startActivityForResult(enableBtIntent, enableBluetoothRequestCode);
+                            }
+                        });
 
                         result.success(true);
                         return;
@@ -496,17 +671,17 @@ public class FlutterBluePlusPlugin implements
                 {
                     // see: BmScanSettings
                     HashMap<String, Object> data = call.arguments();
-                    List<String> withServices =    (List<String>) data.get("with_services");
-                    List<String> withRemoteIds =   (List<String>) data.get("with_remote_ids");
-                    List<String> withNames =       (List<String>) data.get("with_names");
                     List<String> withKeywords =    (List<String>) data.get("with_keywords");
-                    List<Object> withMsd =         (List<Object>) data.get("with_msd");
-                    List<Object> withServiceData = (List<Object>) data.get("with_service_data");
-                    boolean continuousUpdates =         (boolean) data.get("continuous_updates");
                     boolean androidLegacy =             (boolean) data.get("android_legacy");
                     int androidScanMode =                   (int) data.get("android_scan_mode");
                     boolean androidUsesFineLocation =   (boolean) data.get("android_uses_fine_location");
                     boolean androidCheckLocationServices = (boolean) data.get("android_check_location_services");
+                    int androidReportDelay =                (int) data.get("android_report_delay");
+                    int androidCoalesceWindow =             (int) data.get("android_coalesce_window");
+                    int androidCoalesceMaxSize =            (int) data.get("android_coalesce_max_size");
+                    boolean androidBinaryScan =         (boolean) data.get("android_binary_scan");
+                    String androidTracePath =            (String) data.get("android_trace_path");
+                    boolean androidPeriodicOnly =       (boolean) data.get("android_periodic_only");
 
                     if (androidCheckLocationServices && !isLocationEnabled()) {
                         result.error("startScan", "Location services are required for Bluetooth scan", null);
@@ -551,6 +726,9 @@ public class FlutterBluePlusPlugin implements
                             return;
                         }
 
+                        // the previous scan's flushed batch is no longer waited for. see: stopScan
+                        mScanSession.endFlush();
+
                         // build scan settings
                         ScanSettings.Builder builder = new ScanSettings.Builder();
                         builder.setScanMode(androidScanMode);
@@ -558,30 +736,54 @@ public class FlutterBluePlusPlugin implements
                             builder.setPhy(ScanSettings.PHY_LE_ALL_SUPPORTED);
                             builder.setLegacy(androidLegacy);
                         }
-                        ScanSettings settings = builder.build();
 
-                        // set filters
-                        List<ScanFilter> filters = new ArrayList<>();
+                        // batched delivery. The controller buffers advertisements
+                        // and delivers them all at once via onBatchScanResults
+                        mScanBatched = false;
+                        if (androidReportDelay > 0) {
+                            if (mBluetoothAdapter.isOffloadedScanBatchingSupported()) {
+                                builder.setReportDelay(androidReportDelay);
+                                mScanBatched = true;
+                            } else {
+                                log(LogLevel.WARNING, "offloaded scan batching is not supported. coalescing instead");
+                            }
+                        }
 
-                        // services
-                        for (int i = 0; i < withServices.size(); i++) {
-                            ParcelUuid s = ParcelUuid.fromString(uuid128(withServices.get(i)));
-                            ScanFilter f = new ScanFilter.Builder().setServiceUuid(s).build();
-                            filters.add(f);
+                        // coalesce results on our side. This is also the fallback
+                        // when the controller cannot batch advertisements itself
+                        int coalesceWindow = androidCoalesceWindow;
+                        if (androidReportDelay > 0 && mScanBatched == false) {
+                            coalesceWindow = Math.max(coalesceWindow, androidReportDelay);
                         }
+                        ScanSettings settings = builder.build();
+
+                        // see: ScanWireEncoder
+                        mScanBinary = androidBinaryScan;
 
-                        // remoteIds
-                        for (int i = 0; i < withRemoteIds.size(); i++) {
-                            String address = withRemoteIds.get(i);
-                            ScanFilter f = new ScanFilter.Builder().setDeviceAddress(address).build();
-                            filters.add(f);
+                        // periodic advertising is only visible to extended (non-legacy) scans
+                        mScanPeriodicOnly = androidPeriodicOnly;
+                        if (androidPeriodicOnly && (Build.VERSION.SDK_INT < 26 || androidLegacy)) {
+                            log(LogLevel.WARNING, "androidPeriodicOnly requires android 8.0 & androidLegacy false. " +
+                                "no periodic advertisers will be found");
                         }
 
-                        // names
-                        for (int i = 0; i < withNames.size(); i++) {
-                            String name = withNames.get(i);
-                            ScanFilter f = new ScanFilter.Builder().setDeviceName(name).build();
-                            filters.add(f);
+                        // set filters
+                        List<ScanFilter> filters = new ArrayList<>();
+
+                        // services, remoteIds, names, msd, service data.
+                        // loosened to fit the hardware filter slots. see: ScanFilterPlan
+                        // also clears seen devices, see: ScanPipeline
+                        ScanFilterPlan plan = mScanPipeline.configure(data, Build.VERSION.SDK_INT >= 33);
+                        for (ScanFilterPlan.HwFilter hw : plan.hardware) {
+                            filters.add(buildScanFilter(hw));
+                        }
+                        if (plan.fallback) {
+                            log(LogLevel.WARNING, "scan filters: " + plan.requested + " requested, more than " +
+                                "the hardware slots even loosened. scanning without hardware filters, " +
+                                "exact match in software");
+                        } else if (plan.software) {
+                            log(LogLevel.DEBUG, "scan filters: " + plan.requested + " requested, " +
+                                plan.hardware.size() + " loosened to fit hardware, exact match in software");
                         }
 
                         // keywords
@@ -597,65 +799,227 @@ public class FlutterBluePlusPlugin implements
                             }
                         }
 
-                        // msd
-                        for (int i = 0; i < withMsd.size(); i++) {
-                            HashMap<String, Object> m = (HashMap<String, Object>) withMsd.get(i);
-                            int id =          (int) m.get("manufacturer_id");
-                            byte[] mdata = (byte[]) m.get("data");
-                            byte[] mask =  (byte[]) m.get("mask");
-                            ScanFilter f = null;
-                            if (mask.length == 0) {
-                                f = new ScanFilter.Builder().setManufacturerData(id, mdata).build();
-                            } else {
-                                f = new ScanFilter.Builder().setManufacturerData(id, mdata, mask).build();
+                        // record raw results? see: ScanTraceRecorder
+                        closeScanTrace();
+                        if (androidTracePath != null) {
+                            try {
+                                mScanTrace = ScanTraceRecorder.open(new File(androidTracePath));
+                            } catch (IOException e) {
+                                log(LogLevel.WARNING, "scan trace: cannot open " + androidTracePath + ": " + e.getMessage());
                             }
-                            filters.add(f);
                         }
 
-                        // service data
-                        for (int i = 0; i < withServiceData.size(); i++) {
-                            HashMap<String, Object> m = (HashMap<String, Object>) withServiceData.get(i);
-                            ParcelUuid s = ParcelUuid.fromString(uuid128((String) m.get("service")));
-                            byte[] mdata = (byte[]) m.get("data");
-                            byte[] mask =  (byte[]) m.get("mask");
-                            ScanFilter f = null;
-                            if (mask.length == 0) {
-                                f = new ScanFilter.Builder().setServiceData(s, mdata).build();
+                        mScanCoalescer.configure(coalesceWindow, androidCoalesceMaxSize);
+
+                        // the session manager avoids android's scan throttling,
+                        // and reuses the running hardware scan if nothing changed
+                        int reportDelay = mScanBatched ? androidReportDelay : 0;
+                        mScanSession.start(new HwScan(filters, settings,
+                            Arrays.asList(androidScanMode, androidLegacy, reportDelay)));
+
+                        mIsScanning = true;
+
+                        // see: flutter_blue_plus_android.dart startScan
+                        HashMap<String, Object> response = new HashMap<>();
+                        response.put("hw_filter_fallback", plan.fallback ? 1 : 0);
+                        result.success(response);
+                    });
+                    break;
+                }
+
+                case "stopScan":
+                {
+                    BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
+
+                    // send whatever we are still holding on to
+                    Runnable flushCoalescer = () -> {
+                        mScanCoalescer.flush();
+                        mScanCoalescer.reset();
+                    };
+
+                    // the hardware scan is stopped shortly after,
+                    // unless a new scan with the same settings starts
+                    if (scanner != null && mScanBatched && mIsScanning) {
+                        // deliver any advertisements still buffered by the controller. They arrive
+                        // later, in onBatchScanResults, so they stay wanted until then
+                        mScanSession.stopAfterFlush(flushCoalescer);
+                        scanner.flushPendingScanResults(getScanCallback());
+                    } else {
+                        mScanSession.stop();
+                        flushCoalescer.run();
+                    }
+                    mIsScanning = false;
+
+                    closeScanTrace();
+
+                    ScanStateTable state = mScanPipeline.state();
+                    log(LogLevel.DEBUG, "scan state: " + state.size() + " devices, evicted " +
+                        state.evictedFull() + " (full) " + state.evictedIdle() + " (idle)");
+                    log(LogLevel.DEBUG, "scan session: " + mScanSession.stats());
+
+                    result.success(true);
+                    break;
+                }
+
+                case "startBackgroundScan":
+                {
+                    // see: BmScanSettings
+                    HashMap<String, Object> data = call.arguments();
+                    List<String> withServices =    (List<String>) data.get("with_services");
+                    List<String> withRemoteIds =   (List<String>) data.get("with_remote_ids");
+                    List<String> withNames =       (List<String>) data.get("with_names");
+                    List<Object> withMsd =         (List<Object>) data.get("with_msd");
+                    List<Object> withServiceData = (List<Object>) data.get("with_service_data");
+                    boolean androidLegacy =             (boolean) data.get("android_legacy");
+                    int androidScanMode =                   (int) data.get("android_scan_mode");
+                    boolean androidUsesFineLocation =   (boolean) data.get("android_uses_fine_location");
+                    boolean androidCheckLocationServices = (boolean) data.get("android_check_location_services");
+                    int androidReportDelay =                (int) data.get("android_report_delay");
+
+                    // startScan(filters, settings, PendingIntent) was added in Android 8.0
+                    if (Build.VERSION.SDK_INT < 26) {
+                        result.error("startBackgroundScan", "Background scanning requires Android 8.0 or newer", null);
+                        return;
+                    }
+
+                    if (androidCheckLocationServices && !isLocationEnabled()) {
+                        result.error("startBackgroundScan", "Location services are required for Bluetooth scan", null);
+                        return;
+                    }
+
+                    ArrayList<String> permissions = new ArrayList<>();
+
+                    if (Build.VERSION.SDK_INT >= 31) { // Android 12 (October 2021)
+                        permissions.add(Manifest.permission.BLUETOOTH_SCAN);
+                        if (androidUsesFineLocation) {
+                            permissions.add(Manifest.permission.ACCESS_FINE_LOCATION);
+                        }
+                        // see: startScan
+                        permissions.add(Manifest.permission.BLUETOOTH_CONNECT);
+                    }
+
+                    if (Build.VERSION.SDK_INT <= 30) { // Android 11 (September 2020)
+                        permissions.add(Manifest.permission.ACCESS_FINE_LOCATION);
+                    }
+
+                    ensurePermissions(permissions, (granted, perm) -> {
+
+                        if (granted == false) {
+                            result.error("startBackgroundScan",
+                                String.format("Permission %s required to scan devices", perm), null);
+                            return;
+                        }
+
+                        // check adapter
+                        if (isAdapterOn() == false) {
+                            result.error("startBackgroundScan", "Bluetooth must be turned on", null);
+                            return;
+                        }
+
+                        // get scanner
+                        BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
+                        if (scanner == null) {
+                            result.error("startBackgroundScan", "getBluetoothLeScanner() is null. Is the Adapter on?", null);
+                            return;
+                        }
+
+                        // build scan settings
+                        ScanSettings.Builder builder = new ScanSettings.Builder();
+                        builder.setScanMode(androidScanMode);
+                        builder.setPhy(ScanSettings.PHY_LE_ALL_SUPPORTED);
+                        builder.setLegacy(androidLegacy);
+
+                        // batched delivery. The controller holds the advertisements,
+                        // so the cpu can sleep between deliveries
+                        if (androidReportDelay > 0) {
+                            if (mBluetoothAdapter.isOffloadedScanBatchingSupported()) {
+                                builder.setReportDelay(androidReportDelay);
                             } else {
-                                f = new ScanFilter.Builder().setServiceData(s, mdata, mask).build();
+                                log(LogLevel.WARNING, "offloaded scan batching is not supported. " +
+                                    "background results are delivered one by one");
                             }
-                            filters.add(f);
                         }
 
-                        // remember for later
-                        mScanFilters = data;
-
-                        // clear seen devices
-                        mAdvSeen.clear();
-                        mScanCounts.clear();
+                        // hardware filters only. The receiver may run without an engine,
+                        // so there is nothing to apply software filters (or keywords) with
+                        ScanFilterPlan plan = ScanFilterPlan.build(withServices, withRemoteIds, withNames,
+                            withMsd, withServiceData, 0, Build.VERSION.SDK_INT >= 33);
+                        List<ScanFilter> filters = new ArrayList<>();
+                        for (ScanFilterPlan.HwFilter hw : plan.hardware) {
+                            filters.add(buildScanFilter(hw));
+                        }
 
-                        scanner.startScan(filters, settings, getScanCallback());
+                        // detached meanwhile?
+                        Context context = FlutterBluePlusPlugin.this.context;
+                        if (context == null) {
+                            result.error("startBackgroundScan", "plugin is detached", null);
+                            return;
+                        }
 
-                        mIsScanning = true;
+                        log(LogLevel.DEBUG, "calling startScan (PendingIntent)");
+                        int rc = scanner.startScan(filters, builder.build(), ScanResultReceiver.pendingIntent(context));
+                        if (rc != 0) {
+                            result.error("startBackgroundScan", "startScan failed: " + scanFailedString(rc), null);
+                            return;
+                        }
 
                         result.success(true);
                     });
                     break;
                 }
 
-                case "stopScan":
+                case "stopBackgroundScan":
                 {
                     BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
+                    Context context = this.context;
+                    if (scanner != null && context != null) {
+                        log(LogLevel.DEBUG, "calling stopScan (PendingIntent)");
+                        scanner.stopScan(ScanResultReceiver.pendingIntent(context));
+                    }
 
-                    if (scanner != null) {
-                        scanner.stopScan(getScanCallback());
-                        mIsScanning = false;
+                    // send whatever was buffered
+                    if (mBackgroundScanDelivering) {
+                        sendBackgroundScanResults();
                     }
 
                     result.success(true);
                     break;
                 }
 
+                case "flushBackgroundScan":
+                {
+                    // dart is listening. send the buffered results, and new ones as they arrive
+                    mBackgroundScanDelivering = true;
+                    sendBackgroundScanResults();
+
+                    result.success(true);
+                    break;
+                }
+
+                case "getScanDevices":
+                {
+                    // see: BmScanDevicesRequest
+                    HashMap<String, Object> data = call.arguments();
+                    long since = ((Number) data.get("since")).longValue();
+
+                    ScanDeviceTable.Changes changes = mScanPipeline.devices().changesSince(since);
+
+                    List<HashMap<String, Object>> devices = new ArrayList<>(changes.devices.size());
+                    for (ScanDeviceTable.Device d : changes.devices) {
+                        devices.add(bmScanDevice(d));
+                    }
+
+                    // see: BmScanDevicesResponse
+                    HashMap<String, Object> response = new HashMap<>();
+                    response.put("version", changes.version);
+                    response.put("full", changes.full ? 1 : 0);
+                    response.put("devices", devices);
+                    response.put("removed", changes.removed);
+
+                    result.success(response);
+                    break;
+                }
+
                 case "getSystemDevices":
                 {
                     ArrayList<String> permissions = new ArrayList<>();
@@ -730,6 +1094,13 @@ public class FlutterBluePlusPlugin implements
                             return;
                         }
 
+                        // detached meanwhile?
+                        Context context = FlutterBluePlusPlugin.this.context;
+                        if (context == null) {
+                            result.error("connect", "plugin is detached", null);
+                            return;
+                        }
+
                         // connect
                         BluetoothGatt gatt = null;
                         BluetoothDevice device = mBluetoothAdapter.getRemoteDevice(remoteId);
@@ -846,9 +1217,17 @@ public class FlutterBluePlusPlugin implements
                         break;
                     }
 
+                    // see: BmDiscoverServicesResult
+                    HashMap<String, Object> failure = new HashMap<>();
+                    failure.put("remote_id", remoteId);
+                    failure.put("services", new ArrayList<>());
+
                     // discover services
-                    if(gatt.discoverServices() == false) {
-                        result.error("discoverServices", "gatt.discoverServices() returned false", null);
+                    String error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.DISCOVER_SERVICES,
+                        () -> gatt.discoverServices() ? null : "gatt.discoverServices() returned false",
+                        failWith("OnDiscoveredServices", failure)));
+                    if (error != null) {
+                        result.error("discoverServices", error, null);
                         break;
                     }
 
@@ -891,9 +1270,62 @@ public class FlutterBluePlusPlugin implements
                     }
 
                     // read
-                    if(gatt.readCharacteristic(characteristic) == false) {
-                        result.error("readCharacteristic",
-                            "gatt.readCharacteristic() returned false", null);
+                    String error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.READ_CHR, characteristic,
+                        () -> gatt.readCharacteristic(characteristic) ? null : "gatt.readCharacteristic() returned false",
+                        failWith("OnCharacteristicReceived", bmCharacteristicData(gatt, characteristic, new byte[0]))));
+                    if (error != null) {
+                        result.error("readCharacteristic", error, null);
+                        break;
+                    }
+
+                    result.success(true);
+                    break;
+                }
+
+                case "readCharacteristics":
+                {
+                    // see: BmReadCharacteristicsRequest
+                    HashMap<String, Object> data = call.arguments();
+                    String remoteId =                (String) data.get("remote_id");
+                    int requestId =                     (int) data.get("request_id");
+                    List<Object> characteristics = (List<Object>) data.get("characteristics");
+
+                    // check connection
+                    BluetoothGatt gatt = mConnectedDevices.get(remoteId);
+                    if(gatt == null) {
+                        result.error("readCharacteristics", "device is disconnected", null);
+                        break;
+                    }
+
+                    // find characteristics. Errors are per characteristic
+                    List<BatchReads.Item> items = new ArrayList<>();
+                    for (Object o : characteristics) {
+                        // see: BmReadCharacteristicRequest
+                        HashMap<String, Object> c = (HashMap<String, Object>) o;
+                        String primaryServiceUuid = (String) c.get("primary_service_uuid");
+                        String serviceUuid =        (String) c.get("service_uuid");
+                        String characteristicUuid = (String) c.get("characteristic_uuid");
+                        Integer instanceId =       (Integer) c.get("instance_id");
+
+                        ChrFound found = locateCharacteristic(gatt, primaryServiceUuid, serviceUuid, characteristicUuid, instanceId);
+                        String error = found.error;
+
+                        // check readable
+                        if (error == null && (found.characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_READ) == 0) {
+                            error = "The READ property is not supported by this BLE characteristic";
+                        }
+
+                        items.add(new BatchReads.Item(c, error == null ? found.characteristic : null, error));
+                    }
+
+                    // read, back-to-back. see: BatchReads
+                    BatchReads.Batch batch = mBatchReads.create(remoteId, requestId, gatt, items);
+                    batch.op = new GattOpQueue.Op(GattOpQueue.BATCH_READ,
+                        () -> mBatchReads.start(batch),
+                        err -> mBatchReads.abort(batch, err));
+                    String error = mGattOps.submit(remoteId, batch.op);
+                    if (error != null) {
+                        result.error("readCharacteristics", error, null);
                         break;
                     }
 
@@ -934,29 +1366,10 @@ public class FlutterBluePlusPlugin implements
 
                     BluetoothGattCharacteristic characteristic = found.characteristic;
 
-                    // check writeable
-                    if(writeType == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE) {
-                        if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) == 0) {
-                            result.error("writeCharacteristic",
-                                "The WRITE_NO_RESPONSE property is not supported by this BLE characteristic", null);
-                            break;
-                        }
-                    } else {
-                         if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE) == 0) {
-                            result.error("writeCharacteristic",
-                                "The WRITE property is not supported by this BLE characteristic", null);
-                            break;
-                        }
-                    }
-
-                    // check maximum payload
-                    int maxLen = getMaxPayload(remoteId, writeType, allowLongWrite);
-                    int dataLen = value.length;
-                    if (dataLen > maxLen) {
-                        String a = writeTypeInt == 0 ? "withResponse" : "withoutResponse";
-                        String b = writeTypeInt == 0 ? (allowLongWrite ? ", allowLongWrite" : ", noLongWrite") : "";
-                        String str = "data longer than allowed. dataLen: " + dataLen + " > max: " + maxLen + " (" + a + b +")";
-                        result.error("writeCharacteristic", str, null);
+                    // check writeable & maximum payload
+                    String error = checkWrite(remoteId, characteristic, value, writeType, allowLongWrite);
+                    if (error != null) {
+                        result.error("writeCharacteristic", error, null);
                         break;
                     }
 
@@ -967,37 +1380,117 @@ public class FlutterBluePlusPlugin implements
                     mWriteChr.put(key, value);
 
                     // write characteristic
-                    if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
+                    error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.WRITE_CHR, characteristic,
+                        () -> gattWrite(gatt, characteristic, value, writeType),
+                        failWith("OnCharacteristicWritten", bmCharacteristicData(gatt, characteristic, value))));
+                    if (error != null) {
+                        result.error("writeCharacteristic", error, null);
+                        break;
+                    }
 
-                        int rv = gatt.writeCharacteristic(characteristic, value, writeType);
+                    result.success(true);
+                    break;
+                }
 
-                        if (rv != BluetoothStatusCodes.SUCCESS) {
-                            String s = "gatt.writeCharacteristic() returned " + rv + " : " + bluetoothStatusString(rv);
-                            result.error("writeCharacteristic", s, null);
-                            return;
-                        }
+                case "writeBulk":
+                {
+                    // see: BmWriteBulkRequest
+                    HashMap<String, Object> data = call.arguments();
+                    String remoteId =           (String) data.get("remote_id");
+                    String primaryServiceUuid = (String) data.get("primary_service_uuid");
+                    String serviceUuid =        (String) data.get("service_uuid");
+                    String characteristicUuid = (String) data.get("characteristic_uuid");
+                    Integer instanceId =       (Integer) data.get("instance_id");
+                    byte[] value =              (byte[]) data.get("value");
 
-                    } else {
-                        // set value
-                        if(!characteristic.setValue(value)) {
-                            result.error("writeCharacteristic", "characteristic.setValue() returned false", null);
-                            break;
-                        }
+                    // check connection
+                    BluetoothGatt gatt = mConnectedDevices.get(remoteId);
+                    if(gatt == null) {
+                        result.error("writeBulk", "device is disconnected", null);
+                        break;
+                    }
 
-                        // Write type
-                        characteristic.setWriteType(writeType);
+                    // find characteristic
+                    ChrFound found = locateCharacteristic(gatt, primaryServiceUuid, serviceUuid, characteristicUuid, instanceId);
+                    if (found.error != null) {
+                        result.error("writeBulk", found.error, null);
+                        break;
+                    }
 
-                        // Write Char
-                        if(!gatt.writeCharacteristic(characteristic)){
-                            result.error("writeCharacteristic", "gatt.writeCharacteristic() returned false", null);
-                            break;
-                        }
+                    BluetoothGattCharacteristic characteristic = found.characteristic;
+
+                    // check writeable
+                    if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) == 0) {
+                        result.error("writeBulk",
+                            "The WRITE_NO_RESPONSE property is not supported by this BLE characteristic", null);
+                        break;
+                    }
+
+                    // check empty
+                    if (value.length == 0) {
+                        result.error("writeBulk", "value is empty", null);
+                        break;
+                    }
+
+                    // chunk to the current mtu
+                    int chunkSize = getMaxPayload(remoteId, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE, false);
+
+                    // see: BmBulkWriteProgress
+                    HashMap<String, Object> identity = bmCharacteristicData(gatt, characteristic, null);
+                    identity.remove("value");
+
+                    // write, chunk by chunk. see: BulkWrites
+                    BulkWrites.Session session = mBulkWrites.create(remoteId, gatt, characteristic, value, chunkSize, identity);
+                    if (session == null) {
+                        result.error("writeBulk", "a bulk write is already in progress on this characteristic", null);
+                        break;
+                    }
+                    session.op = new GattOpQueue.Op(GattOpQueue.BULK_WRITE,
+                        () -> mBulkWrites.start(session),
+                        err -> mBulkWrites.abort(session, err));
+                    String error = mGattOps.submit(remoteId, session.op);
+                    if (error != null) {
+                        mBulkWrites.discard(session);
+                        result.error("writeBulk", error, null);
+                        break;
                     }
 
                     result.success(true);
                     break;
                 }
 
+                case "cancelBulkWrite":
+                {
+                    // see: BmCancelBulkWriteRequest
+                    HashMap<String, Object> data = call.arguments();
+                    String remoteId =           (String) data.get("remote_id");
+                    String primaryServiceUuid = (String) data.get("primary_service_uuid");
+                    String serviceUuid =        (String) data.get("service_uuid");
+                    String characteristicUuid = (String) data.get("characteristic_uuid");
+                    Integer instanceId =       (Integer) data.get("instance_id");
+
+                    // check connection
+                    BluetoothGatt gatt = mConnectedDevices.get(remoteId);
+                    if(gatt == null) {
+                        result.error("cancelBulkWrite", "device is disconnected", null);
+                        break;
+                    }
+
+                    // find characteristic
+                    ChrFound found = locateCharacteristic(gatt, primaryServiceUuid, serviceUuid, characteristicUuid, instanceId);
+                    if (found.error != null) {
+                        result.error("cancelBulkWrite", found.error, null);
+                        break;
+                    }
+
+                    // reports its last progress, & lets the next gatt operation start,
+                    // once the chunk being written (if any) has its callback. see: BulkWrites
+                    boolean cancelled = mBulkWrites.cancel(found.characteristic, "cancelled");
+
+                    result.success(cancelled);
+                    break;
+                }
+
                 case "readDescriptor":
                 {
                     // see: BmReadDescriptorRequest
@@ -1027,7 +1520,7 @@ public class FlutterBluePlusPlugin implements
 
 
                     // find descriptor
-                    BluetoothGattDescriptor descriptor = getDescriptorFromArray(descriptorUuid, characteristic.getDescriptors());
+                    BluetoothGattDescriptor descriptor = getDescriptorFromArray(UuidCache.parse(descriptorUuid), characteristic.getDescriptors());
                     if(descriptor == null) {
                         String s = "descriptor not found on characteristic. (desc: " + descriptorUuid + " chr: " + characteristicUuid + ")";
                         result.error("writeDescriptor", s, null);
@@ -1035,8 +1528,11 @@ public class FlutterBluePlusPlugin implements
                     }
 
                     // read descriptor
-                    if(gatt.readDescriptor(descriptor) == false) {
-                        result.error("readDescriptor", "gatt.readDescriptor() returned false", null);
+                    String error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.READ_DESC, descriptor,
+                        () -> gatt.readDescriptor(descriptor) ? null : "gatt.readDescriptor() returned false",
+                        failWith("OnDescriptorRead", bmDescriptorData(gatt, descriptor, new byte[0]))));
+                    if (error != null) {
+                        result.error("readDescriptor", error, null);
                         break;
                     }
 
@@ -1073,7 +1569,7 @@ public class FlutterBluePlusPlugin implements
                     BluetoothGattCharacteristic characteristic = found.characteristic;
 
                     // find descriptor
-                    BluetoothGattDescriptor descriptor = getDescriptorFromArray(descriptorUuid, characteristic.getDescriptors());
+                    BluetoothGattDescriptor descriptor = getDescriptorFromArray(UuidCache.parse(descriptorUuid), characteristic.getDescriptors());
                     if(descriptor == null) {
                         String s = "descriptor not found on characteristic. (desc: " + descriptorUuid + " chr: " + characteristicUuid + ")";
                         result.error("writeDescriptor", s, null);
@@ -1095,28 +1591,12 @@ public class FlutterBluePlusPlugin implements
                     mWriteDesc.put(key, value);
 
                     // write descriptor
-                    if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
-
-                        int rv = gatt.writeDescriptor(descriptor, value);
-                        if (rv != BluetoothStatusCodes.SUCCESS) {
-                            String s = "gatt.writeDescriptor() returned " + rv + " : " + bluetoothStatusString(rv);
-                            result.error("writeDescriptor", s, null);
-                            return;
-                        }
-
-                    } else {
-
-                        // Set descriptor
-                        if(!descriptor.setValue(value)){
-                            result.error("writeDescriptor", "descriptor.setValue() returned false", null);
-                            break;
-                        }
-
-                        // Write descriptor
-                        if(!gatt.writeDescriptor(descriptor)){
-                            result.error("writeDescriptor", "gatt.writeDescriptor() returned false", null);
-                            break;
-                        }
+                    String error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.WRITE_DESC, descriptor,
+                        () -> gattWriteDescriptor(gatt, descriptor, value),
+                        failWith("OnDescriptorWritten", bmDescriptorData(gatt, descriptor, value))));
+                    if (error != null) {
+                        result.error("writeDescriptor", error, null);
+                        break;
                     }
 
                     result.success(true);
@@ -1124,8 +1604,11 @@ public class FlutterBluePlusPlugin implements
                 }
 
                 case "setNotifyValue":
+                case "setNotifyValueStream":
                 {
                     // see: BmSetNotifyValueRequest
+                    // setNotifyValueStream: also streams the values on their own channel. see: NotifyStreams
+                    boolean stream = "setNotifyValueStream".equals(call.method);
                     HashMap<String, Object> data = call.arguments();
                     String remoteId =            (String) data.get("remote_id");
                     String primaryServiceUuid =  (String) data.get("primary_service_uuid");
@@ -1151,6 +1634,13 @@ public class FlutterBluePlusPlugin implements
 
                     BluetoothGattCharacteristic characteristic = found.characteristic;
 
+                    // detached meanwhile? the streams need its messenger
+                    FlutterPluginBinding binding = pluginBinding;
+                    if (binding == null) {
+                        result.error("setNotifyValue", "plugin is detached", null);
+                        break;
+                    }
+
                     // configure local Android device to listen for characteristic changes
                     if(!gatt.setCharacteristicNotification(characteristic, enable)){
                         result.error("setNotifyValue",
@@ -1158,15 +1648,28 @@ public class FlutterBluePlusPlugin implements
                         break;
                     }
 
+                    // see: BmNotifyStream
+                    // the stream is opened once the cccd write is started, & closed if it fails
+                    HashMap<String, Object> streamResponse = new HashMap<>();
+                    boolean openStream = enable && stream;
+                    if (enable == false) {
+                        mNotifyStreams.close(characteristic);
+                    }
+
                     // find cccd descriptor
-                    BluetoothGattDescriptor cccd = getDescriptorFromArray(CCCD, characteristic.getDescriptors());
+                    BluetoothGattDescriptor cccd = getDescriptorFromArray(CCCD_UUID, characteristic.getDescriptors());
                     if(cccd == null) {
                         // Some ble devices do not actually need their CCCD updated.
                         // thus setCharacteristicNotification() is all that is required to enable notifications.
                         // The arduino "bluno" devices are an example.
                         String uuid = uuidStr(characteristic.getUuid());
                         log(LogLevel.WARNING, "CCCD descriptor for characteristic not found: " + uuid);
-                        result.success(false);
+                        if (openStream) {
+                            int handle = mNotifyStreams.open(binding.getBinaryMessenger(), remoteId, characteristic);
+                            streamResponse.put("handle", handle);
+                        }
+                        streamResponse.put("has_cccd", 0);
+                        result.success(stream ? streamResponse : false);
                         return;
                     }
 
@@ -1206,32 +1709,34 @@ public class FlutterBluePlusPlugin implements
                         characteristicUuid + ":" + instanceId + ":" + CCCD;
                     mWriteDesc.put(key, descriptorValue);
 
-                    // write descriptor
-                    if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
-
-                        int rv = gatt.writeDescriptor(cccd, descriptorValue);
-                        if (rv != BluetoothStatusCodes.SUCCESS) {
-                            String s = "gatt.writeDescriptor() returned " + rv + " : " + bluetoothStatusString(rv);
-                            result.error("setNotifyValue", s, null);
-                            break;
-                        }
-
-                    } else {
-
-                        // set new value
-                        if (!cccd.setValue(descriptorValue)) {
-                            result.error("setNotifyValue", "cccd.setValue() returned false", null);
-                            break;
-                        }
+                    // open before the write, so no value is missed
+                    if (openStream) {
+                        int handle = mNotifyStreams.open(binding.getBinaryMessenger(), remoteId, characteristic);
+                        streamResponse.put("handle", handle);
+                    }
 
-                        // update notifications on remote BLE device
-                        if (!gatt.writeDescriptor(cccd)) {
-                            result.error("setNotifyValue", "gatt.writeDescriptor() returned false", null);
-                            break;
+                    // if a queued write fails to start. see: onDescriptorWrite for failed writes
+                    byte[] cccdValue = descriptorValue;
+                    GattOpQueue.Failer failed = failWith("OnDescriptorWritten", bmDescriptorData(gatt, cccd, cccdValue));
+                    GattOpQueue.Failer cccdFailed = openStream == false ? failed : e -> {
+                        mNotifyStreams.close(characteristic);
+                        failed.fail(e);
+                    };
+
+                    // update notifications on remote BLE device
+                    String error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.WRITE_DESC, cccd,
+                        () -> gattWriteDescriptor(gatt, cccd, cccdValue),
+                        cccdFailed));
+                    if (error != null) {
+                        if (openStream) {
+                            mNotifyStreams.close(characteristic);
                         }
+                        result.error("setNotifyValue", error, null);
+                        break;
                     }
 
-                    result.success(true);
+                    streamResponse.put("has_cccd", 1);
+                    result.success(stream ? streamResponse : true);
                     break;
                 }
 
@@ -1249,9 +1754,17 @@ public class FlutterBluePlusPlugin implements
                         break;
                     }
 
+                    // see: BmMtuChangedResponse
+                    HashMap<String, Object> failure = new HashMap<>();
+                    failure.put("remote_id", remoteId);
+                    failure.put("mtu", mMtu.get(remoteId));
+
                     // request mtu
-                    if(gatt.requestMtu(mtu) == false) {
-                        result.error("requestMtu", "gatt.requestMtu() returned false", null);
+                    String error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.REQUEST_MTU,
+                        () -> gatt.requestMtu(mtu) ? null : "gatt.requestMtu() returned false",
+                        failWith("OnMtuChanged", failure)));
+                    if (error != null) {
+                        result.error("requestMtu", error, null);
                         break;
                     }
 
@@ -1270,9 +1783,17 @@ public class FlutterBluePlusPlugin implements
                         break;
                     }
 
+                    // see: BmReadRssiResult
+                    HashMap<String, Object> failure = new HashMap<>();
+                    failure.put("remote_id", remoteId);
+                    failure.put("rssi", 0);
+
                     // read rssi
-                    if(gatt.readRemoteRssi() == false) {
-                        result.error("readRssi", "gatt.readRemoteRssi() returned false", null);
+                    String error = mGattOps.submit(remoteId, new GattOpQueue.Op(GattOpQueue.READ_RSSI,
+                        () -> gatt.readRemoteRssi() ? null : "gatt.readRemoteRssi() returned false",
+                        failWith("OnReadRssi", failure)));
+                    if (error != null) {
+                        result.error("readRssi", error, null);
                         break;
                     }
 
@@ -1489,7 +2010,11 @@ public class FlutterBluePlusPlugin implements
             result.error("androidException", e.toString(), stackTrace);
             return;
         } finally {
-            mMethodCallMutex.release();
+            if (lockStripe >= 0) {
+                mLocks.releaseDevice(lockStripe);
+            } else {
+                mLocks.releaseAdapter();
+            }
         }
     }
 
@@ -1534,17 +2059,20 @@ public class FlutterBluePlusPlugin implements
     public boolean onRequestPermissionsResult(int requestCode,
                                         String[] permissions,
                                         int[] grantResults) {
-        OperationOnPermission operation = operationsOnPermission.get(requestCode);
-        operationsOnPermission.remove(requestCode); // Clean up to prevent memory leaks
+        OperationOnPermission operation = operationsOnPermission.remove(requestCode); // Clean up to prevent memory leaks
 
         if (operation != null && grantResults.length > 0) {
+            String denied = null;
             for (int i = 0; i < grantResults.length; i++) {
                 if (grantResults[i] != PackageManager.PERMISSION_GRANTED) {
-                    operation.op(false, permissions[i]); // permission denied
-                    return true;
+                    denied = permissions[i];
+                    break;
                 }
             }
-            operation.op(true, null); // permission granted
+            // the operation was deferred from a method call. Run it
+            // the way method calls run: off the main thread, locked
+            String deniedPermission = denied;
+            runExclusive(() -> operation.op(deniedPermission == null, deniedPermission));
             return true;
         } else {
             return false;
@@ -1553,6 +2081,7 @@ public class FlutterBluePlusPlugin implements
 
     private void ensurePermissions(List<String> permissions, OperationOnPermission operation) {
         // check that we have a context
+        Context context = this.context;
         if (context == null) {
             operation.op(false, "Application Context is null");
             return;
@@ -1583,14 +2112,24 @@ public class FlutterBluePlusPlugin implements
         }
 
         // Store the operation with the current request code
-        operationsOnPermission.put(lastEventId, operation);
-
-        ActivityCompat.requestPermissions(
-                activityBinding.getActivity(),
-                permissionsNeeded.toArray(new String[0]),
-                lastEventId);
-
-        lastEventId++;
+        int requestCode = lastEventId.getAndIncrement();
+        operationsOnPermission.put(requestCode, operation);
+
+        // the activity must be used from the main thread
+        runOnMainThread(() -> {
+            ActivityPluginBinding binding = activityBinding;
+            if (binding == null) {
+                OperationOnPermission op = operationsOnPermission.remove(requestCode);
+                if (op != null) {
+                    op.op(false, "no activity");
+                }
+                return;
+            }
+            ActivityCompat.requestPermissions(
+                    binding.getActivity(),
+                    permissionsNeeded.toArray(new String[0]),
+                    requestCode);
+        });
     }
 
     // Check if Android location services are enabled
@@ -1601,32 +2140,274 @@ public class FlutterBluePlusPlugin implements
             return true;
         }
 
-        Context context = pluginBinding.getApplicationContext();
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-            // This is a new method provided in API 28 / Android 9 August 2018
-            LocationManager lm = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
-            return lm != null && lm.isLocationEnabled();
-        } else {
-            // This was deprecated in API 28
-            int mode = Settings.Secure.getInt(context.getContentResolver(),
-                Settings.Secure.LOCATION_MODE, Settings.Secure.LOCATION_MODE_OFF);
-            return mode != Settings.Secure.LOCATION_MODE_OFF;
+        Context context = this.context;
+        if (context == null) {
+            return false; // detached
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            // This is a new method provided in API 28 / Android 9 August 2018
+            LocationManager lm = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+            return lm != null && lm.isLocationEnabled();
+        } else {
+            // This was deprecated in API 28
+            int mode = Settings.Secure.getInt(context.getContentResolver(),
+                Settings.Secure.LOCATION_MODE, Settings.Secure.LOCATION_MODE_OFF);
+            return mode != Settings.Secure.LOCATION_MODE_OFF;
+        }
+    }
+
+    //////////////////////////////////////////////
+    // ██████   ██       ███████
+    // ██   ██  ██       ██
+    // ██████   ██       █████
+    // ██   ██  ██       ██
+    // ██████   ███████  ███████
+    //
+    // ██    ██  ████████  ██  ██       ███████
+    // ██    ██     ██     ██  ██       ██
+    // ██    ██     ██     ██  ██       ███████
+    // ██    ██     ██     ██  ██            ██
+    //  ██████      ██     ██  ███████  ███████
+
+    private void clearGattHandles(String remoteId)
+    {
+        mGattHandles.clearDevice(remoteId);
+        Iterator<BinaryWrite> it = mBinaryWrites.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().entry.remoteId.equals(remoteId)) {
+                it.remove();
+            }
+        }
+    }
+
+    // returns an error, or null
+    private String checkWrite(String remoteId,
+                              BluetoothGattCharacteristic characteristic,
+                              byte[] value,
+                              int writeType,
+                              boolean allowLongWrite)
+    {
+        boolean withResponse = writeType != BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+
+        // check writeable
+        if(withResponse == false) {
+            if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) == 0) {
+                return "The WRITE_NO_RESPONSE property is not supported by this BLE characteristic";
+            }
+        } else {
+             if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE) == 0) {
+                return "The WRITE property is not supported by this BLE characteristic";
+            }
+        }
+
+        // check maximum payload
+        int maxLen = getMaxPayload(remoteId, writeType, allowLongWrite);
+        int dataLen = value.length;
+        if (dataLen > maxLen) {
+            String a = withResponse ? "withResponse" : "withoutResponse";
+            String b = withResponse ? (allowLongWrite ? ", allowLongWrite" : ", noLongWrite") : "";
+            return "data longer than allowed. dataLen: " + dataLen + " > max: " + maxLen + " (" + a + b +")";
+        }
+
+        return null;
+    }
+
+    // returns an error, or null
+    @SuppressWarnings("deprecation") // needed for compatibility
+    private String gattWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] value, int writeType)
+    {
+        if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
+
+            int rv = gatt.writeCharacteristic(characteristic, value, writeType);
+
+            if (rv != BluetoothStatusCodes.SUCCESS) {
+                return "gatt.writeCharacteristic() returned " + rv + " : " + bluetoothStatusString(rv);
+            }
+
+        } else {
+            // set value
+            if(!characteristic.setValue(value)) {
+                return "characteristic.setValue() returned false";
+            }
+
+            // Write type
+            characteristic.setWriteType(writeType);
+
+            // Write Char
+            if(!gatt.writeCharacteristic(characteristic)){
+                return "gatt.writeCharacteristic() returned false";
+            }
+        }
+
+        return null;
+    }
+
+    // see: BulkWrites.Writer
+    @SuppressWarnings("deprecation") // needed for compatibility
+    private String bulkWriteChunk(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] chunk)
+    {
+        int writeType = BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+
+        if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
+
+            int rv = gatt.writeCharacteristic(characteristic, chunk, writeType);
+
+            if (rv == BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY) {
+                return BulkWrites.BUSY;
+            }
+            if (rv != BluetoothStatusCodes.SUCCESS) {
+                return "gatt.writeCharacteristic() returned " + rv + " : " + bluetoothStatusString(rv);
+            }
+
+        } else {
+            // set value
+            if(!characteristic.setValue(chunk)) {
+                return "characteristic.setValue() returned false";
+            }
+
+            // Write type
+            characteristic.setWriteType(writeType);
+
+            // Write Char. false: almost always busy
+            if(!gatt.writeCharacteristic(characteristic)){
+                return BulkWrites.BUSY;
+            }
+        }
+
+        return null;
+    }
+
+    // see: BulkWrites.Reporter
+    private void bulkWriteReport(BulkWrites.Session s, boolean done, int status, String error)
+    {
+        // see: BmBulkWriteProgress
+        HashMap<String, Object> response = new HashMap<>(s.identity);
+        response.put("bytes_written", s.bytesWritten());
+        response.put("total_bytes", s.data.length);
+        response.put("bytes_per_second", s.bytesPerSecond());
+        response.put("done", done ? 1 : 0);
+        response.put("success", status == BluetoothGatt.GATT_SUCCESS ? 1 : 0);
+        response.put("error_code", status);
+        response.put("error_string", error != null ? error : gattErrorString(status));
+
+        invokeMethodUIThread("OnBulkWriteProgress", response);
+
+        if (done) {
+            mGattOps.complete(s.remoteId, s.op);
+        } else {
+            mGattOps.keepAlive(s.remoteId, s.op);
+        }
+    }
+
+    // see: BatchReads.Reporter
+    private void batchReadReport(BatchReads.Batch b, boolean done)
+    {
+        if (done == false) {
+            mGattOps.keepAlive(b.remoteId, b.op);
+            return;
+        }
+
+        List<Object> values = new ArrayList<>();
+        for (BatchReads.Item item : b.items) {
+            // see: BmCharacteristicData
+            HashMap<String, Object> value = new HashMap<>(item.identity);
+            value.put("remote_id", b.remoteId);
+            value.put("value", item.value);
+            value.put("success", item.error == null && item.status == BluetoothGatt.GATT_SUCCESS ? 1 : 0);
+            value.put("error_code", item.status);
+            value.put("error_string", item.error != null ? item.error : gattErrorString(item.status));
+            values.add(value);
+        }
+
+        // see: BmReadCharacteristicsResult
+        HashMap<String, Object> response = new HashMap<>();
+        response.put("remote_id", b.remoteId);
+        response.put("request_id", b.requestId);
+        response.put("values", values);
+
+        invokeMethodUIThread("OnCharacteristicsRead", response);
+
+        mGattOps.complete(b.remoteId, b.op);
+    }
+
+    // returns an error, or null
+    @SuppressWarnings("deprecation") // needed for compatibility
+    private String gattWriteDescriptor(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, byte[] value)
+    {
+        if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
+
+            int rv = gatt.writeDescriptor(descriptor, value);
+            if (rv != BluetoothStatusCodes.SUCCESS) {
+                return "gatt.writeDescriptor() returned " + rv + " : " + bluetoothStatusString(rv);
+            }
+
+        } else {
+
+            // set value
+            if(!descriptor.setValue(value)) {
+                return "descriptor.setValue() returned false";
+            }
+
+            // write descriptor
+            if(!gatt.writeDescriptor(descriptor)) {
+                return "gatt.writeDescriptor() returned false";
+            }
+        }
+
+        return null;
+    }
+
+    // a queued operation failed to start, or timed out. Reported
+    // as its usual completion event. see: GattOpQueue
+    private GattOpQueue.Failer failWith(String method, HashMap<String, Object> failure)
+    {
+        return error -> {
+            log(LogLevel.ERROR, method + ": " + error);
+            HashMap<String, Object> response = new HashMap<>(failure);
+            response.put("success", 0);
+            response.put("error_code", BluetoothGatt.GATT_FAILURE);
+            response.put("error_string", error);
+            invokeMethodUIThread(method, response);
+        };
+    }
+
+    // see: BinaryChannel. task queue
+    private String binaryWrite(GattHandles.Entry e, byte[] value, boolean withResponse, boolean allowLongWrite, int seq)
+    {
+        int writeType = withResponse ?
+            BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT :
+            BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+
+        int lockStripe = mLocks.acquireDevice(e.remoteId);
+        try {
+            // check connection
+            BluetoothGatt gatt = mConnectedDevices.get(e.remoteId);
+            if(gatt == null) {
+                return "device is disconnected";
+            }
+
+            String error = checkWrite(e.remoteId, e.characteristic, value, writeType, allowLongWrite);
+            if (error != null) {
+                return error;
+            }
+
+            // completion is sent on the binary channel. see: onCharacteristicWrite
+            BinaryWrite binaryWrite = new BinaryWrite(e, seq);
+            return mGattOps.submit(e.remoteId, new GattOpQueue.Op(GattOpQueue.WRITE_CHR, e.characteristic,
+                () -> {
+                    mBinaryWrites.put(e.characteristic, binaryWrite);
+                    String err = gattWrite(gatt, e.characteristic, value, writeType);
+                    if (err != null) {
+                        mBinaryWrites.remove(e.characteristic);
+                    }
+                    return err;
+                },
+                err -> mBinaryChannel.sendWritten(e, seq, BluetoothGatt.GATT_FAILURE, err)));
+        } finally {
+            mLocks.releaseDevice(lockStripe);
         }
     }
 
-    //////////////////////////////////////////////
-    // ██████   ██       ███████
-    // ██   ██  ██       ██
-    // ██████   ██       █████
-    // ██   ██  ██       ██
-    // ██████   ███████  ███████
-    //
-    // ██    ██  ████████  ██  ██       ███████
-    // ██    ██     ██     ██  ██       ██
-    // ██    ██     ██     ██  ██       ███████
-    // ██    ██     ██     ██  ██            ██
-    //  ██████      ██     ██  ███████  ███████
-
     class ChrFound {
         public BluetoothGattCharacteristic characteristic;
         public String error;
@@ -1663,15 +2444,15 @@ public class FlutterBluePlusPlugin implements
 
     private List<BluetoothGattService> getMatchingServices(
         BluetoothGatt gatt,
-        String primaryServiceUuid,
-        String serviceUuid)
+        UUID primaryServiceUuid,
+        UUID serviceUuid)
     {
         List<BluetoothGattService> matches = new ArrayList<>();
         boolean isSecondaryService = primaryServiceUuid != null;
 
         if (!isSecondaryService) {
             for (BluetoothGattService service : gatt.getServices()) {
-                if (uuid128(service.getUuid()).equals(uuid128(serviceUuid))) {
+                if (service.getUuid().equals(serviceUuid)) {
                     matches.add(service);
                 }
             }
@@ -1679,11 +2460,11 @@ public class FlutterBluePlusPlugin implements
         }
 
         for (BluetoothGattService primary : gatt.getServices()) {
-            if (!uuid128(primary.getUuid()).equals(uuid128(primaryServiceUuid))) {
+            if (!primary.getUuid().equals(primaryServiceUuid)) {
                 continue;
             }
             for (BluetoothGattService secondary : primary.getIncludedServices()) {
-                if (uuid128(secondary.getUuid()).equals(uuid128(serviceUuid))) {
+                if (secondary.getUuid().equals(serviceUuid)) {
                     matches.add(secondary);
                 }
             }
@@ -1697,9 +2478,8 @@ public class FlutterBluePlusPlugin implements
         if (service == null) return 0;
 
         BluetoothGattService primaryService = getPrimaryService(gatt, target);
-        String primaryServiceUuid = primaryService != null ? uuidStr(primaryService.getUuid()) : null;
-        String serviceUuid = uuidStr(service.getUuid());
-        List<BluetoothGattService> services = getMatchingServices(gatt, primaryServiceUuid, serviceUuid);
+        UUID primaryServiceUuid = primaryService != null ? primaryService.getUuid() : null;
+        List<BluetoothGattService> services = getMatchingServices(gatt, primaryServiceUuid, service.getUuid());
 
         if (services.size() <= 1) {
             return getLocalInstanceId(target);
@@ -1728,7 +2508,8 @@ public class FlutterBluePlusPlugin implements
         // remember this
         boolean isSecondaryService = primaryServiceUuid != null;
 
-        List<BluetoothGattService> services = getMatchingServices(gatt, primaryServiceUuid, serviceUuid);
+        List<BluetoothGattService> services = getMatchingServices(gatt,
+            UuidCache.parse(primaryServiceUuid), UuidCache.parse(serviceUuid));
         if(services.isEmpty()) {
             if (isSecondaryService) {
                 return new ChrFound(null, "secondary service not found '" + serviceUuid + "' (primary service '" + primaryServiceUuid + "')");
@@ -1737,15 +2518,16 @@ public class FlutterBluePlusPlugin implements
         }
 
         BluetoothGattCharacteristic characteristic = null;
+        UUID chrUuid = UuidCache.parse(characteristicUuid);
 
         if (services.size() <= 1) {
             BluetoothGattService service = services.get(0);
-            characteristic = getCharacteristicFromArray(characteristicUuid, service.getCharacteristics(), instanceId);
+            characteristic = getCharacteristicFromArray(chrUuid, service.getCharacteristics(), instanceId);
         } else {
             int idx = 0;
             for (BluetoothGattService service : services) {
                 for (BluetoothGattCharacteristic candidate : service.getCharacteristics()) {
-                    if (idx == instanceId && uuid128(candidate.getUuid()).equals(uuid128(characteristicUuid))) {
+                    if (idx == instanceId && candidate.getUuid().equals(chrUuid)) {
                         characteristic = candidate;
                         break;
                     }
@@ -1765,20 +2547,20 @@ public class FlutterBluePlusPlugin implements
         return new ChrFound(characteristic, null);
     }
 
-    private BluetoothGattService getServiceFromArray(String uuid, List<BluetoothGattService> array)
+    private BluetoothGattService getServiceFromArray(UUID uuid, List<BluetoothGattService> array)
     {
         for (BluetoothGattService s : array) {
-            if (uuid128(s.getUuid()).equals(uuid128(uuid))) {
+            if (s.getUuid().equals(uuid)) {
                 return s;
             }
         }
         return null;
     }
 
-    private BluetoothGattCharacteristic getCharacteristicFromArray(String uuid, List<BluetoothGattCharacteristic> array, Integer instanceId)
+    private BluetoothGattCharacteristic getCharacteristicFromArray(UUID uuid, List<BluetoothGattCharacteristic> array, Integer instanceId)
     {
         for (BluetoothGattCharacteristic c : array) {
-            if (uuid128(c.getUuid()).equals(uuid128(uuid))) {
+            if (c.getUuid().equals(uuid)) {
                 if (getLocalInstanceId(c) == instanceId) {
                     return c;
                 }
@@ -1787,29 +2569,51 @@ public class FlutterBluePlusPlugin implements
         return null;
     }
 
-    private BluetoothGattDescriptor getDescriptorFromArray(String uuid, List<BluetoothGattDescriptor> array)
+    private BluetoothGattDescriptor getDescriptorFromArray(UUID uuid, List<BluetoothGattDescriptor> array)
     {
         for (BluetoothGattDescriptor d : array) {
-            if (uuid128(d.getUuid()).equals(uuid128(uuid))) {
+            if (d.getUuid().equals(uuid)) {
                 return d;
             }
         }
         return null;
     }
 
-    private boolean filterKeywords(List<String> keywords, String target) {
-        if (keywords.isEmpty()) {
-            return true;
-        }
-        if (target == null) {
-            return false;
-        }
-        for (String k : keywords) {
-            if (target.contains(k)) {
-                return true;
-            }
+    // see: ScanFilterPlan
+    private ScanFilter buildScanFilter(ScanFilterPlan.HwFilter hw)
+    {
+        ScanFilter.Builder b = new ScanFilter.Builder();
+        switch (hw.kind) {
+            case ScanFilterPlan.HW_SERVICE:
+                b.setServiceUuid(new ParcelUuid(hw.service));
+                break;
+            case ScanFilterPlan.HW_ADDRESS:
+                b.setDeviceAddress(hw.address);
+                break;
+            case ScanFilterPlan.HW_NAME:
+                b.setDeviceName(hw.name);
+                break;
+            case ScanFilterPlan.HW_MSD:
+                if (hw.mask.length == 0) {
+                    b.setManufacturerData(hw.manufacturerId, hw.data);
+                } else {
+                    b.setManufacturerData(hw.manufacturerId, hw.data, hw.mask);
+                }
+                break;
+            case ScanFilterPlan.HW_SERVICE_DATA:
+                if (hw.mask.length == 0) {
+                    b.setServiceData(new ParcelUuid(hw.service), hw.data);
+                } else {
+                    b.setServiceData(new ParcelUuid(hw.service), hw.data, hw.mask);
+                }
+                break;
+            case ScanFilterPlan.HW_AD_TYPE:
+                if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
+                    b.setAdvertisingDataType(hw.adType);
+                }
+                break;
         }
-        return false;
+        return b.build();
     }
 
     private int getMaxPayload(String remoteId, int writeType, boolean allowLongWrite)
@@ -1841,6 +2645,11 @@ public class FlutterBluePlusPlugin implements
     {
         log(LogLevel.DEBUG, "disconnectAllDevices("+func+")");
 
+        mNotifyStreams.closeAll();
+        mGattOps.clearAll("device is disconnected");
+        mBulkWrites.clearAll("device is disconnected");
+        mBatchReads.clearAll("device is disconnected");
+
         // merge connected & autoconnected
         Map<String, BluetoothGatt> allDevices = new HashMap<>();
         allDevices.putAll(mConnectedDevices);
@@ -1884,99 +2693,6 @@ public class FlutterBluePlusPlugin implements
         mAutoConnected.clear();
     }
 
-    int getAppearanceFromScanRecord(ScanRecord adv) {
-
-        if (Build.VERSION.SDK_INT >= 33) { // Android 13 (August 2022)
-            Map<Integer, byte[]> map = adv.getAdvertisingDataMap();
-            if (map.containsKey(ScanRecord.DATA_TYPE_APPEARANCE)) {
-                byte[] bytes = map.get(ScanRecord.DATA_TYPE_APPEARANCE);
-                if (bytes.length == 2) {
-                    int loByte = bytes[0] & 0xFF;
-                    int hiByte = bytes[1] & 0xFF;
-                    return hiByte * 256 + loByte;
-                }
-            }
-            return 0;
-        }
-
-        // For API Level 21+
-        byte[] bytes = adv.getBytes();
-
-        int n = 0;
-
-        while (n < bytes.length) {
-            int fieldLen = bytes[n] & 0xFF;
-
-            // no more or malformed data
-            if (fieldLen <= 0) {
-                break;
-            }
-
-            // Ensuring we don't go past the bytes array
-            if (n + fieldLen >= bytes.length) {
-                break;
-            }
-
-            int dataType = bytes[n + 1] & 0xFF;
-
-            // no more data
-            if (dataType == 0) {
-                break;
-            }
-
-            // appearance type byte
-            if (dataType == 0x19 && fieldLen == 3) {
-                int high = (bytes[n + 3] & 0xFF) << 8;
-                int low = (bytes[n + 2] & 0xFF);
-                return high | low;
-            }
-
-            n += fieldLen + 1;
-        }
-
-        return 0;
-    }
-
-    // The original android implementation has a bug - it does not 
-    // concatenate handle multiple MSD in the same advertisement.
-    byte[] getManufacturerSpecificData(ScanRecord adv) {
-        byte[] bytes = adv.getBytes();
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        int n = 0;
-        while (n < bytes.length) {
-
-            // layout:
-            // n[0] = fieldlen
-            // n[1] = datatype (MSD)
-            // n[2] = manufacturerId (low)
-            // n[3] = manufacturerId (high)
-            // n[4] = data...
-            int fieldLen = bytes[n] & 0xFF;
-
-            // no more or malformed data
-            if (fieldLen <= 0) {
-                break;
-            }
-
-            // Ensuring we don't go past the bytes array
-            if (n + fieldLen >= bytes.length) {
-                break;
-            }
-
-            int dataType = bytes[n + 1] & 0xFF;
-
-            // Check for Manufacturer Specific Data type (0xFF) 
-            // and that the field is large enough (at least 2 bytes: type + at least 1 data byte)
-            if (dataType == 0xFF && fieldLen >= 2) {
-                output.write(bytes, n + 2, fieldLen - 1);
-            }
-
-            n += fieldLen + 1;
-        }
-        return output.toByteArray();
-    }
-
-
     /////////////////////////////////////////////////////////////////////////////////////
     //  █████   ██████    █████   ██████   ████████  ███████  ██████
     // ██   ██  ██   ██  ██   ██  ██   ██     ██     ██       ██   ██
@@ -2006,18 +2722,25 @@ public class FlutterBluePlusPlugin implements
 
             log(LogLevel.DEBUG, "OnAdapterStateChanged: " + adapterStateString(adapterState));
 
+            // the hardware scan is gone
+            if (adapterState == BluetoothAdapter.STATE_TURNING_OFF || adapterState == BluetoothAdapter.STATE_OFF) {
+                mScanSession.hardwareLost();
+            }
+
             // stop scanning when adapter is turned back on.
             // Otherwise, scanning automatically resumes when the adapter is
             // turned back on. I don't think most users expect that.
             if (adapterState == BluetoothAdapter.STATE_ON) {
-                if (mBluetoothAdapter != null && mIsScanning) {
-                    BluetoothLeScanner scanner = mBluetoothAdapter.getBluetoothLeScanner();
-                    if (scanner != null) {
-                        log(LogLevel.DEBUG, "calling stopScan (Bluetooth Restarted)");
-                        scanner.stopScan(getScanCallback());
+                // exclude startScan & stopScan, on the task queue
+                runExclusive(() -> {
+                    if (mBluetoothAdapter != null && mIsScanning) {
+                        log(LogLevel.DEBUG, "stopping scan (Bluetooth Restarted)");
+                        mScanSession.reset();
                         mIsScanning = false;
+                        mScanCoalescer.reset();
+                        closeScanTrace();
                     }
-                }
+                });
             }
 
             // see: BmBluetoothAdapterState
@@ -2138,11 +2861,190 @@ public class FlutterBluePlusPlugin implements
 
     private ScanCallback scanCallback;
 
-    private int scanCountIncrement(String remoteId) {
-        if (mScanCounts.get(remoteId) == null) {mScanCounts.put(remoteId, 0);}
-        int count = mScanCounts.get(remoteId);
-        mScanCounts.put(remoteId, count+1);
-        return count;
+    // applies our software filters. returns true
+    // if the result should be sent to dart
+    @SuppressWarnings("unchecked") // type safety uses bluetooth_msgs.dart
+    private boolean passesScanFilters(ScanResult result)
+    {
+        // only devices that advertise a periodic train
+        if (mScanPeriodicOnly && periodicInterval(result) == 0) {
+            return false;
+        }
+
+        BluetoothDevice device = result.getDevice();
+        ScanRecord scanRecord = result.getScanRecord();
+        byte[] advBytes = scanRecord != null ? scanRecord.getBytes() : null;
+        boolean connectable = Build.VERSION.SDK_INT >= 26 ? result.isConnectable() : true;
+        long nowMs = result.getTimestampNanos() / 1000000;
+
+        // the timestamp is elapsed realtime. convert to wall clock for the device table
+        long ageMs = (SystemClock.elapsedRealtimeNanos() - result.getTimestampNanos()) / 1000000;
+        long seenMs = System.currentTimeMillis() - Math.max(ageMs, 0);
+
+        return mScanPipeline.passes(device.getAddress(), advBytes, result.getRssi(), connectable,
+            nowMs, seenMs, remoteId -> safeDeviceName(device));
+    }
+
+    // records the raw result, before any filtering. see: ScanTraceRecorder
+    private void traceScanResult(ScanResult result)
+    {
+        ScanTraceRecorder trace = mScanTrace;
+        if (trace == null) {
+            return;
+        }
+        ScanRecord scanRecord = result.getScanRecord();
+        boolean connectable = Build.VERSION.SDK_INT >= 26 ? result.isConnectable() : true;
+        try {
+            trace.record(result.getTimestampNanos(), result.getDevice().getAddress(), result.getRssi(),
+                connectable, scanRecord != null ? scanRecord.getBytes() : null);
+        } catch (IOException e) {
+            // main thread: close would wait for the writer
+            log(LogLevel.WARNING, "scan trace: write failed, stopping: " + e.getMessage());
+            mScanTrace = null;
+            trace.abandon();
+        }
+    }
+
+    private void closeScanTrace()
+    {
+        ScanTraceRecorder trace = mScanTrace;
+        mScanTrace = null;
+        if (trace == null) {
+            return;
+        }
+        try {
+            trace.close();
+            log(LogLevel.DEBUG, "scan trace: " + trace.count() + " results recorded");
+        } catch (IOException e) {
+            log(LogLevel.WARNING, "scan trace: close failed: " + e.getMessage());
+        }
+    }
+
+    // see: BmScanDevice
+    private HashMap<String, Object> bmScanDevice(ScanDeviceTable.Device d)
+    {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("advertisement", bmScanAdvertisement(d.remoteId, d.platformName, d.connectable, d.rssi, d.adv));
+        map.put("first_seen", d.firstSeenMs);
+        map.put("last_seen", d.lastSeenMs);
+        map.put("packets", d.packets);
+        map.put("rssi_min", d.rssiMin);
+        map.put("rssi_max", d.rssiMax);
+        map.put("rssi_avg", d.rssiAvg());
+        return map;
+    }
+
+    // sends the results to dart as a single message
+    private void sendScanResults(List<ScanResult> results)
+    {
+        if (mScanBinary) {
+            sendScanResultsBinary(results);
+            return;
+        }
+
+        List<HashMap<String, Object>> advertisements = new ArrayList<>(results.size());
+        for (ScanResult result : results) {
+            advertisements.add(bmScanAdvertisement(result.getDevice(), result));
+        }
+
+        // see BmScanResponse
+        HashMap<String, Object> response = new HashMap<>();
+        response.put("advertisements", advertisements);
+
+        invokeMethodUIThread("OnScanResponse", response);
+    }
+
+    // sends the results buffered by ScanResultReceiver, in chunks.
+    // called on the main thread
+    private void sendBackgroundScanResults()
+    {
+        if (methodChannel == null) {
+            return;
+        }
+
+        List<ScanResultReceiver.Record> records = ScanResultReceiver.drain();
+        int errorCode = ScanResultReceiver.takeLastError();
+
+        if (errorCode != 0) {
+            // see BmScanResponse
+            HashMap<String, Object> response = new HashMap<>();
+            response.put("advertisements", new ArrayList<>());
+            response.put("success", 0);
+            response.put("error_code", errorCode);
+            response.put("error_string", scanFailedString(errorCode));
+            invokeMethodUIThread("OnBackgroundScanResponse", response);
+        }
+
+        final int chunk = 500;
+        for (int start = 0; start < records.size(); start += chunk) {
+            int end = Math.min(start + chunk, records.size());
+            List<HashMap<String, Object>> advertisements = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                ScanResultReceiver.Record r = records.get(i);
+                HashMap<String, Object> map = bmScanAdvertisement(r.remoteId, r.platformName, r.connectable, r.rssi, r.adv);
+                map.put("timestamp", r.timestampMs);
+                advertisements.add(map);
+            }
+
+            // see BmScanResponse
+            HashMap<String, Object> response = new HashMap<>();
+            response.put("advertisements", advertisements);
+
+            invokeMethodUIThread("OnBackgroundScanResponse", response);
+        }
+    }
+
+    // see: ScanWireEncoder
+    private void sendScanResultsBinary(List<ScanResult> results)
+    {
+        byte[] packed;
+        synchronized (mScanWireEncoder) {
+            for (ScanResult result : results) {
+                ScanRecord adv = result.getScanRecord();
+                boolean connectable = Build.VERSION.SDK_INT >= 26 ? result.isConnectable() : true;
+                mScanWireEncoder.add(
+                    result.getDevice().getAddress(),
+                    safeDeviceName(result.getDevice()),
+                    connectable,
+                    result.getRssi(),
+                    adv != null ? adv.getBytes() : null);
+            }
+            packed = mScanWireEncoder.finish();
+        }
+
+        invokeMethodUIThread("OnScanResponseBinary", packed);
+    }
+
+    // a hardware scan, see: ScanSessionManager.
+    // equal if the filters & settings are equal
+    private static class HwScan
+    {
+        final List<ScanFilter> filters;
+        final ScanSettings settings;
+        final List<Object> key; // ScanSettings does not implement equals
+
+        HwScan(List<ScanFilter> filters, ScanSettings settings, List<Object> settingsKey)
+        {
+            this.filters = filters;
+            this.settings = settings;
+            this.key = settingsKey;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof HwScan)) {
+                return false;
+            }
+            HwScan other = (HwScan) o;
+            return filters.equals(other.filters) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return filters.hashCode() * 31 + key.hashCode();
+        }
     }
 
     private ScanCallback getScanCallback()
@@ -2152,54 +3054,66 @@ public class FlutterBluePlusPlugin implements
             scanCallback = new ScanCallback()
             {
                 @Override
-                @SuppressWarnings("unchecked") // type safety uses bluetooth_msgs.dart
                 public void onScanResult(int callbackType, ScanResult result)
                 {
                     log(LogLevel.VERBOSE, "onScanResult");
 
                     super.onScanResult(callbackType, result);
 
-                    BluetoothDevice device = result.getDevice();
-                    String remoteId = device.getAddress();
-                    ScanRecord scanRecord = result.getScanRecord();
-                    String advHex = scanRecord != null ? bytesToHex(scanRecord.getBytes()) : "";
-
-                    // filter duplicates
-                    if (((boolean) mScanFilters.get("continuous_updates")) == false) {
-                        boolean isDuplicate = mAdvSeen.containsKey(remoteId) && mAdvSeen.get(remoteId).equals(advHex);
-                        mAdvSeen.put(remoteId, advHex); // remember
-                        if (isDuplicate) {
-                            return;
-                        }
+                    // hardware scan still running after stopScan? see: ScanSessionManager
+                    if (mScanSession.isWanted() == false) {
+                        return;
                     }
 
-                    // filter keywords
-                    String name = scanRecord != null ? scanRecord.getDeviceName() : "";
-                    List<String> keywords = (List<String>) mScanFilters.get("with_keywords");
-                    if (filterKeywords(keywords, name) == false) {
+                    traceScanResult(result);
+
+                    if (passesScanFilters(result) == false) {
                         return;
                     }
 
-                    // filter divisor
-                    if (((boolean) mScanFilters.get("continuous_updates")) != false) {
-                        int count = scanCountIncrement(remoteId);
-                        int divisor = (int) mScanFilters.get("continuous_divisor");
-                        if ((count % divisor) != 0) {
-                            return;
-                        }
+                    // coalesce?
+                    if (mScanCoalescer.isEnabled()) {
+                        mScanCoalescer.add(result.getDevice().getAddress(), result);
+                        return;
                     }
 
-                    // see BmScanResponse
-                    HashMap<String, Object> response = new HashMap<>();
-                    response.put("advertisements", Arrays.asList(bmScanAdvertisement(device, result)));
-
-                    invokeMethodUIThread("OnScanResponse", response);
+                    sendScanResults(Arrays.asList(result));
                 }
 
                 @Override
                 public void onBatchScanResults(List<ScanResult> results)
                 {
+                    log(LogLevel.VERBOSE, "onBatchScanResults: " + results.size());
+
                     super.onBatchScanResults(results);
+
+                    // hardware scan still running after stopScan? see: ScanSessionManager
+                    if (mScanSession.isWanted() == false) {
+                        return;
+                    }
+
+                    boolean coalesce = mScanCoalescer.isEnabled();
+
+                    List<ScanResult> passed = new ArrayList<>();
+                    for (ScanResult result : results) {
+                        traceScanResult(result);
+                        if (passesScanFilters(result) == false) {
+                            continue;
+                        }
+                        if (coalesce) {
+                            mScanCoalescer.add(result.getDevice().getAddress(), result);
+                        } else {
+                            passed.add(result);
+                        }
+                    }
+
+                    // the whole batch is sent as a single message
+                    if (passed.isEmpty() == false) {
+                        sendScanResults(passed);
+                    }
+
+                    // the batch flushed by stopScan? see: stopAfterFlush
+                    mScanSession.endFlush();
                 }
 
                 @Override
@@ -2209,6 +3123,9 @@ public class FlutterBluePlusPlugin implements
 
                     super.onScanFailed(errorCode);
 
+                    // nothing to reuse. see: ScanSessionManager
+                    mScanSession.hardwareLost();
+
                     // see BmScanResponse
                     HashMap<String, Object> response = new HashMap<>();
                     response.put("advertisements", new ArrayList<>());
@@ -2241,11 +3158,11 @@ public class FlutterBluePlusPlugin implements
         @Override
         public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState)
         {
+            // Prevent callback thread & method call thread from writing to
+            // mConnectedDevices & mCurrentlyConnectingDevices concurrently,
+            // for this device. Other devices are not blocked.
+            int lockStripe = mLocks.acquireDevice(gatt.getDevice().getAddress());
             try {
-                // Prevent callback thread & method call thread from writing to
-                // mConnectedDevices & mCurrentlyConnectingDevices concurrently.
-                acquireMutex(mMethodCallMutex);
-
                 log(LogLevel.DEBUG, "onConnectionStateChange:" + connectionStateString(newState));
                 log(LogLevel.DEBUG, "  status: " + hciStatusString(status));
 
@@ -2282,6 +3199,17 @@ public class FlutterBluePlusPlugin implements
                     // remove from connected devices
                     mConnectedDevices.remove(remoteId);
 
+                    // end its notification streams
+                    mNotifyStreams.closeDevice(remoteId);
+
+                    // invalidate its binary channel handles
+                    clearGattHandles(remoteId);
+
+                    // fail its queued gatt operations
+                    mGattOps.clear(remoteId, "device is disconnected");
+                    mBulkWrites.clearDevice(remoteId, "device is disconnected");
+                    mBatchReads.clearDevice(remoteId, "device is disconnected");
+
                     // remove from currently connecting devices
                     mCurrentlyConnectingDevices.remove(remoteId);
 
@@ -2311,7 +3239,7 @@ public class FlutterBluePlusPlugin implements
 
                 invokeMethodUIThread("OnConnectionStateChanged", response);
             } finally {
-                mMethodCallMutex.release();
+                mLocks.releaseDevice(lockStripe);
             }
         }
 
@@ -2375,6 +3303,10 @@ public class FlutterBluePlusPlugin implements
             log(level, "  count: " + gatt.getServices().size());
             log(level, "  status: " + status + gattErrorString(status));
 
+            // the characteristics are new objects
+            mNotifyStreams.closeDevice(gatt.getDevice().getAddress());
+            clearGattHandles(gatt.getDevice().getAddress());
+
             List<Object> services = new ArrayList<Object>();
             for(BluetoothGattService s : gatt.getServices()) {
                 services.add(bmBluetoothService(gatt.getDevice(), s, null, gatt));
@@ -2392,18 +3324,21 @@ public class FlutterBluePlusPlugin implements
             response.put("error_string", gattErrorString(status));
 
             invokeMethodUIThread("OnDiscoveredServices", response);
+
+            mGattOps.complete(gatt.getDevice().getAddress(), GattOpQueue.DISCOVER_SERVICES);
         }
 
-        // called for both notifications & reads
-        public void onCharacteristicReceived(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] value, int status)
+        // called for both notifications & reads.
+        // lane: notifications use the data lane, read completions the control lane. see: EventDispatcher
+        public void onCharacteristicReceived(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] value, int status, int lane)
         {
             // https://www.bluetooth.com/wp-content/uploads/Files/Specification/Assigned_Numbers.html
 
             // Generic Attribute service 0x1801
-            if (uuidStr(characteristic.getService().getUuid()).equals("1801")) {
+            if (characteristic.getService().getUuid().equals(GATT_SERVICE_UUID)) {
 
                 // Service Changed 0x2A05
-                if (uuidStr(characteristic.getUuid()).toUpperCase().equals("2A05")) {
+                if (characteristic.getUuid().equals(SERVICE_CHANGED_UUID)) {
                     HashMap<String, Object> response = bmBluetoothDevice(gatt.getDevice());
                     invokeMethodUIThread("OnServicesReset", response);
                 }
@@ -2426,7 +3361,7 @@ public class FlutterBluePlusPlugin implements
             response.put("error_code", status);
             response.put("error_string", gattErrorString(status));
 
-            invokeMethodUIThread("OnCharacteristicReceived", response);
+            mEvents.post(lane, "OnCharacteristicReceived", response);
         }
 
         @Override
@@ -2437,7 +3372,18 @@ public class FlutterBluePlusPlugin implements
             LogLevel level = LogLevel.DEBUG;
             log(level, "onCharacteristicChanged:");
             log(level, "  chr: " + uuidStr(characteristic.getUuid()));
-            onCharacteristicReceived(gatt, characteristic, value, BluetoothGatt.GATT_SUCCESS);
+
+            // streamed on its own channel? see: NotifyStreams
+            if (mNotifyStreams.send(characteristic, value)) {
+                return;
+            }
+
+            // has a binary channel handle? see: BinaryChannel
+            if (mBinaryChannel.sendNotify(characteristic, value)) {
+                return;
+            }
+
+            onCharacteristicReceived(gatt, characteristic, value, BluetoothGatt.GATT_SUCCESS, EventDispatcher.DATA);
         }
 
         @Override
@@ -2450,7 +3396,15 @@ public class FlutterBluePlusPlugin implements
             log(level, "  chr: " + uuidStr(characteristic.getUuid()));
             log(level, "  status: " + gattErrorString(status) + " (" + status + ")");
             log(level, "  instanceId: " + getInstanceId(gatt, characteristic));
-            onCharacteristicReceived(gatt, characteristic, value, status);
+
+            // part of a batch? see: BatchReads
+            if (mBatchReads.onRead(gatt, characteristic, value, status, gattErrorString(status))) {
+                return;
+            }
+
+            onCharacteristicReceived(gatt, characteristic, value, status, EventDispatcher.CONTROL);
+
+            mGattOps.complete(gatt.getDevice().getAddress(), GattOpQueue.READ_CHR, characteristic);
         }
 
         @Override
@@ -2466,6 +3420,19 @@ public class FlutterBluePlusPlugin implements
             // in android's internal buffer. When the buffer is full, it delays calling onCharacteristicWrite
             // until there is at least ~50% free space again.
 
+            // part of a bulk write? see: BulkWrites
+            if (mBulkWrites.onWrite(characteristic, status, gattErrorString(status))) {
+                return;
+            }
+
+            // written from the binary channel? dart knows the value
+            BinaryWrite binaryWrite = mBinaryWrites.remove(characteristic);
+            if (binaryWrite != null) {
+                mBinaryChannel.sendWritten(binaryWrite.entry, binaryWrite.seq, status, gattErrorString(status));
+                mGattOps.complete(gatt.getDevice().getAddress(), GattOpQueue.WRITE_CHR, characteristic);
+                return;
+            }
+
             // has associated primary service?
             BluetoothGattService primaryService = getPrimaryService(gatt, characteristic);
 
@@ -2497,6 +3464,8 @@ public class FlutterBluePlusPlugin implements
             response.put("error_string", gattErrorString(status));
 
             invokeMethodUIThread("OnCharacteristicWritten", response);
+
+            mGattOps.complete(remoteId, GattOpQueue.WRITE_CHR, characteristic);
         }
 
         @Override
@@ -2528,6 +3497,8 @@ public class FlutterBluePlusPlugin implements
             response.put("error_string", gattErrorString(status));
 
             invokeMethodUIThread("OnDescriptorRead", response);
+
+            mGattOps.complete(gatt.getDevice().getAddress(), GattOpQueue.READ_DESC, descriptor);
         }
 
         @Override
@@ -2556,6 +3527,12 @@ public class FlutterBluePlusPlugin implements
             byte[] value = mWriteDesc.remove(key);
             if (value == null) value = new byte[0];
 
+            // failed to subscribe? end its stream. see: NotifyStreams
+            if (status != BluetoothGatt.GATT_SUCCESS && descriptorUuid.equals(CCCD) &&
+                Arrays.equals(value, BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE) == false) {
+                mNotifyStreams.close(descriptor.getCharacteristic());
+            }
+
             // see: BmDescriptorData
             HashMap<String, Object> response = new HashMap<>();
             response.put("remote_id", remoteId);
@@ -2572,6 +3549,8 @@ public class FlutterBluePlusPlugin implements
             response.put("error_string", gattErrorString(status));
 
             invokeMethodUIThread("OnDescriptorWritten", response);
+
+            mGattOps.complete(remoteId, GattOpQueue.WRITE_DESC, descriptor);
         }
 
         @Override
@@ -2599,6 +3578,8 @@ public class FlutterBluePlusPlugin implements
             response.put("error_string", gattErrorString(status));
 
             invokeMethodUIThread("OnReadRssi", response);
+
+            mGattOps.complete(gatt.getDevice().getAddress(), GattOpQueue.READ_RSSI);
         }
 
         @Override
@@ -2623,6 +3604,8 @@ public class FlutterBluePlusPlugin implements
             response.put("error_string", gattErrorString(status));
 
             invokeMethodUIThread("OnMtuChanged", response);
+
+            mGattOps.complete(remoteId, GattOpQueue.REQUEST_MTU);
         }
 
         @Override
@@ -2672,8 +3655,6 @@ public class FlutterBluePlusPlugin implements
 
     HashMap<String, Object> bmScanAdvertisement(BluetoothDevice device, ScanResult result) {
 
-        int min = Integer.MIN_VALUE;
-
         ScanRecord adv = result.getScanRecord();
 
         boolean connectable;
@@ -2686,61 +3667,44 @@ public class FlutterBluePlusPlugin implements
             connectable = true;
         }
 
-        String                  advName      = adv != null ?  adv.getDeviceName()                : null;
-        int                     txPower      = adv != null ?  adv.getTxPowerLevel()              : min;
-        int                     appearance   = adv != null ?  getAppearanceFromScanRecord(adv)   : 0;
-        byte[]                  rawMsd       = adv != null ?  getManufacturerSpecificData(adv)   : null;
-        List<ParcelUuid>        serviceUuids = adv != null ?  adv.getServiceUuids()              : null;
-        Map<ParcelUuid, byte[]> serviceData  = adv != null ?  adv.getServiceData()               : null;
-
-        // Manufacturer Specific Data 
-        HashMap<Integer, byte[]> manufDataB = new HashMap<>();
-        if (rawMsd != null && rawMsd.length >= 2) {
-            // manufacturer ID uses little-endian order.
-            int manufacturerId = (rawMsd[0] & 0xFF) | ((rawMsd[1] & 0xFF) << 8);
-
-            // payload
-            int payloadLen = rawMsd.length - 2;
-            byte[] payload = new byte[payloadLen];
-            System.arraycopy(rawMsd, 2, payload, 0, payloadLen);
-
-            // add to array
-            manufDataB.put(manufacturerId, payload);
+        HashMap<String, Object> map = bmScanAdvertisement(
+            device.getAddress(),
+            safeDeviceName(device),
+            connectable,
+            result.getRssi(),
+            adv != null ? adv.getBytes() : null);
+
+        // extended advertising. The periodic interval tells us the device
+        // advertises a periodic train, in units of 1.25ms
+        if (Build.VERSION.SDK_INT >= 26 && result.isLegacy() == false) { // Android 8.0, August 2017
+            int sid = result.getAdvertisingSid();
+            int interval = result.getPeriodicAdvertisingInterval();
+            if (sid != ScanResult.SID_NOT_PRESENT)                   {map.put("adv_sid", sid);}
+            if (interval != ScanResult.PERIODIC_INTERVAL_NOT_PRESENT) {map.put("periodic_interval", interval);}
+            map.put("primary_phy", result.getPrimaryPhy());
+            map.put("secondary_phy", result.getSecondaryPhy());
         }
 
-        // Service Data
-        HashMap<String, byte[]> serviceDataB = new HashMap<>();
-        if (serviceData != null) {
-            for (Map.Entry<ParcelUuid, byte[]> entry : serviceData.entrySet()) {
-                ParcelUuid key = entry.getKey();
-                byte[] value = entry.getValue();
-                serviceDataB.put(uuidStr(key.getUuid()), value);
-            }
-        }
+        return map;
+    }
 
-        // Service UUIDs
-        List<String> serviceUuidsB = new ArrayList<>();
-        if (serviceUuids != null) {
-            for (ParcelUuid s : serviceUuids) {
-                serviceUuidsB.add(uuidStr(s.getUuid()));
-            }
+    // 0 = no periodic advertising
+    private static int periodicInterval(ScanResult result)
+    {
+        if (Build.VERSION.SDK_INT < 26 || result.isLegacy()) {
+            return 0;
         }
+        return result.getPeriodicAdvertisingInterval();
+    }
 
-        // See: BmScanAdvertisement
-        // perf: only add keys if they exists
-        HashMap<String, Object> map = new HashMap<>();
-        String deviceName = safeDeviceName(device);
-        if (device.getAddress() != null) {map.put("remote_id", device.getAddress());};
-        if (deviceName != null)          {map.put("platform_name", deviceName);}
-        if (connectable)                 {map.put("connectable", 1);}
-        if (advName != null)             {map.put("adv_name", advName);}
-        if (txPower != min)              {map.put("tx_power_level", txPower);}
-        if (appearance != 0)             {map.put("appearance", appearance);}
-        if (manufDataB.size() != 0)      {map.put("manufacturer_data", manufDataB);}
-        if (serviceData != null)         {map.put("service_data", serviceDataB);}
-        if (serviceUuids != null)        {map.put("service_uuids", serviceUuidsB);}
-        if (result.getRssi() != 0)       {map.put("rssi", result.getRssi());};
-        return map;
+    // see: ScanPipeline
+    HashMap<String, Object> bmScanAdvertisement(String remoteId,
+                                                String platformName,
+                                                boolean connectable,
+                                                int rssi,
+                                                byte[] advBytes)
+    {
+        return mScanPipeline.bmScanAdvertisement(remoteId, platformName, connectable, rssi, advBytes);
     }
 
     /**
@@ -2832,6 +3796,28 @@ public class FlutterBluePlusPlugin implements
         return map;
     }
 
+    // see: BmCharacteristicData, without the status
+    HashMap<String, Object> bmCharacteristicData(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] value) {
+        BluetoothGattService primaryService = getPrimaryService(gatt, characteristic);
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("remote_id", gatt.getDevice().getAddress());
+        if (primaryService != null) {
+            map.put("primary_service_uuid", uuidStr(primaryService.getUuid()));
+        }
+        map.put("service_uuid", uuidStr(characteristic.getService().getUuid()));
+        map.put("characteristic_uuid", uuidStr(characteristic.getUuid()));
+        map.put("instance_id", getInstanceId(gatt, characteristic));
+        map.put("value", value);
+        return map;
+    }
+
+    // see: BmDescriptorData, without the status
+    HashMap<String, Object> bmDescriptorData(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, byte[] value) {
+        HashMap<String, Object> map = bmCharacteristicData(gatt, descriptor.getCharacteristic(), value);
+        map.put("descriptor_uuid", uuidStr(descriptor.getUuid()));
+        return map;
+    }
+
     // See: BmCharacteristicProperties
     HashMap<String, Object> bmCharacteristicProperties(int properties) {
         HashMap<String, Object> props = new HashMap<>();
@@ -2940,18 +3926,42 @@ public class FlutterBluePlusPlugin implements
         }
     }
 
-    private void invokeMethodUIThread(final String method, HashMap<String, Object> data)
+    private void runOnMainThread(Runnable runnable)
     {
-        new Handler(Looper.getMainLooper()).post(() -> {
-            //Could already be teared down at this moment
-            if (methodChannel != null) {
-                methodChannel.invokeMethod(method, data);
-            } else {
-                log(LogLevel.WARNING, "invokeMethodUIThread: tried to call method on closed channel: " + method);
+        mMainHandler.post(runnable);
+    }
+
+    // adapter-level work from the main thread. It runs on a background
+    // thread, excluding method calls, so the main thread never waits for them
+    private void runExclusive(Runnable runnable)
+    {
+        mExclusive.execute(() -> {
+            mLocks.acquireAdapter();
+            try {
+                runnable.run();
+            } finally {
+                mLocks.releaseAdapter();
             }
         });
     }
 
+    // see: EventDispatcher
+    private void invokeMethodUIThread(final String method, Object data)
+    {
+        mEvents.post(method, data);
+    }
+
+    // main thread
+    private void sendEvent(String method, Object data)
+    {
+        //Could already be teared down at this moment
+        if (methodChannel != null) {
+            methodChannel.invokeMethod(method, data);
+        } else {
+            log(LogLevel.WARNING, "invokeMethodUIThread: tried to call method on closed channel: " + method);
+        }
+    }
+
     private boolean isAdapterOn()
     {
         // get adapterState, if we have permission
@@ -0,0 +1,129 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Small integer handles for characteristics, used by the binary channel
+// instead of remote_id & uuid strings. see: BinaryChannel
+//
+//   device index:         per remote_id, for the life of the plugin
+//   generation:           per device. Incremented when it disconnects or
+//                         rediscovers services (android then creates new
+//                         characteristic objects)
+//   characteristic index: per device & generation. Restarts at 0 with
+//                         each generation, so slots are reused
+//
+// A handle from an older generation is rejected, so a stale handle cannot
+// reach another characteristic.
+//
+// returns null when out of handles. The method channel still works.
+class GattHandles
+{
+    static class Entry
+    {
+        final String remoteId;
+        final int device;
+        final int generation;
+        final int index;
+        final BluetoothGattCharacteristic characteristic;
+
+        Entry(String remoteId, int device, int generation, int index, BluetoothGattCharacteristic characteristic)
+        {
+            this.remoteId = remoteId;
+            this.device = device;
+            this.generation = generation;
+            this.index = index;
+            this.characteristic = characteristic;
+        }
+    }
+
+    private static class Device
+    {
+        int generation = 0;
+        final List<Entry> chrs = new ArrayList<>(); // by characteristic index
+    }
+
+    private final Map<String, Integer> mDeviceIndices = new HashMap<>();
+    private final List<Device> mDevices = new ArrayList<>(); // by device index
+    private final Map<BluetoothGattCharacteristic, Entry> mByChr = new IdentityHashMap<>();
+
+    // returns the existing entry, if already registered
+    synchronized Entry register(String remoteId, BluetoothGattCharacteristic chr)
+    {
+        Entry e = mByChr.get(chr);
+        if (e != null) {
+            return e;
+        }
+
+        Integer device = mDeviceIndices.get(remoteId);
+        if (device == null) {
+            device = mDevices.size();
+            if (device > 0xFFFF) {
+                return null;
+            }
+            mDeviceIndices.put(remoteId, device);
+            mDevices.add(new Device());
+        }
+
+        Device d = mDevices.get(device);
+        if (d.chrs.size() > 0xFFFF) {
+            return null;
+        }
+        e = new Entry(remoteId, device, d.generation, d.chrs.size(), chr);
+        d.chrs.add(e);
+        mByChr.put(chr, e);
+        return e;
+    }
+
+    // null if unknown, or from an older generation
+    synchronized Entry get(int device, int generation, int index)
+    {
+        if (device >= mDevices.size()) {
+            return null;
+        }
+        Device d = mDevices.get(device);
+        if (d.generation != generation || index >= d.chrs.size()) {
+            return null;
+        }
+        return d.chrs.get(index);
+    }
+
+    synchronized Entry find(BluetoothGattCharacteristic chr)
+    {
+        return mByChr.get(chr);
+    }
+
+    // disconnected, or services rediscovered. Dart must register again
+    synchronized void clearDevice(String remoteId)
+    {
+        Integer device = mDeviceIndices.get(remoteId);
+        if (device == null) {
+            return;
+        }
+        Device d = mDevices.get(device);
+        if (d.chrs.isEmpty()) {
+            return; // nothing handed out in this generation
+        }
+        for (Entry e : d.chrs) {
+            mByChr.remove(e.characteristic);
+        }
+        d.chrs.clear();
+        d.generation = (d.generation + 1) & 0xFFFF;
+    }
+
+    synchronized void clear()
+    {
+        mDeviceIndices.clear();
+        mDevices.clear();
+        mByChr.clear();
+    }
+}
@@ -0,0 +1,291 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.os.Handler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A queue of gatt operations, per device.
+//
+// Android allows one outstanding gatt operation per connection, and
+// gatt.readCharacteristic(), writeDescriptor(), ... return false while busy.
+// Instead of dart waiting for each completion before sending the next call,
+// operations are queued here, and the next one is started from the completion
+// callback itself (binder thread), without a round-trip to dart in between.
+//
+// Completions are reported as before (OnCharacteristicReceived, ...). A queued
+// operation that fails to start reports its failure the same way. see: Failer
+class GattOpQueue
+{
+    // the kind of operation, to match completion callbacks. Some callbacks
+    // also arrive unrequested (e.g. onMtuChanged, when the peripheral asks)
+    static final int READ_CHR = 1;
+    static final int WRITE_CHR = 2;
+    static final int READ_DESC = 3;
+    static final int WRITE_DESC = 4;
+    static final int DISCOVER_SERVICES = 5;
+    static final int REQUEST_MTU = 6;
+    static final int READ_RSSI = 7;
+    static final int BULK_WRITE = 8; // many callbacks. see: BulkWrites
+    static final int BATCH_READ = 9; // many callbacks. see: BatchReads
+
+    // a stuck operation is dropped after this, so the queue cannot stall forever.
+    // longer than the dart side timeouts
+    static final long TIMEOUT_MS = 30000;
+
+    interface Starter {
+        // starts the gatt operation. returns an error, or null
+        String start();
+    }
+
+    interface Failer {
+        // reports the failure as the completion event of the operation
+        void fail(String error);
+    }
+
+    static class Op
+    {
+        final int kind;
+        final Object target; // the characteristic or descriptor, if any. see: onTimeout
+        final Starter starter;
+        final Failer failer;
+
+        Op(int kind, Starter starter, Failer failer)
+        {
+            this(kind, null, starter, failer);
+        }
+
+        Op(int kind, Object target, Starter starter, Failer failer)
+        {
+            this.kind = kind;
+            this.target = target;
+            this.starter = starter;
+            this.failer = failer;
+        }
+    }
+
+    private static class DeviceQueue
+    {
+        final ArrayDeque<Op> pending = new ArrayDeque<>();
+        Op inFlight = null;
+        Runnable timeout = null;
+        Op starting = null;
+        boolean doneWhileStarting = false;
+        int lateKind = 0; // see: onTimeout
+        Object lateTarget = null;
+    }
+
+    private final Handler mHandler;
+    private final Map<String, DeviceQueue> mQueues = new HashMap<>();
+
+    GattOpQueue(Handler handler)
+    {
+        mHandler = handler;
+    }
+
+    // returns an error if the operation was started right away & failed, like
+    // calling gatt directly. null: started, or queued. If a queued operation
+    // later fails to start, the failure is reported as its completion event
+    String submit(String remoteId, Op op)
+    {
+        DeviceQueue q = queue(remoteId);
+        synchronized (q) {
+            if (q.inFlight != null || q.pending.isEmpty() == false) {
+                q.pending.add(op);
+                return null;
+            }
+            return start(q, op);
+        }
+    }
+
+    // a completion callback. starts the next operation. binder thread
+    void complete(String remoteId, int kind)
+    {
+        complete(remoteId, kind, null);
+    }
+
+    // target: the characteristic or descriptor of the callback, as in Op
+    void complete(String remoteId, int kind, Object target)
+    {
+        DeviceQueue q = existingQueue(remoteId);
+        if (q == null) {
+            return;
+        }
+        synchronized (q) {
+            if (q.lateKind == kind && q.lateTarget == target) {
+                setLate(q, null);
+                return; // of the timed out operation, not the current one
+            }
+            if (q.inFlight == null || q.inFlight.kind != kind) {
+                return; // not ours
+            }
+            setInFlight(q, null);
+            startNext(q);
+        }
+    }
+
+    // completes this exact operation, if still in flight. For operations
+    // that span many callbacks, and so cannot be matched by kind
+    void complete(String remoteId, Op op)
+    {
+        DeviceQueue q = existingQueue(remoteId);
+        if (q == null) {
+            return;
+        }
+        synchronized (q) {
+            if (q.starting == op) {
+                q.doneWhileStarting = true; // e.g. nothing to do
+                return;
+            }
+            if (q.inFlight != op) {
+                return; // timed out, or cleared
+            }
+            setInFlight(q, null);
+            startNext(q);
+        }
+    }
+
+    // a long operation is making progress. restarts its timeout
+    void keepAlive(String remoteId, Op op)
+    {
+        DeviceQueue q = existingQueue(remoteId);
+        if (q == null) {
+            return;
+        }
+        synchronized (q) {
+            if (q.inFlight == op) {
+                setInFlight(q, op);
+            }
+        }
+    }
+
+    // disconnected. pending operations fail
+    void clear(String remoteId, String error)
+    {
+        DeviceQueue q = existingQueue(remoteId);
+        if (q == null) {
+            return;
+        }
+        List<Op> failed = new ArrayList<>();
+        synchronized (q) {
+            setInFlight(q, null);
+            setLate(q, null);
+            failed.addAll(q.pending);
+            q.pending.clear();
+        }
+        for (Op op : failed) {
+            op.failer.fail(error);
+        }
+    }
+
+    void clearAll(String error)
+    {
+        List<String> remoteIds;
+        synchronized (mQueues) {
+            remoteIds = new ArrayList<>(mQueues.keySet());
+        }
+        for (String remoteId : remoteIds) {
+            clear(remoteId, error);
+        }
+    }
+
+    private DeviceQueue queue(String remoteId)
+    {
+        synchronized (mQueues) {
+            DeviceQueue q = mQueues.get(remoteId);
+            if (q == null) {
+                q = new DeviceQueue();
+                mQueues.put(remoteId, q);
+            }
+            return q;
+        }
+    }
+
+    private DeviceQueue existingQueue(String remoteId)
+    {
+        synchronized (mQueues) {
+            return mQueues.get(remoteId);
+        }
+    }
+
+    // holding q. returns an error, or null
+    private String start(DeviceQueue q, Op op)
+    {
+        // same kind & target as the timed out operation: their callbacks cannot be
+        // told apart, so the next one is this operation's. see: onTimeout
+        if (q.lateKind == op.kind && q.lateTarget == op.target) {
+            setLate(q, null);
+        }
+        q.starting = op;
+        q.doneWhileStarting = false;
+        String error = op.starter.start();
+        q.starting = null;
+        if (error == null && q.doneWhileStarting == false) {
+            setInFlight(q, op);
+        }
+        return error;
+    }
+
+    // holding q
+    private void startNext(DeviceQueue q)
+    {
+        Op op;
+        while ((op = q.pending.poll()) != null) {
+            String error = start(q, op);
+            if (error != null) {
+                op.failer.fail(error);
+            } else if (q.inFlight != null) {
+                return;
+            }
+        }
+    }
+
+    // holding q
+    private void setInFlight(DeviceQueue q, Op op)
+    {
+        if (q.timeout != null) {
+            mHandler.removeCallbacks(q.timeout);
+            q.timeout = null;
+        }
+        q.inFlight = op;
+        if (op != null) {
+            q.timeout = () -> onTimeout(q, op);
+            mHandler.postDelayed(q.timeout, TIMEOUT_MS);
+        }
+    }
+
+    // holding q
+    private void setLate(DeviceQueue q, Op op)
+    {
+        q.lateKind = op != null ? op.kind : 0;
+        q.lateTarget = op != null ? op.target : null;
+    }
+
+    // main thread
+    private void onTimeout(DeviceQueue q, Op op)
+    {
+        synchronized (q) {
+            if (q.inFlight != op) {
+                return; // completed meanwhile
+            }
+            q.timeout = null;
+            q.inFlight = null;
+            // its callback may still come. It must not complete the next
+            // operation of the same kind, so one with the same target is
+            // ignored, until an operation like it starts. Operations
+            // matched by Op are not affected. see: complete(remoteId, op)
+            if (op.kind != BULK_WRITE && op.kind != BATCH_READ) {
+                setLate(q, op);
+            }
+            startNext(q);
+        }
+        op.failer.fail("timed out waiting for the gatt callback");
+    }
+}
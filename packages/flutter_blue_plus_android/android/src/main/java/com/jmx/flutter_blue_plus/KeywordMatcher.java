@@ -0,0 +1,142 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Matches a name against many keywords at once (Aho-Corasick).
+//
+// perf: with_keywords used to call name.contains(k) for every keyword, for
+// every advertisement. Here the keywords are compiled once, at startScan, into
+// a state machine over the utf8 bytes of the name, so matching takes one step
+// per byte of the name, no matter how many keywords there are.
+//
+// Bytes that appear in no keyword all share one column of the transition
+// table, which keeps the table small (states x distinct keyword bytes).
+class KeywordMatcher
+{
+    private final boolean ignoreCase;
+
+    // byte -> column of the transition table. 0 = not in any keyword
+    private final int[] columns = new int[256];
+    private final int width;
+
+    // transitions[state * width + column] -> next state
+    private final int[] transitions;
+
+    // true if a keyword ends at this state
+    private final boolean[] accepts;
+
+    private KeywordMatcher(boolean ignoreCase, int width, int[] transitions, boolean[] accepts, int[] columns)
+    {
+        this.ignoreCase = ignoreCase;
+        this.width = width;
+        this.transitions = transitions;
+        this.accepts = accepts;
+        System.arraycopy(columns, 0, this.columns, 0, 256);
+    }
+
+    // ignoreCase: ascii only
+    static KeywordMatcher compile(List<String> keywords, boolean ignoreCase)
+    {
+        byte[][] patterns = new byte[keywords.size()][];
+        int maxStates = 1;
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = keywords.get(i).getBytes(StandardCharsets.UTF_8);
+            if (ignoreCase) {
+                for (int j = 0; j < patterns[i].length; j++) {
+                    patterns[i][j] = lower(patterns[i][j]);
+                }
+            }
+            maxStates += patterns[i].length;
+        }
+
+        // compact alphabet
+        int[] columns = new int[256];
+        int width = 1;
+        for (byte[] p : patterns) {
+            for (byte b : p) {
+                if (columns[b & 0xFF] == 0) {
+                    columns[b & 0xFF] = width++;
+                }
+            }
+        }
+
+        // build the trie. 0 = no edge yet (the root is never a child)
+        int[] next = new int[maxStates * width];
+        boolean[] accepts = new boolean[maxStates];
+        int states = 1;
+        for (byte[] p : patterns) {
+            int s = 0;
+            for (byte b : p) {
+                int i = s * width + columns[b & 0xFF];
+                if (next[i] == 0) {
+                    next[i] = states++;
+                }
+                s = next[i];
+            }
+            accepts[s] = true;
+        }
+
+        // breadth first: add failure links, and turn the trie into
+        // a complete transition table by following them ahead of time
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < width; c++) {
+            int child = next[c];
+            if (child != 0) {
+                fail[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            accepts[s] |= accepts[fail[s]];
+            for (int c = 0; c < width; c++) {
+                int i = s * width + c;
+                int child = next[i];
+                if (child != 0) {
+                    fail[child] = next[fail[s] * width + c];
+                    queue[tail++] = child;
+                } else {
+                    next[i] = next[fail[s] * width + c];
+                }
+            }
+        }
+
+        int[] transitions = new int[states * width];
+        System.arraycopy(next, 0, transitions, 0, transitions.length);
+        boolean[] acceptsTrimmed = new boolean[states];
+        System.arraycopy(accepts, 0, acceptsTrimmed, 0, states);
+
+        return new KeywordMatcher(ignoreCase, width, transitions, acceptsTrimmed, columns);
+    }
+
+    // true if any keyword occurs in bytes[offset, offset + length)
+    boolean matches(byte[] bytes, int offset, int length)
+    {
+        if (accepts[0]) {
+            return true; // empty keyword
+        }
+        int s = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = ignoreCase ? lower(bytes[i]) : bytes[i];
+            s = transitions[s * width + columns[b & 0xFF]];
+            if (accepts[s]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte lower(byte b)
+    {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
@@ -0,0 +1,161 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.SystemClock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.EventChannel.EventSink;
+import io.flutter.plugin.common.EventChannel.StreamHandler;
+
+// Notifications streamed on their own EventChannel, one per subscribed
+// characteristic, opened by setNotifyValue (see: BmSetNotifyValueRequest.androidStream).
+//
+// perf: OnCharacteristicReceived sends a map per value, with the remote_id,
+// uuids, error string, ... on the method channel shared with all control
+// traffic. Here, the channel name (the handle) carries the identity, so each
+// event is just the value, prefixed with a timestamp:
+//
+//   [0..7]  timestamp, microseconds since epoch (int64, little-endian)
+//   [8..]   value
+//
+// Characteristics are looked up by identity: android keeps the same
+// BluetoothGattCharacteristic object for the life of the connection.
+class NotifyStreams
+{
+    static final String CHANNEL_PREFIX = "flutter_blue_plus/notify/";
+
+    // ends the stream. see: Stream.deliver
+    private static final Object END_OF_STREAM = new Object();
+
+    private class Stream implements StreamHandler, EventDispatcher.Target
+    {
+        final int handle;
+        final String remoteId;
+        final EventChannel channel;
+        volatile EventSink sink = null;
+
+        Stream(BinaryMessenger messenger, int handle, String remoteId)
+        {
+            this.handle = handle;
+            this.remoteId = remoteId;
+            this.channel = new EventChannel(messenger, CHANNEL_PREFIX + handle);
+            this.channel.setStreamHandler(this);
+        }
+
+        @Override
+        public void onListen(Object arguments, EventSink events)
+        {
+            sink = events;
+        }
+
+        @Override
+        public void onCancel(Object arguments)
+        {
+            sink = null;
+        }
+
+        // main thread
+        @Override
+        public void deliver(Object data)
+        {
+            EventSink s = sink;
+            if (data == END_OF_STREAM) {
+                sink = null;
+                if (s != null) {
+                    s.endOfStream();
+                }
+                channel.setStreamHandler(null);
+            } else if (s != null) { // null: cancelled meanwhile
+                s.success(data);
+            }
+        }
+
+        void close()
+        {
+            mEvents.postTo(this, remoteId, END_OF_STREAM);
+        }
+    }
+
+    private final EventDispatcher mEvents;
+    private final AtomicInteger mNextHandle = new AtomicInteger(1);
+    private final Map<BluetoothGattCharacteristic, Stream> mStreams = new ConcurrentHashMap<>();
+
+    // wall clock at a monotonic instant, so timestamps have
+    // microsecond resolution & do not jump with clock changes
+    private final long mBaseWallMicros = System.currentTimeMillis() * 1000;
+    private final long mBaseElapsedNanos = SystemClock.elapsedRealtimeNanos();
+
+    NotifyStreams(EventDispatcher events)
+    {
+        mEvents = events;
+    }
+
+    // returns the handle. Re-opening a characteristic returns the same one
+    synchronized int open(BinaryMessenger messenger, String remoteId, BluetoothGattCharacteristic chr)
+    {
+        Stream s = mStreams.get(chr);
+        if (s == null) {
+            s = new Stream(messenger, mNextHandle.getAndIncrement(), remoteId);
+            mStreams.put(chr, s);
+        }
+        return s.handle;
+    }
+
+    // returns false if nobody listens to this characteristic,
+    // so the value should go the usual way. any thread
+    boolean send(BluetoothGattCharacteristic chr, byte[] value)
+    {
+        Stream s = mStreams.get(chr);
+        if (s == null || s.sink == null) {
+            return false;
+        }
+
+        long micros = mBaseWallMicros + (SystemClock.elapsedRealtimeNanos() - mBaseElapsedNanos) / 1000;
+        int len = value != null ? value.length : 0;
+        byte[] event = new byte[8 + len];
+        for (int i = 0; i < 8; i++) {
+            event[i] = (byte) (micros >>> (8 * i));
+        }
+        if (len > 0) {
+            System.arraycopy(value, 0, event, 8, len);
+        }
+
+        mEvents.postTo(s, s.remoteId, event);
+        return true;
+    }
+
+    synchronized void close(BluetoothGattCharacteristic chr)
+    {
+        Stream s = mStreams.remove(chr);
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    synchronized void closeDevice(String remoteId)
+    {
+        for (Map.Entry<BluetoothGattCharacteristic, Stream> e : mStreams.entrySet()) {
+            if (e.getValue().remoteId.equals(remoteId)) {
+                mStreams.remove(e.getKey());
+                e.getValue().close();
+            }
+        }
+    }
+
+    synchronized void closeAll()
+    {
+        for (Stream s : mStreams.values()) {
+            s.close();
+        }
+        mStreams.clear();
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Collects scan results over a time window and hands them off in a single
+// flush, so a dense RF environment produces one channel message per window
+// instead of one per advertisement. Within a window only the latest result
+// for each key (remote_id) is kept.
+class ScanCoalescer<T>
+{
+    interface Listener<T> {
+        void onFlush(List<T> items);
+    }
+
+    private final Handler handler;
+    private final Listener<T> listener;
+    private final LinkedHashMap<String, T> pending = new LinkedHashMap<>();
+    private final Runnable flushRunnable = this::flush;
+
+    private long windowMs = 0;
+    private int maxSize = 0;
+    private boolean flushScheduled = false;
+
+    ScanCoalescer(Handler handler, Listener<T> listener)
+    {
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    // windowMs: how long to collect results before flushing. 0 disables coalescing.
+    // maxSize: flush early once this many distinct keys are pending.
+    synchronized void configure(long windowMs, int maxSize)
+    {
+        this.windowMs = windowMs;
+        this.maxSize = Math.max(maxSize, 1);
+        pending.clear();
+        cancelScheduledFlush();
+    }
+
+    // drops anything pending and disables coalescing
+    synchronized void reset()
+    {
+        windowMs = 0;
+        pending.clear();
+        cancelScheduledFlush();
+    }
+
+    synchronized boolean isEnabled()
+    {
+        return windowMs > 0;
+    }
+
+    void add(String key, T item)
+    {
+        boolean full;
+        synchronized (this) {
+            // remove first, so the entry moves to the end of the insertion order
+            pending.remove(key);
+            pending.put(key, item);
+            full = pending.size() >= maxSize;
+            if (!full && !flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(flushRunnable, windowMs);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    // sends everything that is pending
+    void flush()
+    {
+        List<T> items;
+        synchronized (this) {
+            cancelScheduledFlush();
+            if (pending.isEmpty()) {
+                return;
+            }
+            items = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        listener.onFlush(items);
+    }
+
+    private void cancelScheduledFlush()
+    {
+        if (flushScheduled) {
+            handler.removeCallbacks(flushRunnable);
+            flushScheduled = false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The devices seen during a scan, aggregated natively.
+//
+// perf: UIs that redraw at 1-2 Hz do not need every advertisement. Instead of
+// streaming thousands of them per second to dart, the scan records each one
+// here (latest advertisement & stats, per device), and dart polls for the
+// devices that changed since the last version it has seen.
+//
+// Every update gets a new version number. Devices evicted to make room are
+// remembered as 'removed', for a while, so incremental queries can report them.
+class ScanDeviceTable
+{
+    // how many evictions we remember for incremental queries
+    static final int MAX_REMOVED = 1024;
+
+    static class Device
+    {
+        final String remoteId;
+        String platformName;
+        boolean connectable;
+        int rssi;
+        byte[] adv;
+
+        long firstSeenMs; // System.currentTimeMillis
+        long lastSeenMs;
+        int packets;
+        int rssiMin;
+        int rssiMax;
+        long rssiSum;
+
+        long version;
+
+        Device(String remoteId)
+        {
+            this.remoteId = remoteId;
+        }
+
+        Device copy()
+        {
+            Device d = new Device(remoteId);
+            d.platformName = platformName;
+            d.connectable = connectable;
+            d.rssi = rssi;
+            d.adv = adv;
+            d.firstSeenMs = firstSeenMs;
+            d.lastSeenMs = lastSeenMs;
+            d.packets = packets;
+            d.rssiMin = rssiMin;
+            d.rssiMax = rssiMax;
+            d.rssiSum = rssiSum;
+            d.version = version;
+            return d;
+        }
+
+        int rssiAvg()
+        {
+            return packets > 0 ? (int) Math.round((double) rssiSum / packets) : rssi;
+        }
+    }
+
+    // see: changesSince
+    static class Changes
+    {
+        long version;
+        boolean full;    // if true, 'devices' is the whole table
+        final List<Device> devices = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+    }
+
+    private static class Removal
+    {
+        final String remoteId;
+        final long version;
+
+        Removal(String remoteId, long version)
+        {
+            this.remoteId = remoteId;
+            this.version = version;
+        }
+    }
+
+    private int capacity = 2048;
+    private long version = 0;
+
+    // version of the last clear. Queries from before it get the whole table
+    private long cleared = 0;
+
+    // version of the newest removal we forgot. Queries
+    // from before it cannot be answered incrementally
+    private long horizon = 0;
+
+    private final ArrayDeque<Removal> removed = new ArrayDeque<>();
+
+    // access order: the eldest entry is the least recently seen device
+    private final LinkedHashMap<String, Device> devices = new LinkedHashMap<String, Device>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Device> eldest)
+        {
+            if (size() <= capacity) {
+                return false;
+            }
+            remember(eldest.getKey());
+            return true;
+        }
+    };
+
+    // empties the table. Versions keep counting up, so that
+    // dart can tell a cleared table from an unchanged one
+    synchronized void reset(int capacity)
+    {
+        this.capacity = Math.max(capacity, 1);
+        devices.clear();
+        removed.clear();
+        cleared = ++version;
+    }
+
+    // returns true if the device is new
+    synchronized boolean record(String remoteId, boolean connectable, int rssi, byte[] adv, long nowMs)
+    {
+        Device d = devices.get(remoteId);
+        boolean isNew = d == null;
+        if (isNew) {
+            d = new Device(remoteId);
+            d.firstSeenMs = nowMs;
+            d.rssiMin = rssi;
+            d.rssiMax = rssi;
+            devices.put(remoteId, d);
+        }
+
+        d.connectable = connectable;
+        d.rssi = rssi;
+        if (adv != null) {
+            d.adv = adv;
+        }
+        d.lastSeenMs = Math.max(d.lastSeenMs, nowMs);
+        d.packets++;
+        d.rssiMin = Math.min(d.rssiMin, rssi);
+        d.rssiMax = Math.max(d.rssiMax, rssi);
+        d.rssiSum += rssi;
+        d.version = ++version;
+        return isNew;
+    }
+
+    synchronized void setPlatformName(String remoteId, String platformName)
+    {
+        Device d = devices.get(remoteId);
+        if (d != null) {
+            d.platformName = platformName;
+        }
+    }
+
+    // the devices updated after 'since', and the devices removed after it.
+    // since = 0: the whole table
+    synchronized Changes changesSince(long since)
+    {
+        Changes c = new Changes();
+        c.version = version;
+        c.full = since == 0 || since < cleared || since < horizon || since > version;
+
+        for (Device d : devices.values()) {
+            if (c.full || d.version > since) {
+                c.devices.add(d.copy());
+            }
+        }
+
+        if (c.full == false) {
+            Iterator<Removal> it = removed.descendingIterator();
+            while (it.hasNext()) {
+                Removal r = it.next();
+                if (r.version <= since) {
+                    break;
+                }
+                c.removed.add(r.remoteId);
+            }
+        }
+
+        return c;
+    }
+
+    synchronized int size()
+    {
+        return devices.size();
+    }
+
+    private void remember(String remoteId)
+    {
+        // an eviction changes the table, so it gets a version too
+        removed.addLast(new Removal(remoteId, ++version));
+        if (removed.size() > MAX_REMOVED) {
+            horizon = removed.removeFirst().version;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Decides which scan filters are given to the bluetooth controller.
+//
+// Controllers only have a few offload filter slots. With too many filters,
+// startScan fails (SCAN_FAILED_*), or the stack quietly matches on the host.
+//
+// Filters are OR'ed: an advertisement is reported if it matches *any* filter.
+// So we cannot simply leave some filters out of the hardware list. That would
+// hide advertisements that only match the filters we left out. Instead, when
+// there are more filters than slots, we loosen them until they fit:
+//
+//   1. msd filters       -> one filter per manufacturer id (any data)
+//   2. service data      -> one filter per service uuid (any data)
+//   3. names             -> "has a name" (android 13+)
+//   4. still too many    -> no hardware filters at all, see: fallback
+//
+// The loosened filters match a superset, and the exact filters are then
+// applied in software by matches(), before any map is built.
+class ScanFilterPlan
+{
+    static final int HW_SERVICE = 0;
+    static final int HW_ADDRESS = 1;
+    static final int HW_NAME = 2;
+    static final int HW_MSD = 3;
+    static final int HW_SERVICE_DATA = 4;
+    static final int HW_AD_TYPE = 5;
+
+    // a filter to give to the controller. The plugin turns these into ScanFilters
+    static class HwFilter
+    {
+        final int kind;
+        UUID service;
+        String address;
+        String name;
+        int manufacturerId;
+        int adType;
+        byte[] data = new byte[0];
+        byte[] mask = new byte[0];
+
+        HwFilter(int kind)
+        {
+            this.kind = kind;
+        }
+    }
+
+    final List<HwFilter> hardware = new ArrayList<>();
+
+    // if false, the hardware filters are exact, and matches() need not be called
+    boolean software = false;
+
+    // filters were requested, but did not fit even loosened, so the scan has
+    // no hardware filters: every advertisement wakes the host. Remote ids
+    // cannot be loosened: no filter matches a set of addresses, except all.
+    // The plugin reports this to dart
+    boolean fallback = false;
+
+    // number of filters requested
+    int requested = 0;
+
+    // exact filters
+    private final Set<UUID> services = new HashSet<>();
+    private final LongHashSet addresses = new LongHashSet();
+    private final Set<String> names = new HashSet<>();
+    private final List<DataFilter> msd = new ArrayList<>();
+    private final List<DataFilter> serviceData = new ArrayList<>();
+
+    private static class DataFilter
+    {
+        final int manufacturerId;
+        final UUID service;
+        final byte[] data;
+        final byte[] mask;
+
+        DataFilter(int manufacturerId, UUID service, byte[] data, byte[] mask)
+        {
+            this.manufacturerId = manufacturerId;
+            this.service = service;
+            this.data = data;
+            this.mask = mask;
+        }
+    }
+
+    // see: BmScanSettings. with_msd & with_service_data are lists of maps, see: BmMsdFilter, BmServiceDataFilter
+    // maxHwFilters: hardware filter slot budget. 0 = unlimited
+    // canFilterAdType: android 13+, see: ScanFilter.Builder.setAdvertisingDataType
+    @SuppressWarnings("unchecked") // type safety uses bluetooth_msgs.dart
+    static ScanFilterPlan build(List<String> withServices,
+                                List<String> withRemoteIds,
+                                List<String> withNames,
+                                List<Object> withMsd,
+                                List<Object> withServiceData,
+                                int maxHwFilters,
+                                boolean canFilterAdType)
+    {
+        ScanFilterPlan plan = new ScanFilterPlan();
+
+        for (String s : withServices) {
+            UUID uuid = UuidCache.parse(s);
+            if (uuid != null) {
+                plan.services.add(uuid);
+            }
+        }
+        for (String address : withRemoteIds) {
+            plan.addresses.add(ScanStateTable.packAddress(address));
+        }
+        plan.names.addAll(withNames);
+        for (Object o : withMsd) {
+            HashMap<String, Object> m = (HashMap<String, Object>) o;
+            plan.msd.add(new DataFilter((int) m.get("manufacturer_id"), null,
+                (byte[]) m.get("data"), (byte[]) m.get("mask")));
+        }
+        for (Object o : withServiceData) {
+            HashMap<String, Object> m = (HashMap<String, Object>) o;
+            UUID uuid = UuidCache.parse((String) m.get("service"));
+            if (uuid != null) {
+                plan.serviceData.add(new DataFilter(0, uuid, (byte[]) m.get("data"), (byte[]) m.get("mask")));
+            }
+        }
+
+        plan.requested = withServices.size() + withRemoteIds.size() + withNames.size() +
+            withMsd.size() + withServiceData.size();
+
+        // distinct ids & uuids, if loosened
+        Map<Integer, Boolean> msdIds = new LinkedHashMap<>();
+        for (DataFilter f : plan.msd) {
+            msdIds.put(f.manufacturerId, true);
+        }
+        Map<UUID, Boolean> serviceDataUuids = new LinkedHashMap<>();
+        for (DataFilter f : plan.serviceData) {
+            serviceDataUuids.put(f.service, true);
+        }
+
+        boolean looseMsd = false;
+        boolean looseServiceData = false;
+        boolean looseNames = false;
+
+        int budget = maxHwFilters > 0 ? maxHwFilters : Integer.MAX_VALUE;
+        int total = plan.requested;
+
+        if (total > budget && msdIds.size() < plan.msd.size()) {
+            looseMsd = true;
+            total -= plan.msd.size() - msdIds.size();
+        }
+        if (total > budget && serviceDataUuids.size() < plan.serviceData.size()) {
+            looseServiceData = true;
+            total -= plan.serviceData.size() - serviceDataUuids.size();
+        }
+        if (total > budget && canFilterAdType && withNames.size() > 2) {
+            looseNames = true;
+            total -= withNames.size() - 2;
+        }
+        if (total > budget) {
+            // does not fit, even loosened. scan without hardware filters
+            plan.software = plan.requested > 0;
+            plan.fallback = plan.requested > 0;
+            return plan;
+        }
+
+        plan.software = looseMsd || looseServiceData || looseNames;
+
+        for (UUID uuid : plan.services) {
+            HwFilter f = new HwFilter(HW_SERVICE);
+            f.service = uuid;
+            plan.hardware.add(f);
+        }
+        for (String address : withRemoteIds) {
+            HwFilter f = new HwFilter(HW_ADDRESS);
+            f.address = address;
+            plan.hardware.add(f);
+        }
+        if (looseNames) {
+            plan.hardware.add(adTypeFilter(AdvParser.TYPE_NAME_SHORT));
+            plan.hardware.add(adTypeFilter(AdvParser.TYPE_NAME_COMPLETE));
+        } else {
+            for (String name : withNames) {
+                HwFilter f = new HwFilter(HW_NAME);
+                f.name = name;
+                plan.hardware.add(f);
+            }
+        }
+        if (looseMsd) {
+            for (int id : msdIds.keySet()) {
+                HwFilter f = new HwFilter(HW_MSD);
+                f.manufacturerId = id;
+                plan.hardware.add(f);
+            }
+        } else {
+            for (DataFilter d : plan.msd) {
+                HwFilter f = new HwFilter(HW_MSD);
+                f.manufacturerId = d.manufacturerId;
+                f.data = d.data;
+                f.mask = d.mask;
+                plan.hardware.add(f);
+            }
+        }
+        if (looseServiceData) {
+            for (UUID uuid : serviceDataUuids.keySet()) {
+                HwFilter f = new HwFilter(HW_SERVICE_DATA);
+                f.service = uuid;
+                plan.hardware.add(f);
+            }
+        } else {
+            for (DataFilter d : plan.serviceData) {
+                HwFilter f = new HwFilter(HW_SERVICE_DATA);
+                f.service = d.service;
+                f.data = d.data;
+                f.mask = d.mask;
+                plan.hardware.add(f);
+            }
+        }
+
+        return plan;
+    }
+
+    // true if the advertisement matches any of the exact filters.
+    // p: the parsed advertisement. Does not allocate, unless there are name filters.
+    boolean matches(long packedAddress, AdvParser p)
+    {
+        if (requested == 0) {
+            return true;
+        }
+
+        // remote ids
+        if (addresses.contains(packedAddress)) {
+            return true;
+        }
+
+        byte[] b = p.bytes();
+        if (b == null) {
+            return false;
+        }
+
+        // services
+        if (services.isEmpty() == false) {
+            for (int i = 0; i < p.uuidCount(); i++) {
+                if (containsService(b, p.uuidOffset(i), p.uuidWidth(i))) {
+                    return true;
+                }
+            }
+        }
+
+        // names
+        if (names.isEmpty() == false && p.hasName()) {
+            if (names.contains(p.name())) {
+                return true;
+            }
+        }
+
+        // msd. layout: manufacturerId (2 bytes, little-endian), data
+        for (int j = 0; j < msd.size(); j++) {
+            DataFilter f = msd.get(j);
+            for (int i = 0; i < p.msdCount(); i++) {
+                int off = p.msdOffset(i);
+                int len = p.msdLength(i);
+                if (len < 2) {
+                    continue;
+                }
+                int id = (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+                if (id == f.manufacturerId && matchesPartial(f.data, f.mask, b, off + 2, len - 2)) {
+                    return true;
+                }
+            }
+        }
+
+        // service data
+        for (int j = 0; j < serviceData.size(); j++) {
+            DataFilter f = serviceData.get(j);
+            long msb = f.service.getMostSignificantBits();
+            long lsb = f.service.getLeastSignificantBits();
+            for (int i = 0; i < p.serviceDataCount(); i++) {
+                int off = p.serviceDataUuidOffset(i);
+                int width = p.serviceDataUuidWidth(i);
+                if (AdvParser.uuidMsb(b, off, width) == msb &&
+                    AdvParser.uuidLsb(b, off, width) == lsb &&
+                    matchesPartial(f.data, f.mask, b, p.serviceDataOffset(i), p.serviceDataLength(i))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean containsService(byte[] b, int off, int width)
+    {
+        long msb = AdvParser.uuidMsb(b, off, width);
+        long lsb = AdvParser.uuidLsb(b, off, width);
+        for (UUID uuid : services) {
+            if (uuid.getMostSignificantBits() == msb && uuid.getLeastSignificantBits() == lsb) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // same rules as android's ScanFilter: the advertised data must start
+    // with 'data', comparing only the bits set in 'mask' (if any)
+    static boolean matchesPartial(byte[] data, byte[] mask, byte[] b, int off, int len)
+    {
+        if (len < data.length) {
+            return false;
+        }
+        boolean hasMask = mask != null && mask.length == data.length;
+        for (int i = 0; i < data.length; i++) {
+            int m = hasMask ? mask[i] : 0xFF;
+            if ((data[i] & m) != (b[off + i] & m)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static HwFilter adTypeFilter(int adType)
+    {
+        HwFilter f = new HwFilter(HW_AD_TYPE);
+        f.adType = adType;
+        return f;
+    }
+
+    // open-addressing set of longs. 0 is never a key, see: ScanStateTable.packAddress
+    static class LongHashSet
+    {
+        private long[] keys = new long[16];
+        private int size = 0;
+
+        void add(long key)
+        {
+            if ((size + 1) * 2 > keys.length) {
+                long[] old = keys;
+                keys = new long[old.length * 2];
+                size = 0;
+                for (long k : old) {
+                    if (k != 0) {
+                        add(k);
+                    }
+                }
+            }
+            int slot = find(key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+        }
+
+        boolean contains(long key)
+        {
+            return size != 0 && keys[find(key)] == key;
+        }
+
+        private int find(long key)
+        {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// What happens to an advertisement between the scanner and dart:
+// software filters, keywords, beacon filters, the device table, duplicates,
+// rate limits, and finally the BmScanAdvertisement map.
+//
+// Plain java, no android classes, so the same code can be driven
+// by a recorded scan trace in a JVM unit test. see: ScanTraceReplayTest
+class ScanPipeline
+{
+    // platform names are looked up once per device, see: ScanDeviceTable
+    interface Names {
+        String platformName(String remoteId);
+    }
+
+    // see: BmScanSettings
+    private static class Settings
+    {
+        boolean continuousUpdates = false;
+        int continuousDivisor = 1;
+        int rateInterval = 0;
+        int rateBurst = 1;
+        int rssiDelta = 0;
+        int heartbeat = 0;
+        boolean deviceTable = false;
+        ScanFilterPlan plan = null; // null: no software filters needed
+        KeywordMatcher keywords = null;
+        boolean beacons = false;
+        boolean beaconCompact = false;
+        List<BeaconDecoder.Filter> beaconFilters = null; // null: no filter
+    }
+
+    private final AdvParser mParser = new AdvParser();
+    private final BeaconDecoder mBeacon = new BeaconDecoder();
+    private final ScanStateTable mState = new ScanStateTable();
+    private final ScanDeviceTable mDevices = new ScanDeviceTable();
+    private volatile Settings mSettings = new Settings();
+
+    // settings: see BmScanSettings.toMap
+    // canFilterAdType: android 13+, see: ScanFilterPlan
+    // returns the filter plan. Its hardware filters are for the scanner
+    @SuppressWarnings("unchecked") // type safety uses bluetooth_msgs.dart
+    ScanFilterPlan configure(Map<String, Object> data, boolean canFilterAdType)
+    {
+        List<String> withServices =    (List<String>) data.get("with_services");
+        List<String> withRemoteIds =   (List<String>) data.get("with_remote_ids");
+        List<String> withNames =       (List<String>) data.get("with_names");
+        List<String> withKeywords =    (List<String>) data.get("with_keywords");
+        List<Object> withMsd =         (List<Object>) data.get("with_msd");
+        List<Object> withServiceData = (List<Object>) data.get("with_service_data");
+        int stateCapacity =                     (int) data.get("android_scan_state_capacity");
+        int stateTtl =                          (int) data.get("android_scan_state_ttl");
+        int maxHwFilters =                      (int) data.get("android_max_hw_filters");
+        boolean keywordsIgnoreCase =        (boolean) data.get("android_keywords_ignore_case");
+
+        Settings s = new Settings();
+        s.continuousUpdates =   (boolean) data.get("continuous_updates");
+        s.continuousDivisor =       (int) data.get("continuous_divisor");
+        s.rateInterval =            (int) data.get("android_rate_limit_interval");
+        s.rateBurst =               (int) data.get("android_rate_limit_burst");
+        s.rssiDelta =               (int) data.get("android_rssi_delta");
+        s.heartbeat =               (int) data.get("android_heartbeat");
+        s.deviceTable =         (boolean) data.get("android_device_table");
+        s.beacons =             (boolean) data.get("android_beacons");
+        s.beaconCompact =       (boolean) data.get("android_beacon_compact");
+
+        List<Object> withBeacons = (List<Object>) data.get("android_with_beacons");
+        if (withBeacons.isEmpty() == false) {
+            s.beaconFilters = BeaconDecoder.Filter.fromList(withBeacons);
+        }
+
+        // services, remoteIds, names, msd, service data.
+        // loosened to fit the hardware filter slots. see: ScanFilterPlan
+        ScanFilterPlan plan = ScanFilterPlan.build(withServices, withRemoteIds, withNames,
+            withMsd, withServiceData, maxHwFilters, canFilterAdType);
+        s.plan = plan.software ? plan : null;
+        s.keywords = withKeywords.isEmpty() ? null : KeywordMatcher.compile(withKeywords, keywordsIgnoreCase);
+
+        // clear seen devices
+        mState.configure(stateCapacity, stateTtl);
+
+        // see: getScanDevices
+        if (s.deviceTable) {
+            mDevices.reset(stateCapacity);
+        }
+
+        mSettings = s;
+        return plan;
+    }
+
+    ScanStateTable state()
+    {
+        return mState;
+    }
+
+    ScanDeviceTable devices()
+    {
+        return mDevices;
+    }
+
+    // nowMs: monotonic, e.g. ScanResult.getTimestampNanos
+    // seenMs: wall clock, for the device table
+    boolean passes(String remoteId,
+                   byte[] advBytes,
+                   int rssi,
+                   boolean connectable,
+                   long nowMs,
+                   long seenMs,
+                   Names names)
+    {
+        Settings s = mSettings;
+
+        // filters that did not fit in hardware
+        if (s.plan != null) {
+            synchronized (mParser) {
+                mParser.parse(advBytes);
+                if (s.plan.matches(ScanStateTable.packAddress(remoteId), mParser) == false) {
+                    return false;
+                }
+            }
+        }
+
+        // filter keywords
+        if (s.keywords != null && filterKeywords(s.keywords, advBytes) == false) {
+            return false;
+        }
+
+        // filter beacons, on their decoded fields
+        if (s.beaconFilters != null && filterBeacons(s.beaconFilters, advBytes) == false) {
+            return false;
+        }
+
+        // every matching advertisement counts, including the ones filtered below
+        if (s.deviceTable) {
+            // perf: the platform name may be a binder call. only once per device
+            if (mDevices.record(remoteId, connectable, rssi, advBytes, seenMs)) {
+                mDevices.setPlatformName(remoteId, names.platformName(remoteId));
+            }
+        }
+
+        // filter duplicates
+        if (s.continuousUpdates == false) {
+            return mState.isDuplicate(remoteId, advBytes, nowMs) == false;
+        }
+
+        // filter rate. at most one update per interval, per device
+        if (s.rateInterval > 0 && mState.hasToken(remoteId, nowMs, s.rateInterval, s.rateBurst) == false) {
+            return false;
+        }
+
+        // filter unchanged. forward on payload change, rssi change, or heartbeat
+        if (s.rssiDelta > 0 || s.heartbeat > 0) {
+            if (mState.hasChanged(remoteId, advBytes, rssi, nowMs, s.rssiDelta, s.heartbeat) == false) {
+                return false;
+            }
+        } else if (s.rateInterval <= 0) {
+            // filter divisor
+            int count = mState.incrementCount(remoteId, nowMs);
+            if ((count % s.continuousDivisor) != 0) {
+                return false;
+            }
+        }
+
+        if (s.rateInterval > 0) {
+            mState.takeToken(remoteId, nowMs, s.rateInterval);
+        }
+
+        return true;
+    }
+
+    // matches the advertised name, without decoding it to a string
+    private boolean filterKeywords(KeywordMatcher keywords, byte[] advBytes)
+    {
+        synchronized (mParser) {
+            if (mParser.parse(advBytes) == false || mParser.hasName() == false) {
+                return false;
+            }
+            return keywords.matches(advBytes, mParser.nameOffset(), mParser.nameLength());
+        }
+    }
+
+    // true if the advertisement holds a beacon that matches any of the filters
+    private boolean filterBeacons(List<BeaconDecoder.Filter> filters, byte[] advBytes)
+    {
+        synchronized (mParser) {
+            if (mParser.parse(advBytes) == false || mBeacon.decode(mParser) == false) {
+                return false;
+            }
+            for (int i = 0; i < filters.size(); i++) {
+                if (filters.get(i).matches(mBeacon)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // builds the advertisement from the raw advertisement bytes,
+    // walking them once. see: AdvParser
+    HashMap<String, Object> bmScanAdvertisement(String remoteId,
+                                                String platformName,
+                                                boolean connectable,
+                                                int rssi,
+                                                byte[] advBytes)
+    {
+        // See: BmScanAdvertisement
+        // perf: only add keys if they exists
+        HashMap<String, Object> map = new HashMap<>();
+        if (remoteId != null)     {map.put("remote_id", remoteId);}
+        if (platformName != null) {map.put("platform_name", platformName);}
+        if (connectable)          {map.put("connectable", 1);}
+        if (rssi != 0)            {map.put("rssi", rssi);}
+
+        Settings s = mSettings;
+
+        synchronized (mParser) {
+            AdvParser p = mParser;
+            if (p.parse(advBytes) == false) {
+                return map;
+            }
+
+            // decoded beacon. In compact mode, it replaces the raw data it was decoded from
+            int beacon = BeaconDecoder.NONE;
+            if (s.beacons && mBeacon.decode(p)) {
+                beacon = mBeacon.type();
+                map.put("beacon", mBeacon.toMap());
+            }
+            boolean skipMsd = s.beaconCompact &&
+                (beacon == BeaconDecoder.IBEACON || beacon == BeaconDecoder.ALTBEACON);
+            boolean skipEddystone = s.beaconCompact && beacon >= BeaconDecoder.EDDYSTONE_UID;
+
+            if (p.hasName())                          {map.put("adv_name", p.name());}
+            if (p.txPower() != AdvParser.NO_TX_POWER) {map.put("tx_power_level", p.txPower());}
+            if (p.appearance() != 0)                  {map.put("appearance", p.appearance());}
+
+            // Manufacturer Specific Data
+            // Note: multiple MSD in the same advertisement are concatenated,
+            // the original android implementation drops all but the last
+            if (p.msdTotalLength() >= 2 && skipMsd == false) {
+                // manufacturer ID uses little-endian order.
+                int manufacturerId = p.manufacturerId();
+
+                // payload
+                byte[] payload = new byte[p.msdTotalLength() - 2];
+                p.copyMsd(2, payload, 0);
+
+                HashMap<Integer, byte[]> manufDataB = new HashMap<>();
+                manufDataB.put(manufacturerId, payload);
+                map.put("manufacturer_data", manufDataB);
+            }
+
+            // Service Data
+            HashMap<String, byte[]> serviceDataB = new HashMap<>();
+            for (int i = 0; i < p.serviceDataCount(); i++) {
+                if (skipEddystone && p.serviceDataUuidWidth(i) == 2 &&
+                    AdvParser.uuidMsb(p.bytes(), p.serviceDataUuidOffset(i), 2) >>> 32 == BeaconDecoder.EDDYSTONE_SERVICE) {
+                    continue;
+                }
+                serviceDataB.put(UuidCache.str(p.serviceDataUuid(i)), p.serviceData(i));
+            }
+            map.put("service_data", serviceDataB);
+
+            // Service UUIDs
+            if (p.uuidCount() > 0) {
+                List<String> serviceUuidsB = new ArrayList<>(p.uuidCount());
+                for (int i = 0; i < p.uuidCount(); i++) {
+                    serviceUuidsB.add(UuidCache.str(p.uuid(i)));
+                }
+                map.put("service_uuids", serviceUuidsB);
+            }
+        }
+
+        return map;
+    }
+}
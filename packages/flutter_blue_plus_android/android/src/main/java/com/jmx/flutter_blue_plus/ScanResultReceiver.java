@@ -0,0 +1,168 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.app.PendingIntent;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Receives the results of a background scan, i.e. startScan(filters, settings, PendingIntent).
+//
+// Unlike a ScanCallback, the PendingIntent keeps working when our process is
+// cached or killed: android starts the process to deliver the results. There
+// may be no flutter engine at that point, so results are kept here, as raw
+// advertisement bytes, until the plugin attaches and sends them in bulk.
+//
+// The buffer is in memory only: results still buffered when the process
+// dies are lost. Android delivers the next batch to the new process.
+//
+// Must be declared in the AndroidManifest.
+public class ScanResultReceiver extends BroadcastReceiver
+{
+    private static final String TAG = "[FBP-Android]";
+
+    static final String ACTION_SCAN_RESULTS = "com.jmx.flutter_blue_plus.SCAN_RESULTS";
+
+    // oldest results are dropped beyond this
+    static final int MAX_BUFFERED = 2048;
+
+    interface Listener {
+        void onBackgroundScanResults();
+    }
+
+    // a buffered advertisement
+    static class Record
+    {
+        final long timestampMs; // when received, System.currentTimeMillis
+        final String remoteId;
+        final String platformName;
+        final boolean connectable;
+        final int rssi;
+        final byte[] adv;
+
+        Record(long timestampMs, String remoteId, String platformName, boolean connectable, int rssi, byte[] adv)
+        {
+            this.timestampMs = timestampMs;
+            this.remoteId = remoteId;
+            this.platformName = platformName;
+            this.connectable = connectable;
+            this.rssi = rssi;
+            this.adv = adv;
+        }
+    }
+
+    private static final ArrayDeque<Record> sBuffer = new ArrayDeque<>();
+    private static int sDropped = 0;
+    private static int sLastError = 0;
+    private static volatile Listener sListener = null;
+
+    static PendingIntent pendingIntent(Context context)
+    {
+        Intent intent = new Intent(context, ScanResultReceiver.class);
+        intent.setAction(ACTION_SCAN_RESULTS);
+        // mutable: android adds the results to the intent
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= 31) { // Android 12 (October 2021)
+            flags |= PendingIntent.FLAG_MUTABLE;
+        }
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+
+    // called on the main thread. null to detach
+    static void setListener(Listener listener)
+    {
+        sListener = listener;
+    }
+
+    // returns & clears the buffered results
+    static synchronized List<Record> drain()
+    {
+        List<Record> out = new ArrayList<>(sBuffer);
+        sBuffer.clear();
+        if (sDropped > 0) {
+            Log.w(TAG, "background scan: dropped " + sDropped + " results while buffer was full");
+            sDropped = 0;
+        }
+        return out;
+    }
+
+    // returns & clears the last scan error. 0 = none
+    static synchronized int takeLastError()
+    {
+        int e = sLastError;
+        sLastError = 0;
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation") // getParcelableArrayListExtra, needed for android 12 & lower compatibility
+    public void onReceive(Context context, Intent intent)
+    {
+        if (intent == null || ACTION_SCAN_RESULTS.equals(intent.getAction()) == false) {
+            return;
+        }
+
+        int errorCode = intent.getIntExtra(BluetoothLeScanner.EXTRA_ERROR_CODE, 0);
+        if (errorCode != 0) {
+            Log.e(TAG, "background scan failed: " + errorCode);
+            synchronized (ScanResultReceiver.class) {
+                sLastError = errorCode;
+            }
+        }
+
+        ArrayList<ScanResult> results = intent.getParcelableArrayListExtra(BluetoothLeScanner.EXTRA_LIST_SCAN_RESULT);
+        if (results != null && results.isEmpty() == false) {
+            // result timestamps are elapsed realtime. convert to wall clock.
+            // with a report delay, results can be many seconds older than this intent
+            long nowMs = System.currentTimeMillis();
+            long nowNanos = SystemClock.elapsedRealtimeNanos();
+            synchronized (ScanResultReceiver.class) {
+                for (ScanResult r : results) {
+                    ScanRecord record = r.getScanRecord();
+                    boolean connectable = Build.VERSION.SDK_INT >= 26 ? r.isConnectable() : true;
+                    if (sBuffer.size() == MAX_BUFFERED) {
+                        sBuffer.removeFirst();
+                        sDropped++;
+                    }
+                    long ageMs = (nowNanos - r.getTimestampNanos()) / 1000000;
+                    sBuffer.addLast(new Record(nowMs - Math.max(ageMs, 0),
+                        r.getDevice().getAddress(),
+                        safeDeviceName(r.getDevice()),
+                        connectable,
+                        r.getRssi(),
+                        record != null ? record.getBytes() : null));
+                }
+            }
+        }
+
+        // flutter attached? send now
+        Listener listener = sListener;
+        if (listener != null) {
+            listener.onBackgroundScanResults();
+        }
+    }
+
+    // see: FlutterBluePlusPlugin.safeDeviceName
+    private static String safeDeviceName(BluetoothDevice device)
+    {
+        try {
+            return device.getName();
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+}
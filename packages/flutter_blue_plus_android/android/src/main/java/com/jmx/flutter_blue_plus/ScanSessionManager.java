@@ -0,0 +1,228 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import android.os.Handler;
+
+import com.jmx.flutter_blue_plus.FlutterBluePlusPlugin.LogLevel;
+
+// Sits between startScan / stopScan and the hardware scanner.
+//
+// Android silently ignores the scans of an app that starts more than 5 scans in
+// 30 seconds (no error, just no results), and it demotes scans running longer
+// than 30 minutes to opportunistic. So we:
+//
+//   - defer stops briefly, so a stop followed by a start with the same settings
+//     (e.g. dart restarting a scan) reuses the running hardware scan
+//   - count hardware starts, and delay a start that would be throttled until
+//     the window allows it, instead of starting a scan that returns nothing
+//   - restart long scans before the 30 minute limit
+//   - keep results wanted after a stop until the hardware flushed its batch
+//
+// R: a hardware scan request. equals() must be true when two requests
+// would start an identical hardware scan (filters & settings).
+class ScanSessionManager<R>
+{
+    interface Scanner<R> {
+        // returns false if the scan could not be started
+        boolean start(R request);
+        void stop();
+        void log(LogLevel level, String message);
+    }
+
+    // android: 5 starts per 30 seconds, see: AppScanStats
+    static final int THROTTLE_MAX_STARTS = 5;
+    static final long THROTTLE_WINDOW_MS = 30 * 1000;
+    static final long THROTTLE_MARGIN_MS = 500;
+
+    // android demotes scans after 30 minutes, see: AppScanStats
+    static final long SEGMENT_MS = 25 * 60 * 1000;
+
+    // how long to keep the hardware scan running after a stop
+    static final long STOP_GRACE_MS = 1000;
+
+    private final Handler handler;
+    private final Scanner<R> scanner;
+
+    private R running = null; // hardware scan
+    private R wanted = null;  // requested scan
+    private Runnable flushDone = null; // see: stopAfterFlush
+
+    // times of the recent hardware starts (ring buffer)
+    private final long[] starts = new long[THROTTLE_MAX_STARTS];
+    private int startsHead = 0;
+    private int startsCount = 0;
+
+    // stats
+    private int reused = 0;
+    private int delayed = 0;
+    private int segments = 0;
+
+    private final Runnable stopRunnable = this::onStopTimer;
+    private final Runnable startRunnable = this::onStartTimer;
+    private final Runnable segmentRunnable = this::onSegmentTimer;
+    private final Runnable flushRunnable = this::endFlush;
+
+    ScanSessionManager(Handler handler, Scanner<R> scanner)
+    {
+        this.handler = handler;
+        this.scanner = scanner;
+    }
+
+    synchronized void start(R request)
+    {
+        wanted = request;
+        flushDone = null;
+        handler.removeCallbacks(flushRunnable);
+        handler.removeCallbacks(stopRunnable);
+        handler.removeCallbacks(startRunnable);
+
+        // same settings as the running scan?
+        if (running != null && running.equals(request)) {
+            reused++;
+            scanner.log(LogLevel.DEBUG, "scan session: reusing running hardware scan");
+            return;
+        }
+
+        stopHardware();
+        startHardware();
+    }
+
+    synchronized void stop()
+    {
+        wanted = null;
+        handler.removeCallbacks(startRunnable);
+        if (running != null) {
+            handler.removeCallbacks(stopRunnable);
+            handler.postDelayed(stopRunnable, STOP_GRACE_MS);
+        }
+    }
+
+    // like stop, but results stay wanted until the batch the hardware was asked
+    // to flush arrives (see: endFlush), or for STOP_GRACE_MS. Then done runs
+    synchronized void stopAfterFlush(Runnable done)
+    {
+        stop();
+        flushDone = done;
+        handler.removeCallbacks(flushRunnable);
+        handler.postDelayed(flushRunnable, STOP_GRACE_MS);
+    }
+
+    // the flushed batch arrived, or is no longer waited for. runs done, once
+    void endFlush()
+    {
+        Runnable done;
+        synchronized (this) {
+            done = flushDone;
+            flushDone = null;
+            handler.removeCallbacks(flushRunnable);
+        }
+        if (done != null) {
+            done.run();
+        }
+    }
+
+    // stops immediately
+    synchronized void reset()
+    {
+        wanted = null;
+        flushDone = null;
+        handler.removeCallbacks(flushRunnable);
+        handler.removeCallbacks(stopRunnable);
+        handler.removeCallbacks(startRunnable);
+        handler.removeCallbacks(segmentRunnable);
+        running = null;
+        // always stop. android resumes scans by itself when the adapter is turned back on
+        scanner.stop();
+    }
+
+    // the adapter turned off, or the scan failed, so the hardware scan is gone and must not be reused
+    synchronized void hardwareLost()
+    {
+        handler.removeCallbacks(segmentRunnable);
+        running = null;
+    }
+
+    // true while a scan is requested, or its flushed batch is awaited. Results that
+    // arrive while only the hardware scan is still running (see: STOP_GRACE_MS) are not wanted
+    synchronized boolean isWanted()
+    {
+        return wanted != null || flushDone != null;
+    }
+
+    synchronized String stats()
+    {
+        return "reused " + reused + ", delayed " + delayed + ", segments " + segments;
+    }
+
+    private void startHardware()
+    {
+        long now = nowMs();
+
+        // would android throttle this start?
+        if (startsCount == THROTTLE_MAX_STARTS) {
+            long oldest = starts[startsHead];
+            long wait = oldest + THROTTLE_WINDOW_MS + THROTTLE_MARGIN_MS - now;
+            if (wait > 0) {
+                delayed++;
+                scanner.log(LogLevel.WARNING, "scan session: " + THROTTLE_MAX_STARTS +
+                    " scans started in 30s. delaying start by " + wait + "ms to avoid android throttling");
+                handler.postDelayed(startRunnable, wait);
+                return;
+            }
+        }
+
+        starts[startsHead] = now;
+        startsHead = (startsHead + 1) % THROTTLE_MAX_STARTS;
+        startsCount = Math.min(startsCount + 1, THROTTLE_MAX_STARTS);
+
+        // not running until started. a failed start must not be reused
+        if (scanner.start(wanted) == false) {
+            return;
+        }
+        running = wanted;
+
+        handler.removeCallbacks(segmentRunnable);
+        handler.postDelayed(segmentRunnable, SEGMENT_MS);
+    }
+
+    private void stopHardware()
+    {
+        handler.removeCallbacks(segmentRunnable);
+        if (running != null) {
+            running = null;
+            scanner.stop();
+        }
+    }
+
+    private synchronized void onStopTimer()
+    {
+        if (wanted == null) {
+            stopHardware();
+        }
+    }
+
+    private synchronized void onStartTimer()
+    {
+        if (wanted != null && running == null) {
+            startHardware();
+        }
+    }
+
+    private synchronized void onSegmentTimer()
+    {
+        if (wanted != null && running != null) {
+            segments++;
+            scanner.log(LogLevel.DEBUG, "scan session: restarting long running scan");
+            stopHardware();
+            startHardware();
+        }
+    }
+
+    private static long nowMs()
+    {
+        return System.nanoTime() / 1000000;
+    }
+}
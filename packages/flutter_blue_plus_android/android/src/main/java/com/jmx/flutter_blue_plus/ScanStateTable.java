@@ -0,0 +1,413 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.util.Arrays;
+
+// Per-device scan state: the last advertisement (to filter duplicates),
+// the number of advertisements received (for continuous_divisor),
+// the last rssi & time forwarded to dart (for change-driven updates),
+// and a token bucket (for rate limited updates).
+//
+// perf: this is called for every advertisement we receive, so it must not
+// allocate. Devices are keyed by their mac address packed into a long, and
+// found through an open-addressing index (linear probing). Advertisements are
+// compared by a 64-bit hash of the raw bytes, plus the length and an exact
+// compare of the bytes when the hashes match.
+//
+// memory: the table is bounded. Phones rotate their random address every few
+// minutes, so a long scan sees an endless stream of new devices. Entries are
+// kept in least-recently-seen order, and are evicted when the table is full,
+// or when they have not been seen for longer than the ttl.
+class ScanStateTable
+{
+    private static final int INITIAL_CAPACITY = 64; // must be a power of 2
+
+    // marks a key as used, so that 00:00:00:00:00:00 is a valid key
+    private static final long USED = 1L << 48;
+
+    private static final int NONE = -1;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    // config
+    private int maxEntries = 2048;
+    private long ttlMs = 0; // 0 = never expire
+
+    // index: packed address -> entry
+    private long[] indexKeys;  // packed address | USED, or 0 if the slot is free
+    private int[] indexEntries;
+
+    // entries
+    private long[] keys;
+    private long[] hashes;     // hash of the last advertisement
+    private byte[][] advs;     // last advertisement. Not copied, android does not reuse these arrays
+    private int[] counts;      // advertisements received
+    private long[] lastSeen;
+    private int[] rssis;       // last forwarded rssi
+    private long[] forwarded;  // last forwarded time
+    private long[] credits;    // token bucket, in ms. one token = one interval
+    private long[] refilled;   // token bucket, last refill time. NEVER = full bucket
+    private int[] newer;       // recency list. Also the free list
+    private int[] older;
+    private int newest;
+    private int oldest;
+    private int free;
+    private int size;
+
+    // stats
+    private long evictedFull;
+    private long evictedIdle;
+
+    ScanStateTable()
+    {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    // maxEntries: maximum number of devices to remember
+    // ttlMs: forget devices not seen for this long. 0 = never
+    synchronized void configure(int maxEntries, long ttlMs)
+    {
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.ttlMs = ttlMs;
+        clear();
+    }
+
+    synchronized void clear()
+    {
+        allocate(Math.min(INITIAL_CAPACITY, Integer.highestOneBit(maxEntries * 2 - 1)));
+        evictedFull = 0;
+        evictedIdle = 0;
+    }
+
+    // returns true if the advertisement is identical to the
+    // previous one from this device, and then remembers it
+    synchronized boolean isDuplicate(String address, byte[] adv, long nowMs)
+    {
+        if (adv == null) {
+            adv = EMPTY;
+        }
+
+        long hash = hash(adv);
+
+        int e = entry(address, nowMs);
+
+        byte[] prev = advs[e];
+        boolean same = prev != null &&
+            hashes[e] == hash &&
+            prev.length == adv.length &&
+            Arrays.equals(prev, adv); // collision check
+
+        hashes[e] = hash;
+        advs[e] = adv;
+        return same;
+    }
+
+    // returns the number of advertisements previously
+    // counted for this device, and then increments it
+    synchronized int incrementCount(String address, long nowMs)
+    {
+        int e = entry(address, nowMs);
+        return counts[e]++;
+    }
+
+    // change-driven updates: returns true, and remembers the advertisement, if
+    // it should be forwarded. That is, if this is the first advertisement from
+    // the device, if the payload differs from the last forwarded payload, if the
+    // rssi moved by rssiDelta or more since the last forward (0 = ignore rssi),
+    // or if heartbeatMs has passed since the last forward (0 = no heartbeat)
+    synchronized boolean hasChanged(String address, byte[] adv, int rssi, long nowMs, int rssiDelta, long heartbeatMs)
+    {
+        if (adv == null) {
+            adv = EMPTY;
+        }
+
+        long hash = hash(adv);
+
+        int e = entry(address, nowMs);
+
+        byte[] prev = advs[e];
+        boolean changed = prev == null || // first
+            hashes[e] != hash ||
+            prev.length != adv.length ||
+            Arrays.equals(prev, adv) == false;
+
+        if (!changed && rssiDelta > 0 && Math.abs(rssi - rssis[e]) >= rssiDelta) {
+            changed = true;
+        }
+
+        if (!changed && heartbeatMs > 0 && nowMs - forwarded[e] >= heartbeatMs) {
+            changed = true;
+        }
+
+        if (changed) {
+            hashes[e] = hash;
+            advs[e] = adv;
+            rssis[e] = rssi;
+            forwarded[e] = nowMs;
+        }
+        return changed;
+    }
+
+    // rate limiting: returns true if the device has a token, i.e. if it may
+    // send one more update. Tokens accrue at one per intervalMs, up to 'burst'.
+    // Does not take the token, see: takeToken
+    synchronized boolean hasToken(String address, long nowMs, long intervalMs, int burst)
+    {
+        int e = entry(address, nowMs);
+
+        long max = intervalMs * Math.max(burst, 1);
+        if (refilled[e] == NEVER) {
+            credits[e] = max;
+        } else {
+            credits[e] = Math.min(max, credits[e] + Math.max(nowMs - refilled[e], 0));
+        }
+        refilled[e] = nowMs;
+
+        return credits[e] >= intervalMs;
+    }
+
+    // takes the token found by hasToken
+    synchronized void takeToken(String address, long nowMs, long intervalMs)
+    {
+        int e = entry(address, nowMs);
+        credits[e] -= intervalMs;
+    }
+
+    synchronized int size()
+    {
+        return size;
+    }
+
+    synchronized long evictedFull()
+    {
+        return evictedFull;
+    }
+
+    synchronized long evictedIdle()
+    {
+        return evictedIdle;
+    }
+
+    // "AA:BB:CC:DD:EE:FF" -> 0xAABBCCDDEEFF | USED
+    static long packAddress(String address)
+    {
+        long v = 0;
+        int digits = 0;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == ':') {
+                continue;
+            }
+            int d = Character.digit(c, 16);
+            if (d < 0 || digits == 12) {
+                // not a mac address. should not happen on android
+                return (address.hashCode() & 0xFFFFFFFFL) | (USED << 1);
+            }
+            v = (v << 4) | d;
+            digits++;
+        }
+        return v | USED;
+    }
+
+    // FNV-1a, with a final avalanche so the low bits are well mixed
+    static long hash(byte[] bytes)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= (b & 0xFF);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // finds or creates the entry for this address, and marks it as the newest
+    private int entry(String address, long nowMs)
+    {
+        expireIdle(nowMs);
+
+        long key = packAddress(address);
+
+        int slot = findSlot(key);
+        int e = indexEntries[slot];
+        if (indexKeys[slot] == key) {
+            unlink(e);
+        } else {
+            // new device
+            if (size == maxEntries) {
+                evictedFull++;
+                remove(oldest);
+                slot = findSlot(key); // the index may have shifted
+            } else if (size == keys.length) {
+                grow();
+                slot = findSlot(key);
+            }
+            e = free;
+            free = newer[e];
+            keys[e] = key;
+            hashes[e] = 0;
+            advs[e] = null;
+            counts[e] = 0;
+            rssis[e] = 0;
+            forwarded[e] = 0;
+            credits[e] = 0;
+            refilled[e] = NEVER;
+            indexKeys[slot] = key;
+            indexEntries[slot] = e;
+            size++;
+        }
+
+        lastSeen[e] = nowMs;
+        linkNewest(e);
+        return e;
+    }
+
+    private void expireIdle(long nowMs)
+    {
+        if (ttlMs <= 0) {
+            return;
+        }
+        while (oldest != NONE && nowMs - lastSeen[oldest] > ttlMs) {
+            evictedIdle++;
+            remove(oldest);
+        }
+    }
+
+    private void remove(int e)
+    {
+        unlink(e);
+
+        // backward shift deletion, so that
+        // lookups never need tombstones
+        int mask = indexKeys.length - 1;
+        int hole = findSlot(keys[e]);
+        int slot = (hole + 1) & mask;
+        while (indexKeys[slot] != 0) {
+            int home = mix(indexKeys[slot]) & mask;
+            // can the key at 'slot' move back into the hole?
+            boolean movable = hole <= slot ?
+                (home <= hole || home > slot) :
+                (home <= hole && home > slot);
+            if (movable) {
+                indexKeys[hole] = indexKeys[slot];
+                indexEntries[hole] = indexEntries[slot];
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        indexKeys[hole] = 0;
+
+        advs[e] = null; // release the bytes
+        newer[e] = free;
+        free = e;
+        size--;
+    }
+
+    private void linkNewest(int e)
+    {
+        older[e] = newest;
+        newer[e] = NONE;
+        if (newest != NONE) {
+            newer[newest] = e;
+        }
+        newest = e;
+        if (oldest == NONE) {
+            oldest = e;
+        }
+    }
+
+    private void unlink(int e)
+    {
+        if (older[e] != NONE) {
+            newer[older[e]] = newer[e];
+        } else {
+            oldest = newer[e];
+        }
+        if (newer[e] != NONE) {
+            older[newer[e]] = older[e];
+        } else {
+            newest = older[e];
+        }
+    }
+
+    // returns the slot holding the key, or the free slot where it belongs
+    private int findSlot(long key)
+    {
+        int mask = indexKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (indexKeys[slot] != 0 && indexKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity)
+    {
+        // the index is kept at most half full
+        indexKeys = new long[capacity * 2];
+        indexEntries = new int[capacity * 2];
+        keys = new long[capacity];
+        hashes = new long[capacity];
+        advs = new byte[capacity][];
+        counts = new int[capacity];
+        lastSeen = new long[capacity];
+        rssis = new int[capacity];
+        forwarded = new long[capacity];
+        credits = new long[capacity];
+        refilled = new long[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            newer[i] = i + 1 < capacity ? i + 1 : NONE;
+        }
+        free = 0;
+        newest = NONE;
+        oldest = NONE;
+        size = 0;
+    }
+
+    // doubles the capacity. Only called when full, so there are no free entries
+    private void grow()
+    {
+        int oldCapacity = keys.length;
+        int capacity = Math.min(oldCapacity * 2, Integer.highestOneBit(maxEntries * 2 - 1));
+
+        keys = Arrays.copyOf(keys, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        advs = Arrays.copyOf(advs, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        rssis = Arrays.copyOf(rssis, capacity);
+        forwarded = Arrays.copyOf(forwarded, capacity);
+        credits = Arrays.copyOf(credits, capacity);
+        refilled = Arrays.copyOf(refilled, capacity);
+        newer = Arrays.copyOf(newer, capacity);
+        older = Arrays.copyOf(older, capacity);
+        for (int i = oldCapacity; i < capacity; i++) {
+            newer[i] = i + 1 < capacity ? i + 1 : NONE;
+        }
+        free = oldCapacity;
+
+        // rebuild the index
+        indexKeys = new long[capacity * 2];
+        indexEntries = new int[capacity * 2];
+        for (int e = 0; e < oldCapacity; e++) {
+            int slot = findSlot(keys[e]);
+            indexKeys[slot] = keys[e];
+            indexEntries[slot] = e;
+        }
+    }
+}
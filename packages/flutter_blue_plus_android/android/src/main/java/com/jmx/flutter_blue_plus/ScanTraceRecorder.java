@@ -0,0 +1,215 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Records raw scan results to a file, before any filtering,
+// so field scan load can be replayed off-device. see: ScanTraceReplay (unit tests)
+//
+// Results are appended to a buffer. When it fills up, it is handed to a
+// writer thread & a new buffer is started, so recording costs a copy per
+// result, and never file i/o on the scan callback (main) thread.
+// A write error is thrown by the next record, or by close.
+//
+// layout (little-endian):
+//   file:
+//     [0..3]   magic, "FBPT"
+//     [4]      version (1)
+//     [5..]    records
+//   record:
+//     [0..1]   length of the rest of the record
+//     [2..9]   timestamp, nanoseconds, see: ScanResult.getTimestampNanos
+//     [10..15] remote_id, mac address bytes in display order
+//     [16]     rssi (int8)
+//     [17]     flags, see: FLAG_*
+//     [18..]   advertisement, raw AD structures
+class ScanTraceRecorder implements Closeable
+{
+    static final byte[] MAGIC = {'F', 'B', 'P', 'T'};
+    static final int VERSION = 1;
+    static final int HEADER_LEN = 5;
+
+    // record, without the length
+    static final int RECORD_LEN = 16;
+
+    static final int FLAG_CONNECTABLE = 0x01;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // writes finish before close returns
+    private static final long CLOSE_TIMEOUT_MS = 10000;
+
+    private final FileChannel channel;
+    private final ThreadPoolExecutor writer =
+        new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private ByteBuffer buf = newBuffer();
+    private volatile IOException error = null;
+    private boolean closed = false;
+    private int count = 0;
+
+    private ScanTraceRecorder(FileChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    // replaces the file, if any
+    static ScanTraceRecorder open(File file) throws IOException
+    {
+        FileChannel channel = new FileOutputStream(file, false).getChannel();
+        ScanTraceRecorder r = new ScanTraceRecorder(channel);
+        r.buf.put(MAGIC);
+        r.buf.put((byte) VERSION);
+        return r;
+    }
+
+    synchronized void record(long timestampNanos,
+                             String remoteId,
+                             int rssi,
+                             boolean connectable,
+                             byte[] adv) throws IOException
+    {
+        if (closed) {
+            return; // a late scan result
+        }
+        if (error != null) {
+            throw error;
+        }
+
+        int advLen = adv != null ? Math.min(adv.length, 0xFFFF - RECORD_LEN - 2) : 0;
+        int len = RECORD_LEN + advLen;
+
+        if (buf.remaining() < 2 + len) {
+            writeInBackground();
+        }
+
+        buf.putShort((short) len);
+        buf.putLong(timestampNanos);
+        putMac(remoteId);
+        buf.put((byte) rssi);
+        buf.put((byte) (connectable ? FLAG_CONNECTABLE : 0));
+        if (advLen > 0) {
+            buf.put(adv, 0, advLen);
+        }
+
+        count++;
+    }
+
+    synchronized int count()
+    {
+        return count;
+    }
+
+    // waits for the pending writes. Not on the main thread
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writeInBackground();
+        writer.execute(this::closeChannel);
+        writer.shutdown();
+        try {
+            if (writer.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS) == false) {
+                throw new IOException("timed out writing the trace");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted writing the trace");
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // stops recording, without waiting. e.g. after a write error
+    synchronized void abandon()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writer.execute(this::closeChannel);
+        writer.shutdown();
+    }
+
+    private static ByteBuffer newBuffer()
+    {
+        return ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // holding this. hands the buffer to the writer thread, & starts a new one
+    private void writeInBackground()
+    {
+        ByteBuffer full = buf;
+        buf = newBuffer();
+        full.flip();
+        if (full.hasRemaining()) {
+            writer.execute(() -> write(full));
+        }
+    }
+
+    // writer thread. in order
+    private void write(ByteBuffer b)
+    {
+        if (error != null) {
+            return; // the file is incomplete anyway
+        }
+        try {
+            while (b.hasRemaining()) {
+                channel.write(b);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    // writer thread
+    private void closeChannel()
+    {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+    }
+
+    // "AA:BB:CC:DD:EE:FF" -> 6 bytes
+    private void putMac(String address)
+    {
+        int b = 0;
+        int nibbles = 0;
+        int v = 0;
+        for (int i = 0; address != null && i < address.length() && b < 6; i++) {
+            int d = Character.digit(address.charAt(i), 16);
+            if (d < 0) {
+                continue;
+            }
+            v = (v << 4) | d;
+            if (++nibbles == 2) {
+                buf.put((byte) v);
+                b++;
+                nibbles = 0;
+                v = 0;
+            }
+        }
+        while (b++ < 6) {
+            buf.put((byte) 0);
+        }
+    }
+}
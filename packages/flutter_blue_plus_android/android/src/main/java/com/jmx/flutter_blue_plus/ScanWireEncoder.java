@@ -0,0 +1,160 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.nio.charset.StandardCharsets;
+
+// Packs a batch of advertisements into a single byte[].
+//
+// perf: the map format costs a HashMap, nested maps & lists, and string keys
+// per advertisement, which StandardMessageCodec then walks again. In binary mode
+// we send one byte[] per batch, and Dart parses the raw AD bytes itself.
+//
+// Must match: ScanWireDecoder (dart)
+//
+// layout (little-endian):
+//   batch:
+//     [0]      version (1)
+//     [1..2]   record count
+//     [3..]    records
+//   record:
+//     [0..5]   remote_id, mac address bytes in display order
+//     [6]      rssi (int8)
+//     [7]      flags, see: FLAG_*
+//     [8]      tx power level (int8), if FLAG_TX_POWER
+//     [9..10]  appearance, if FLAG_APPEARANCE
+//     [11..12] advertisement length
+//     [13..]   advertisement, raw AD structures
+//     then, if FLAG_PLATFORM_NAME:
+//     [0]      platform name length
+//     [1..]    platform name, utf8
+class ScanWireEncoder
+{
+    static final int VERSION = 1;
+
+    static final int FLAG_CONNECTABLE = 0x01;
+    static final int FLAG_TX_POWER = 0x02;
+    static final int FLAG_APPEARANCE = 0x04;
+    static final int FLAG_PLATFORM_NAME = 0x08;
+
+    private static final int HEADER_LEN = 3;
+    private static final int RECORD_LEN = 13;
+
+    private final AdvParser parser = new AdvParser();
+
+    private byte[] buf = new byte[256];
+    private int len = HEADER_LEN;
+    private int count = 0;
+
+    void add(String remoteId, String platformName, boolean connectable, int rssi, byte[] adv)
+    {
+        int advLen = adv != null ? Math.min(adv.length, 0xFFFF) : 0;
+
+        byte[] name = platformName != null ? platformName.getBytes(StandardCharsets.UTF_8) : null;
+        int nameLen = name != null ? Math.min(name.length, 0xFF) : 0;
+
+        ensure(RECORD_LEN + advLen + (name != null ? 1 + nameLen : 0));
+
+        int r = len;
+
+        // remote_id
+        putMac(remoteId, r);
+
+        // tx power & appearance
+        int flags = connectable ? FLAG_CONNECTABLE : 0;
+        int txPower = 0;
+        int appearance = 0;
+        if (parser.parse(adv)) {
+            if (parser.txPower() != AdvParser.NO_TX_POWER) {
+                flags |= FLAG_TX_POWER;
+                txPower = parser.txPower();
+            }
+            if (parser.appearance() != 0) {
+                flags |= FLAG_APPEARANCE;
+                appearance = parser.appearance();
+            }
+        }
+        if (name != null) {
+            flags |= FLAG_PLATFORM_NAME;
+        }
+
+        buf[r + 6] = (byte) rssi;
+        buf[r + 7] = (byte) flags;
+        buf[r + 8] = (byte) txPower;
+        buf[r + 9] = (byte) appearance;
+        buf[r + 10] = (byte) (appearance >> 8);
+        buf[r + 11] = (byte) advLen;
+        buf[r + 12] = (byte) (advLen >> 8);
+        if (advLen > 0) {
+            System.arraycopy(adv, 0, buf, r + RECORD_LEN, advLen);
+        }
+        len = r + RECORD_LEN + advLen;
+
+        if (name != null) {
+            buf[len] = (byte) nameLen;
+            System.arraycopy(name, 0, buf, len + 1, nameLen);
+            len += 1 + nameLen;
+        }
+
+        count++;
+    }
+
+    int count()
+    {
+        return count;
+    }
+
+    // returns the batch, and resets the encoder
+    byte[] finish()
+    {
+        buf[0] = (byte) VERSION;
+        buf[1] = (byte) count;
+        buf[2] = (byte) (count >> 8);
+
+        byte[] out = new byte[len];
+        System.arraycopy(buf, 0, out, 0, len);
+
+        len = HEADER_LEN;
+        count = 0;
+        return out;
+    }
+
+    // "AA:BB:CC:DD:EE:FF" -> 6 bytes
+    private void putMac(String address, int offset)
+    {
+        int b = 0;
+        int nibbles = 0;
+        int v = 0;
+        for (int i = 0; address != null && i < address.length() && b < 6; i++) {
+            int d = Character.digit(address.charAt(i), 16);
+            if (d < 0) {
+                continue;
+            }
+            v = (v << 4) | d;
+            if (++nibbles == 2) {
+                buf[offset + b++] = (byte) v;
+                nibbles = 0;
+                v = 0;
+            }
+        }
+        while (b < 6) {
+            buf[offset + b++] = 0;
+        }
+    }
+
+    private void ensure(int extra)
+    {
+        if (len + extra <= buf.length) {
+            return;
+        }
+        int size = buf.length * 2;
+        while (size < len + extra) {
+            size *= 2;
+        }
+        byte[] b = new byte[size];
+        System.arraycopy(buf, 0, b, 0, len);
+        buf = b;
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Converts between UUID and the strings we send to & receive from dart.
+//
+// perf: uuid128() used String.format for every conversion, and we convert
+// several uuids for every notification, read, and scan result. Devices only
+// have a handful of distinct uuids, so the conversions are cached, and 16-bit
+// & 32-bit uuids are recognized by comparing the bits of the base uuid.
+class UuidCache
+{
+    // the bluetooth base uuid: 0000xxxx-0000-1000-8000-00805f9b34fb
+    static final long BASE_MSB = 0x0000000000001000L;
+    static final long BASE_LSB = 0x800000805F9B34FBL;
+
+    // bound the caches. scan results can carry random 128-bit uuids
+    private static final int MAX_ENTRIES = 1024;
+
+    private static final Map<UUID, String> sShort = new ConcurrentHashMap<>();
+    private static final Map<String, UUID> sParsed = new ConcurrentHashMap<>();
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // true if this is a 16-bit or 32-bit uuid, i.e. based on the bluetooth base uuid
+    static boolean isShort(UUID uuid)
+    {
+        return uuid.getLeastSignificantBits() == BASE_LSB &&
+            (uuid.getMostSignificantBits() & 0xFFFFFFFFL) == BASE_MSB;
+    }
+
+    // 16 or 32-bit value -> UUID
+    static UUID fromShort(long value)
+    {
+        return new UUID((value << 32) | BASE_MSB, BASE_LSB);
+    }
+
+    // returns shortest representation, lowercase
+    static String str(UUID uuid)
+    {
+        String s = sShort.get(uuid);
+        if (s == null) {
+            s = format(uuid);
+            if (sShort.size() >= MAX_ENTRIES) {
+                sShort.clear();
+            }
+            sShort.put(uuid, s);
+        }
+        return s;
+    }
+
+    // returns 128-bit representation, lowercase
+    static String str128(UUID uuid)
+    {
+        // UUID.toString is already lowercase
+        return uuid.toString();
+    }
+
+    // accepts 16-bit, 32-bit, and 128-bit strings, any case.
+    // returns null if the string is not a uuid
+    static UUID parse(String s)
+    {
+        if (s == null) {
+            return null;
+        }
+        UUID uuid = sParsed.get(s);
+        if (uuid == null) {
+            uuid = parseUncached(s);
+            if (uuid == null) {
+                return null;
+            }
+            if (sParsed.size() >= MAX_ENTRIES) {
+                sParsed.clear();
+            }
+            sParsed.put(s, uuid);
+        }
+        return uuid;
+    }
+
+    private static UUID parseUncached(String s)
+    {
+        try {
+            if (s.length() == 4 || s.length() == 8) {
+                return fromShort(Long.parseLong(s, 16));
+            }
+            if (s.length() == 36) {
+                return UUID.fromString(s);
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException
+        }
+        return null;
+    }
+
+    private static String format(UUID uuid)
+    {
+        if (isShort(uuid) == false) {
+            return uuid.toString();
+        }
+        long value = uuid.getMostSignificantBits() >>> 32;
+        int digits = value <= 0xFFFF ? 4 : 8;
+        char[] out = new char[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            out[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,168 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Replays a scan trace (see: ScanTraceRecorder) through ScanPipeline,
+// the same filters & map building the plugin uses, in a JVM unit test.
+//
+// Only plain java classes are involved, so this runs on a build machine.
+// Pass the settings of the scan to reproduce (see: BmScanSettings):
+//
+//   ScanTraceReplay.Result r = ScanTraceReplay.replay(file, settings, true);
+//
+// e.g. copy a field trace next to ScanTraceReplayTest & run ./gradlew test
+//
+// Not replayed: hardware filters, batching, & ScanCoalescer (it needs an android Handler).
+class ScanTraceReplay
+{
+    static class Record
+    {
+        long timestampNanos;
+        String remoteId;
+        int rssi;
+        boolean connectable;
+        byte[] adv;
+    }
+
+    static class Result
+    {
+        int records;
+        int passed;
+        long elapsedNanos; // pipeline only, not reading the trace
+
+        // the BmScanAdvertisement maps that would have been sent, if kept
+        final List<HashMap<String, Object>> advertisements = new ArrayList<>();
+
+        @Override
+        public String toString()
+        {
+            long perRecord = records > 0 ? elapsedNanos / records : 0;
+            return records + " results, " + passed + " passed, " +
+                (elapsedNanos / 1000000) + "ms (" + perRecord + "ns per result)";
+        }
+    }
+
+    // reads the whole trace. The file is memory mapped
+    static List<Record> read(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] magic = new byte[ScanTraceRecorder.MAGIC.length];
+            if (buf.remaining() < ScanTraceRecorder.HEADER_LEN) {
+                throw new IOException("not a scan trace: too short");
+            }
+            buf.get(magic);
+            if (Arrays.equals(magic, ScanTraceRecorder.MAGIC) == false) {
+                throw new IOException("not a scan trace: bad magic");
+            }
+            int version = buf.get() & 0xFF;
+            if (version != ScanTraceRecorder.VERSION) {
+                throw new IOException("unsupported scan trace version: " + version);
+            }
+
+            List<Record> records = new ArrayList<>();
+            while (buf.remaining() >= 2) {
+                int len = buf.getShort() & 0xFFFF;
+                if (len < ScanTraceRecorder.RECORD_LEN || len > buf.remaining()) {
+                    break; // truncated, e.g. the app was killed while recording
+                }
+                Record r = new Record();
+                r.timestampNanos = buf.getLong();
+                r.remoteId = getMac(buf);
+                r.rssi = buf.get();
+                r.connectable = (buf.get() & ScanTraceRecorder.FLAG_CONNECTABLE) != 0;
+                r.adv = new byte[len - ScanTraceRecorder.RECORD_LEN];
+                buf.get(r.adv);
+                records.add(r);
+            }
+            return records;
+        }
+    }
+
+    // settings: see BmScanSettings.toMap, e.g. defaultSettings()
+    static Result replay(File trace, Map<String, Object> settings, boolean keepAdvertisements) throws IOException
+    {
+        List<Record> records = read(trace);
+
+        ScanPipeline pipeline = new ScanPipeline();
+        pipeline.configure(settings, true);
+
+        Result result = new Result();
+        long start = System.nanoTime();
+        for (Record r : records) {
+            result.records++;
+            long nowMs = r.timestampNanos / 1000000;
+            if (pipeline.passes(r.remoteId, r.adv, r.rssi, r.connectable, nowMs, nowMs, remoteId -> null) == false) {
+                continue;
+            }
+            result.passed++;
+            HashMap<String, Object> map = pipeline.bmScanAdvertisement(r.remoteId, null, r.connectable, r.rssi, r.adv);
+            if (keepAdvertisements) {
+                result.advertisements.add(map);
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // the defaults of BmScanSettings: no filters
+    static HashMap<String, Object> defaultSettings()
+    {
+        HashMap<String, Object> s = new HashMap<>();
+        s.put("with_services", new ArrayList<String>());
+        s.put("with_remote_ids", new ArrayList<String>());
+        s.put("with_names", new ArrayList<String>());
+        s.put("with_keywords", new ArrayList<String>());
+        s.put("with_msd", new ArrayList<Object>());
+        s.put("with_service_data", new ArrayList<Object>());
+        s.put("continuous_updates", false);
+        s.put("continuous_divisor", 1);
+        s.put("android_scan_state_capacity", 2048);
+        s.put("android_scan_state_ttl", 0);
+        s.put("android_max_hw_filters", 0);
+        s.put("android_keywords_ignore_case", false);
+        s.put("android_rate_limit_interval", 0);
+        s.put("android_rate_limit_burst", 1);
+        s.put("android_rssi_delta", 0);
+        s.put("android_heartbeat", 0);
+        s.put("android_device_table", false);
+        s.put("android_beacons", false);
+        s.put("android_beacon_compact", false);
+        s.put("android_with_beacons", new ArrayList<Object>());
+        return s;
+    }
+
+    // 6 bytes -> "AA:BB:CC:DD:EE:FF"
+    private static String getMac(MappedByteBuffer buf)
+    {
+        final char[] hex = "0123456789ABCDEF".toCharArray();
+        char[] out = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = buf.get() & 0xFF;
+            if (i > 0) {
+                out[i * 3 - 1] = ':';
+            }
+            out[i * 3] = hex[b >> 4];
+            out[i * 3 + 1] = hex[b & 0xF];
+        }
+        return new String(out);
+    }
+}
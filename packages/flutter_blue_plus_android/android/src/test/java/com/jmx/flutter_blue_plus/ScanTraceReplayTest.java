@@ -0,0 +1,164 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.jmx.flutter_blue_plus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Records a trace with ScanTraceRecorder, replays it through ScanPipeline,
+// and checks what the plugin would have sent to dart.
+public class ScanTraceReplayTest
+{
+    static final String A = "AA:BB:CC:DD:EE:01";
+    static final String B = "AA:BB:CC:DD:EE:02";
+    static final String C = "AA:BB:CC:DD:EE:03";
+
+    private File trace;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        trace = File.createTempFile("fbp_scan_trace", ".bin");
+    }
+
+    @After
+    public void tearDown()
+    {
+        trace.delete();
+    }
+
+    // name (0x09) & manufacturer data (0xFF), apple, 2 bytes of payload
+    static byte[] adv(String name, int payload)
+    {
+        byte[] n = name.getBytes();
+        byte[] adv = new byte[2 + n.length + 6];
+        adv[0] = (byte) (1 + n.length);
+        adv[1] = 0x09;
+        System.arraycopy(n, 0, adv, 2, n.length);
+        int i = 2 + n.length;
+        adv[i] = 5;
+        adv[i + 1] = (byte) 0xFF;
+        adv[i + 2] = 0x4c;
+        adv[i + 3] = 0x00;
+        adv[i + 4] = (byte) payload;
+        adv[i + 5] = (byte) (payload >> 8);
+        return adv;
+    }
+
+    // A twice with the same advertisement, then B & C
+    private void recordSmall() throws IOException
+    {
+        try (ScanTraceRecorder r = ScanTraceRecorder.open(trace)) {
+            r.record(1000000000L, A, -40, true, adv("A", 1));
+            r.record(1100000000L, A, -41, true, adv("A", 1));
+            r.record(1200000000L, B, -50, false, adv("B", 2));
+            r.record(1300000000L, C, -60, true, null);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException
+    {
+        recordSmall();
+
+        List<ScanTraceReplay.Record> records = ScanTraceReplay.read(trace);
+        assertEquals(4, records.size());
+        assertEquals(A, records.get(0).remoteId);
+        assertEquals(1000000000L, records.get(0).timestampNanos);
+        assertEquals(-40, records.get(0).rssi);
+        assertArrayEquals(adv("A", 1), records.get(0).adv);
+        assertFalse(records.get(2).connectable);
+        assertEquals(0, records.get(3).adv.length);
+    }
+
+    @Test
+    public void duplicatesAreDropped() throws IOException
+    {
+        recordSmall();
+
+        ScanTraceReplay.Result result = ScanTraceReplay.replay(trace, ScanTraceReplay.defaultSettings(), true);
+        assertEquals(4, result.records);
+        assertEquals(3, result.passed);
+
+        Map<String, Object> a = result.advertisements.get(0);
+        assertEquals(A, a.get("remote_id"));
+        assertEquals("A", a.get("adv_name"));
+        assertEquals(-40, a.get("rssi"));
+        assertEquals(1, a.get("connectable"));
+        @SuppressWarnings("unchecked") // see: ScanPipeline.bmScanAdvertisement
+        Map<Integer, byte[]> msd = (Map<Integer, byte[]>) a.get("manufacturer_data");
+        assertArrayEquals(new byte[]{1, 0}, msd.get(0x004c));
+
+        Map<String, Object> b = result.advertisements.get(1);
+        assertEquals(B, b.get("remote_id"));
+        assertFalse(b.containsKey("connectable"));
+
+        Map<String, Object> c = result.advertisements.get(2);
+        assertEquals(C, c.get("remote_id"));
+        assertFalse(c.containsKey("adv_name"));
+    }
+
+    @Test
+    public void continuousUpdates() throws IOException
+    {
+        recordSmall();
+
+        HashMap<String, Object> settings = ScanTraceReplay.defaultSettings();
+        settings.put("continuous_updates", true);
+
+        ScanTraceReplay.Result result = ScanTraceReplay.replay(trace, settings, false);
+        assertEquals(4, result.records);
+        assertEquals(4, result.passed);
+        assertEquals(0, result.advertisements.size());
+    }
+
+    // software filters only. hardware filters are not replayed
+    @Test
+    public void keywordFilter() throws IOException
+    {
+        recordSmall();
+
+        HashMap<String, Object> settings = ScanTraceReplay.defaultSettings();
+        settings.put("with_keywords", Arrays.asList("B"));
+
+        ScanTraceReplay.Result result = ScanTraceReplay.replay(trace, settings, true);
+        assertEquals(1, result.passed);
+        assertEquals(B, result.advertisements.get(0).get("remote_id"));
+    }
+
+    // more than one recorder buffer, so written by the writer thread in parts
+    @Test
+    public void largeTrace() throws IOException
+    {
+        int n = 5000;
+        try (ScanTraceRecorder r = ScanTraceRecorder.open(trace)) {
+            for (int i = 0; i < n; i++) {
+                String remoteId = String.format("AA:BB:CC:DD:%02X:%02X", (i >> 8) & 0xFF, i & 0xFF);
+                r.record(i * 1000000L, remoteId, -70, true, adv("D" + i, i));
+            }
+            assertEquals(n, r.count());
+        }
+
+        HashMap<String, Object> settings = ScanTraceReplay.defaultSettings();
+        settings.put("continuous_updates", true);
+
+        ScanTraceReplay.Result result = ScanTraceReplay.replay(trace, settings, true);
+        assertEquals(n, result.records);
+        assertEquals(n, result.passed);
+        assertEquals("D" + (n - 1), result.advertisements.get(n - 1).get("adv_name"));
+    }
+}
@@ -5,6 +5,9 @@ import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
 import 'package:flutter_blue_plus_platform_interface/flutter_blue_plus_platform_interface.dart';
 
+import 'src/binary_channel.dart';
+import 'src/scan_wire_decoder.dart';
+
 final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
   @visibleForTesting
   final methodChannel = const MethodChannel('flutter_blue_plus/methods');
@@ -15,8 +18,10 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
 
   final _onAdapterStateChangedController = StreamController<BmBluetoothAdapterState>.broadcast();
   final _onBondStateChangedController = StreamController<BmBondStateResponse>.broadcast();
+  final _onBulkWriteProgressController = StreamController<BmBulkWriteProgress>.broadcast();
   final _onCharacteristicReceivedController = StreamController<BmCharacteristicData>.broadcast();
   final _onCharacteristicWrittenController = StreamController<BmCharacteristicData>.broadcast();
+  final _onCharacteristicsReadController = StreamController<BmReadCharacteristicsResult>.broadcast();
   final _onConnectionStateChangedController = StreamController<BmConnectionStateResponse>.broadcast();
   final _onDescriptorReadController = StreamController<BmDescriptorData>.broadcast();
   final _onDescriptorWrittenController = StreamController<BmDescriptorData>.broadcast();
@@ -26,9 +31,20 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
   final _onNameChangedController = StreamController<BmNameChanged>.broadcast();
   final _onReadRssiController = StreamController<BmReadRssiResult>.broadcast();
   final _onScanResponseController = StreamController<BmScanResponse>.broadcast();
+  final _onBackgroundScanResponseController = StreamController<BmScanResponse>.broadcast();
   final _onServicesResetController = StreamController<BmBluetoothDevice>.broadcast();
   final _onTurnOnResponseController = StreamController<BmTurnOnResponse>.broadcast();
 
+  // see: notifyStream. by handle
+  final _notifyStreams = <int, Stream<BmNotifyValue>>{};
+
+  // see: setOptions(androidBinaryChannel)
+  late final _binaryChannel = BinaryChannel(
+    (identity) => _callAndroidMethod<Map<dynamic, dynamic>>('registerGattHandle', identity),
+    (data) => _onCharacteristicWrittenController.add(data),
+    (data) => _onCharacteristicReceivedController.add(data),
+  );
+
   @override
   Stream<BmBluetoothAdapterState> get onAdapterStateChanged {
     return _onAdapterStateChangedController.stream;
@@ -39,6 +55,11 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
     return _onBondStateChangedController.stream;
   }
 
+  @override
+  Stream<BmBulkWriteProgress> get onBulkWriteProgress {
+    return _onBulkWriteProgressController.stream;
+  }
+
   @override
   Stream<BmCharacteristicData> get onCharacteristicReceived {
     return _onCharacteristicReceivedController.stream;
@@ -49,6 +70,11 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
     return _onCharacteristicWrittenController.stream;
   }
 
+  @override
+  Stream<BmReadCharacteristicsResult> get onCharacteristicsRead {
+    return _onCharacteristicsReadController.stream;
+  }
+
   @override
   Stream<BmConnectionStateResponse> get onConnectionStateChanged {
     return _onConnectionStateChangedController.stream;
@@ -94,6 +120,11 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
     return _onScanResponseController.stream;
   }
 
+  @override
+  Stream<BmScanResponse> get onBackgroundScanResponse {
+    return _onBackgroundScanResponseController.stream;
+  }
+
   @override
   Stream<BmBluetoothDevice> get onServicesReset {
     return _onServicesResetController.stream;
@@ -108,6 +139,17 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
     FlutterBluePlusPlatform.instance = FlutterBluePlusAndroid();
   }
 
+  @override
+  Future<bool> cancelBulkWrite(
+    BmCancelBulkWriteRequest request,
+  ) async {
+    return await _callAndroidMethod<bool>(
+          'cancelBulkWrite',
+          request.toMap(),
+        ) ==
+        true;
+  }
+
   @override
   Future<bool> clearGattCache(
     BmClearGattCacheRequest request,
@@ -219,6 +261,18 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
     );
   }
 
+  @override
+  Future<BmScanDevicesResponse> getScanDevices(
+    BmScanDevicesRequest request,
+  ) async {
+    return BmScanDevicesResponse.fromMap(
+      await _callAndroidMethod(
+        'getScanDevices',
+        request.toMap(),
+      ),
+    );
+  }
+
   @override
   Future<BmDevicesList> getSystemDevices(
     BmSystemDevicesRequest request,
@@ -251,6 +305,17 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
         true;
   }
 
+  @override
+  Future<bool> readCharacteristics(
+    BmReadCharacteristicsRequest request,
+  ) async {
+    return await _callAndroidMethod<bool>(
+          'readCharacteristics',
+          request.toMap(),
+        ) ==
+        true;
+  }
+
   @override
   Future<bool> readDescriptor(
     BmReadDescriptorRequest request,
@@ -324,6 +389,11 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
   Future<bool> setNotifyValue(
     BmSetNotifyValueRequest request,
   ) async {
+    // notifications of registered characteristics use the binary channel
+    if (_binaryChannel.enabled && request.enable) {
+      await _binaryChannel.register(request);
+    }
+
     return await _callAndroidMethod<bool>(
           'setNotifyValue',
           request.toMap(),
@@ -331,15 +401,56 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
         true;
   }
 
+  @override
+  Future<BmNotifyStream> setNotifyValueStream(
+    BmSetNotifyValueRequest request,
+  ) async {
+    return BmNotifyStream.fromMap(
+      await _callAndroidMethod(
+        'setNotifyValueStream',
+        request.toMap(),
+      ),
+    );
+  }
+
+  @override
+  Stream<BmNotifyValue> notifyStream(
+    int handle,
+  ) {
+    // see: NotifyStreams.java
+    // one stream per handle, shared by all listeners. forgotten when it ends
+    return _notifyStreams.putIfAbsent(
+      handle,
+      () => EventChannel('flutter_blue_plus/notify/$handle')
+          .receiveBroadcastStream()
+          .map((event) => BmNotifyValue.fromBytes(event as Uint8List))
+          .transform(StreamTransformer<BmNotifyValue, BmNotifyValue>.fromHandlers(handleDone: (sink) {
+        _notifyStreams.remove(handle);
+        sink.close();
+      })),
+    );
+  }
+
   @override
   Future<bool> setOptions(
     BmSetOptionsRequest request,
   ) async {
-    return await _callAndroidMethod<bool>(
+    // before android, so no message arrives without a handler
+    if (request.androidBinaryChannel == true) {
+      _binaryChannel.setEnabled(true);
+    }
+
+    final out = await _callAndroidMethod<bool>(
           'setOptions',
           request.toMap(),
         ) ==
         true;
+
+    if (request.androidBinaryChannel == false) {
+      _binaryChannel.setEnabled(false);
+    }
+
+    return out;
   }
 
   @override
@@ -356,20 +467,59 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
   @override
   Future<bool> startScan(
     BmScanSettings request,
+  ) async {
+    final out = await _callAndroidMethod<Map<dynamic, dynamic>>(
+      'startScan',
+      request.toMap(),
+    );
+
+    // see: ScanFilterPlan.fallback
+    if (out?['hw_filter_fallback'] == 1 && _logLevel.index >= LogLevel.warning.index) {
+      FlutterBluePlusPlatform.log('[FBP] startScan: too many filters for the bluetooth controller, even '
+          'loosened (e.g. a long withRemoteIds list). Scanning without hardware filters: every '
+          'advertisement wakes the app, & is filtered in software');
+    }
+
+    return out != null;
+  }
+
+  @override
+  Future<bool> stopScan(
+    BmStopScanRequest request,
+  ) async {
+    return await _callAndroidMethod<bool>(
+          'stopScan',
+        ) ==
+        true;
+  }
+
+  @override
+  Future<bool> startBackgroundScan(
+    BmScanSettings request,
   ) async {
     return await _callAndroidMethod<bool>(
-          'startScan',
+          'startBackgroundScan',
           request.toMap(),
         ) ==
         true;
   }
 
   @override
-  Future<bool> stopScan(
+  Future<bool> stopBackgroundScan(
     BmStopScanRequest request,
   ) async {
     return await _callAndroidMethod<bool>(
-          'stopScan',
+          'stopBackgroundScan',
+        ) ==
+        true;
+  }
+
+  @override
+  Future<bool> flushBackgroundScan(
+    BmFlushBackgroundScanRequest request,
+  ) async {
+    return await _callAndroidMethod<bool>(
+          'flushBackgroundScan',
         ) ==
         true;
   }
@@ -394,10 +544,26 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
         true;
   }
 
+  @override
+  Future<bool> writeBulk(
+    BmWriteBulkRequest request,
+  ) async {
+    return await _callAndroidMethod<bool>(
+          'writeBulk',
+          request.toMap(),
+        ) ==
+        true;
+  }
+
   @override
   Future<bool> writeCharacteristic(
     BmWriteCharacteristicRequest request,
   ) async {
+    // binary channel. false: no handle available
+    if (_binaryChannel.enabled && await _binaryChannel.write(request)) {
+      return true;
+    }
+
     return await _callAndroidMethod<bool>(
           'writeCharacteristic',
           request.toMap(),
@@ -492,6 +658,12 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
             call.arguments,
           ),
         );
+      case 'OnBulkWriteProgress':
+        return _onBulkWriteProgressController.add(
+          BmBulkWriteProgress.fromMap(
+            call.arguments,
+          ),
+        );
       case 'OnCharacteristicReceived':
         return _onCharacteristicReceivedController.add(
           BmCharacteristicData.fromMap(
@@ -504,12 +676,17 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
             call.arguments,
           ),
         );
+      case 'OnCharacteristicsRead':
+        final read = BmReadCharacteristicsResult.fromMap(call.arguments);
+        // not re-emitted on onCharacteristicReceived: a concurrent read() of the same
+        // characteristic would take a batch value as its own. see: readCharacteristics
+        return _onCharacteristicsReadController.add(read);
       case 'OnConnectionStateChanged':
-        return _onConnectionStateChangedController.add(
-          BmConnectionStateResponse.fromMap(
-            call.arguments,
-          ),
-        );
+        final state = BmConnectionStateResponse.fromMap(call.arguments);
+        if (state.connectionState == BmConnectionStateEnum.disconnected) {
+          _binaryChannel.clearDevice(state.remoteId);
+        }
+        return _onConnectionStateChangedController.add(state);
       case 'OnDescriptorRead':
         return _onDescriptorReadController.add(
           BmDescriptorData.fromMap(
@@ -527,11 +704,9 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
           BmDetachedFromEngineResponse(),
         );
       case 'OnDiscoveredServices':
-        return _onDiscoveredServicesController.add(
-          BmDiscoverServicesResult.fromMap(
-            call.arguments,
-          ),
-        );
+        final result = BmDiscoverServicesResult.fromMap(call.arguments);
+        _binaryChannel.clearDevice(result.remoteId);
+        return _onDiscoveredServicesController.add(result);
       case 'OnMtuChanged':
         return _onMtuChangedController.add(
           BmMtuChangedResponse.fromMap(
@@ -556,6 +731,18 @@ final class FlutterBluePlusAndroid extends FlutterBluePlusPlatform {
             call.arguments,
           ),
         );
+      case 'OnBackgroundScanResponse':
+        return _onBackgroundScanResponseController.add(
+          BmScanResponse.fromMap(
+            call.arguments,
+          ),
+        );
+      case 'OnScanResponseBinary':
+        return _onScanResponseController.add(
+          ScanWireDecoder.decode(
+            call.arguments,
+          ),
+        );
       case 'OnServicesReset':
         return _onServicesResetController.add(
           BmBluetoothDevice.fromMap(
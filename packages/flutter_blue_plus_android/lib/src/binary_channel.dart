@@ -0,0 +1,228 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+import 'dart:convert';
+import 'dart:typed_data';
+
+import 'package:flutter/services.dart';
+import 'package:flutter_blue_plus_platform_interface/flutter_blue_plus_platform_interface.dart';
+
+/// Characteristic writes & notifications on a raw binary channel,
+/// used when `androidBinaryChannel` is enabled.
+///
+/// Characteristics are referred to by handle, registered once per
+/// connection (see: GattHandles.java), instead of uuid maps. A handle is
+/// (device, generation, characteristic). The generation changes on
+/// disconnection & rediscovery, so frames of old handles are ignored.
+///
+/// Must match: BinaryChannel.java
+class BinaryChannel {
+  static const String name = 'flutter_blue_plus/binary';
+
+  static const int _headerLen = 14;
+
+  static const int _opWrite = 1;
+  static const int _opWriteNoResponse = 2;
+  static const int _opWritten = 3;
+  static const int _opNotify = 4;
+
+  static const int _flagAllowLongWrite = 0x01;
+
+  /// registers a characteristic, see: registerGattHandle. null: out of handles
+  final Future<Map<dynamic, dynamic>?> Function(Map<dynamic, dynamic> identity) _register;
+  final void Function(BmCharacteristicData) _onWritten;
+  final void Function(BmCharacteristicData) _onNotify;
+
+  bool _enabled = false;
+  int _seq = 0;
+
+  final Map<String, _GattHandle> _handles = {}; // by identity key
+  final Map<int, _GattHandle> _byIndex = {}; // see: _indexKey
+  final Map<int, Uint8List> _writes = {}; // by seq, until written
+
+  BinaryChannel(this._register, this._onWritten, this._onNotify);
+
+  bool get enabled => _enabled;
+
+  void setEnabled(bool enabled) {
+    _enabled = enabled;
+    ServicesBinding.instance.defaultBinaryMessenger.setMessageHandler(name, enabled ? _onMessage : null);
+    if (!enabled) {
+      clear();
+    }
+  }
+
+  /// returns false if the characteristic has no handle. Use the method channel instead
+  Future<bool> write(BmWriteCharacteristicRequest request) async {
+    final h = await _handle(
+      request.remoteId,
+      request.primaryServiceUuid,
+      request.serviceUuid,
+      request.characteristicUuid,
+      request.instanceId,
+    );
+    if (h == null) {
+      return false;
+    }
+
+    _seq = (_seq + 1) & 0xFFFFFFFF;
+    final seq = _seq;
+
+    final frame = Uint8List(_headerLen + request.value.length);
+    final header = ByteData.sublistView(frame, 0, _headerLen);
+    header.setUint8(0, request.writeType == BmWriteType.withResponse ? _opWrite : _opWriteNoResponse);
+    header.setUint8(1, request.allowLongWrite ? _flagAllowLongWrite : 0);
+    header.setUint16(2, h.device, Endian.little);
+    header.setUint16(4, h.generation, Endian.little);
+    header.setUint16(6, h.index, Endian.little);
+    header.setUint32(8, seq, Endian.little);
+    frame.setRange(_headerLen, frame.length, request.value);
+
+    // the value, for OnCharacteristicWritten
+    _writes[seq] = Uint8List.sublistView(frame, _headerLen);
+
+    final reply = await ServicesBinding.instance.defaultBinaryMessenger.send(name, ByteData.sublistView(frame));
+    if (reply == null || reply.lengthInBytes < _headerLen || reply.getUint16(12, Endian.little) != 0) {
+      _writes.remove(seq);
+      final message = reply == null ? "no reply" : utf8.decode(Uint8List.sublistView(reply, _headerLen));
+      throw PlatformException(code: "writeCharacteristic", message: message);
+    }
+    return true;
+  }
+
+  /// so that notifications use the binary channel
+  Future<void> register(BmSetNotifyValueRequest request) async {
+    await _handle(
+      request.remoteId,
+      request.primaryServiceUuid,
+      request.serviceUuid,
+      request.characteristicUuid,
+      request.instanceId,
+    );
+  }
+
+  /// disconnected, or services rediscovered. handles are invalid
+  void clearDevice(DeviceIdentifier remoteId) {
+    _handles.removeWhere((k, h) => h.remoteId == remoteId);
+    _byIndex.removeWhere((k, h) => h.remoteId == remoteId);
+  }
+
+  void clear() {
+    _handles.clear();
+    _byIndex.clear();
+    _writes.clear();
+  }
+
+  Future<_GattHandle?> _handle(
+    DeviceIdentifier remoteId,
+    Guid? primaryServiceUuid,
+    Guid serviceUuid,
+    Guid characteristicUuid,
+    int instanceId,
+  ) async {
+    final key = "$remoteId:${primaryServiceUuid ?? ""}:$serviceUuid:$characteristicUuid:$instanceId";
+    final cached = _handles[key];
+    if (cached != null) {
+      return cached;
+    }
+
+    final Map<dynamic, dynamic> identity = {};
+    identity['remote_id'] = remoteId.str;
+    identity['primary_service_uuid'] = primaryServiceUuid?.str;
+    identity['service_uuid'] = serviceUuid.str;
+    identity['characteristic_uuid'] = characteristicUuid.str;
+    identity['instance_id'] = instanceId;
+    identity.removeWhere((key, value) => value == null);
+
+    final response = await _register(identity);
+    if (response == null) {
+      return null;
+    }
+
+    final h = _GattHandle(
+      device: response['device'],
+      generation: response['generation'],
+      index: response['characteristic'],
+      remoteId: remoteId,
+      primaryServiceUuid: primaryServiceUuid,
+      serviceUuid: serviceUuid,
+      characteristicUuid: characteristicUuid,
+      instanceId: instanceId,
+    );
+    _handles[key] = h;
+    _byIndex[_indexKey(h.device, h.generation, h.index)] = h;
+    return h;
+  }
+
+  static int _indexKey(int device, int generation, int index) {
+    return (device << 32) | (generation << 16) | index;
+  }
+
+  Future<ByteData?> _onMessage(ByteData? message) async {
+    if (message == null || message.lengthInBytes < _headerLen) {
+      return null;
+    }
+    final op = message.getUint8(0);
+    final device = message.getUint16(2, Endian.little);
+    final generation = message.getUint16(4, Endian.little);
+    final index = message.getUint16(6, Endian.little);
+    final seq = message.getUint32(8, Endian.little);
+    final status = message.getUint16(12, Endian.little);
+    final payload = Uint8List.sublistView(message, _headerLen);
+
+    final h = _byIndex[_indexKey(device, generation, index)];
+
+    switch (op) {
+      case _opWritten:
+        final value = _writes.remove(seq) ?? Uint8List(0);
+        if (h != null) {
+          final error = status == 0 ? "GATT_SUCCESS" : utf8.decode(payload);
+          _onWritten(h.data(value, status, error));
+        }
+        break;
+      case _opNotify:
+        if (h != null) {
+          _onNotify(h.data(payload, 0, "GATT_SUCCESS"));
+        }
+        break;
+    }
+    return null;
+  }
+}
+
+class _GattHandle {
+  final int device;
+  final int generation;
+  final int index;
+  final DeviceIdentifier remoteId;
+  final Guid? primaryServiceUuid;
+  final Guid serviceUuid;
+  final Guid characteristicUuid;
+  final int instanceId;
+
+  _GattHandle({
+    required this.device,
+    required this.generation,
+    required this.index,
+    required this.remoteId,
+    required this.primaryServiceUuid,
+    required this.serviceUuid,
+    required this.characteristicUuid,
+    required this.instanceId,
+  });
+
+  BmCharacteristicData data(Uint8List value, int status, String error) {
+    return BmCharacteristicData(
+      remoteId: remoteId,
+      primaryServiceUuid: primaryServiceUuid,
+      serviceUuid: serviceUuid,
+      characteristicUuid: characteristicUuid,
+      instanceId: instanceId,
+      value: value,
+      success: status == 0,
+      errorCode: status,
+      errorString: error,
+    );
+  }
+}
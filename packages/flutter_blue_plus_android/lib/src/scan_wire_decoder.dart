@@ -0,0 +1,179 @@
+// Copyright 2017-2023, Charles Weinberger
+// All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+import 'dart:convert';
+import 'dart:typed_data';
+
+import 'package:flutter_blue_plus_platform_interface/flutter_blue_plus_platform_interface.dart';
+
+/// Decodes the packed scan batches sent when `androidBinaryScan` is enabled.
+///
+/// Must match: ScanWireEncoder.java
+class ScanWireDecoder {
+  static const int version = 1;
+
+  static const int _flagConnectable = 0x01;
+  static const int _flagTxPower = 0x02;
+  static const int _flagAppearance = 0x04;
+  static const int _flagPlatformName = 0x08;
+
+  static const int _headerLen = 3;
+  static const int _recordLen = 13;
+
+  static BmScanResponse decode(Uint8List bytes) {
+    if (bytes.length < _headerLen || bytes[0] != version) {
+      throw FormatException("unsupported scan batch version: ${bytes.isEmpty ? null : bytes[0]}");
+    }
+
+    final data = ByteData.sublistView(bytes);
+    final count = data.getUint16(1, Endian.little);
+
+    List<BmScanAdvertisement> advertisements = [];
+    int r = _headerLen;
+    for (int i = 0; i < count; i++) {
+      final rssi = data.getInt8(r + 6);
+      final flags = bytes[r + 7];
+      final txPower = data.getInt8(r + 8);
+      final appearance = data.getUint16(r + 9, Endian.little);
+      final advLen = data.getUint16(r + 11, Endian.little);
+      final adv = Uint8List.sublistView(bytes, r + _recordLen, r + _recordLen + advLen);
+
+      String? platformName;
+      int next = r + _recordLen + advLen;
+      if (flags & _flagPlatformName != 0) {
+        final nameLen = bytes[next];
+        platformName = utf8.decode(Uint8List.sublistView(bytes, next + 1, next + 1 + nameLen), allowMalformed: true);
+        next += 1 + nameLen;
+      }
+
+      advertisements.add(_decodeAdvertisement(
+        remoteId: _macStr(bytes, r),
+        platformName: platformName,
+        connectable: flags & _flagConnectable != 0,
+        rssi: rssi,
+        txPowerLevel: flags & _flagTxPower != 0 ? txPower : null,
+        appearance: flags & _flagAppearance != 0 ? appearance : null,
+        adv: adv,
+      ));
+
+      r = next;
+    }
+
+    return BmScanResponse(
+      advertisements: advertisements,
+      success: true,
+      errorCode: 0,
+      errorString: "",
+    );
+  }
+
+  // parses the raw AD structures, the same way as AdvParser.java
+  static BmScanAdvertisement _decodeAdvertisement({
+    required String remoteId,
+    required String? platformName,
+    required bool connectable,
+    required int rssi,
+    required int? txPowerLevel,
+    required int? appearance,
+    required Uint8List adv,
+  }) {
+    String? advName;
+    List<int> msd = [];
+    Map<Guid, List<int>> serviceData = {};
+    List<Guid> serviceUuids = [];
+
+    int n = 0;
+    while (n < adv.length) {
+      int fieldLen = adv[n];
+
+      // no more or malformed data
+      if (fieldLen <= 0) {
+        break;
+      }
+
+      // Ensuring we don't go past the bytes array
+      if (n + fieldLen >= adv.length) {
+        break;
+      }
+
+      int dataType = adv[n + 1];
+      int start = n + 2;
+      int end = n + 1 + fieldLen;
+
+      switch (dataType) {
+        case 0x02: // 16-bit service uuids
+        case 0x03:
+          _addUuids(serviceUuids, adv, start, end, 2);
+          break;
+        case 0x04: // 32-bit service uuids
+        case 0x05:
+          _addUuids(serviceUuids, adv, start, end, 4);
+          break;
+        case 0x06: // 128-bit service uuids
+        case 0x07:
+          _addUuids(serviceUuids, adv, start, end, 16);
+          break;
+        case 0x08: // shortened name
+        case 0x09: // complete name
+          advName = utf8.decode(Uint8List.sublistView(adv, start, end), allowMalformed: true);
+          break;
+        case 0x16: // 16-bit service data
+          _addServiceData(serviceData, adv, start, end, 2);
+          break;
+        case 0x20: // 32-bit service data
+          _addServiceData(serviceData, adv, start, end, 4);
+          break;
+        case 0x21: // 128-bit service data
+          _addServiceData(serviceData, adv, start, end, 16);
+          break;
+        case 0xFF: // manufacturer specific data. concatenated, like android
+          msd.addAll(Uint8List.sublistView(adv, start, end));
+          break;
+      }
+
+      n += fieldLen + 1;
+    }
+
+    Map<int, List<int>> manufacturerData = {};
+    if (msd.length >= 2) {
+      // manufacturer ID uses little-endian order.
+      manufacturerData[msd[0] | (msd[1] << 8)] = msd.sublist(2);
+    }
+
+    return BmScanAdvertisement(
+      remoteId: DeviceIdentifier(remoteId),
+      platformName: platformName,
+      advName: advName,
+      connectable: connectable,
+      txPowerLevel: txPowerLevel,
+      appearance: appearance,
+      manufacturerData: manufacturerData,
+      serviceData: serviceData,
+      serviceUuids: serviceUuids,
+      rssi: rssi,
+    );
+  }
+
+  static void _addUuids(List<Guid> out, Uint8List adv, int start, int end, int width) {
+    for (int i = start; i + width <= end; i += width) {
+      out.add(_guid(adv, i, width));
+    }
+  }
+
+  static void _addServiceData(Map<Guid, List<int>> out, Uint8List adv, int start, int end, int width) {
+    if (end - start < width) {
+      return;
+    }
+    out[_guid(adv, start, width)] = adv.sublist(start + width, end);
+  }
+
+  // AD uuids are little-endian. Guid bytes are big-endian
+  static Guid _guid(Uint8List adv, int offset, int width) {
+    return Guid.fromBytes(adv.sublist(offset, offset + width).reversed.toList());
+  }
+
+  static String _macStr(Uint8List bytes, int offset) {
+    return List.generate(6, (i) => bytes[offset + i].toRadixString(16).padLeft(2, '0')).join(':').toUpperCase();
+  }
+}
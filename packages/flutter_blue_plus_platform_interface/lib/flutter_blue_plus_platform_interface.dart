@@ -39,6 +39,10 @@ abstract base class FlutterBluePlusPlatform {
     return Stream.empty();
   }
 
+  Stream<BmBulkWriteProgress> get onBulkWriteProgress {
+    return Stream.empty();
+  }
+
   Stream<BmCharacteristicData> get onCharacteristicReceived {
     return Stream.empty();
   }
@@ -47,6 +51,10 @@ abstract base class FlutterBluePlusPlatform {
     return Stream.empty();
   }
 
+  Stream<BmReadCharacteristicsResult> get onCharacteristicsRead {
+    return Stream.empty();
+  }
+
   Stream<BmConnectionStateResponse> get onConnectionStateChanged {
     return Stream.empty();
   }
@@ -83,6 +91,10 @@ abstract base class FlutterBluePlusPlatform {
     return Stream.empty();
   }
 
+  Stream<BmScanResponse> get onBackgroundScanResponse {
+    return Stream.empty();
+  }
+
   Stream<BmBluetoothDevice> get onServicesReset {
     return Stream.empty();
   }
@@ -100,6 +112,13 @@ abstract base class FlutterBluePlusPlatform {
     print(s);
   }
 
+  /// stops a bulk write. It then reports its last progress. see: [writeBulk]
+  Future<bool> cancelBulkWrite(
+    BmCancelBulkWriteRequest request,
+  ) {
+    return Future.value(false);
+  }
+
   Future<bool> clearGattCache(
     BmClearGattCacheRequest request,
   ) {
@@ -183,6 +202,19 @@ abstract base class FlutterBluePlusPlatform {
     );
   }
 
+  Future<BmScanDevicesResponse> getScanDevices(
+    BmScanDevicesRequest request,
+  ) {
+    return Future.value(
+      BmScanDevicesResponse(
+        version: 0,
+        full: true,
+        devices: const [],
+        removed: const [],
+      ),
+    );
+  }
+
   Future<BmDevicesList> getSystemDevices(
     BmSystemDevicesRequest request,
   ) {
@@ -205,6 +237,13 @@ abstract base class FlutterBluePlusPlatform {
     return Future.value(false);
   }
 
+  /// reads many characteristics, answered together. see: [onCharacteristicsRead]
+  Future<bool> readCharacteristics(
+    BmReadCharacteristicsRequest request,
+  ) {
+    return Future.value(false);
+  }
+
   Future<bool> readDescriptor(
     BmReadDescriptorRequest request,
   ) {
@@ -247,6 +286,23 @@ abstract base class FlutterBluePlusPlatform {
     return Future.value(false);
   }
 
+  /// like [setNotifyValue], and when enabling, also opens a dedicated stream
+  /// for the values of the characteristic. see: [notifyStream]
+  Future<BmNotifyStream> setNotifyValueStream(
+    BmSetNotifyValueRequest request,
+  ) async {
+    return BmNotifyStream(
+      hasCccd: await setNotifyValue(request),
+      handle: null,
+    );
+  }
+
+  Stream<BmNotifyValue> notifyStream(
+    int handle,
+  ) {
+    return Stream.empty();
+  }
+
   Future<bool> setOptions(
     BmSetOptionsRequest request,
   ) {
@@ -271,6 +327,24 @@ abstract base class FlutterBluePlusPlatform {
     return Future.value(false);
   }
 
+  Future<bool> startBackgroundScan(
+    BmScanSettings request,
+  ) {
+    return Future.value(false);
+  }
+
+  Future<bool> stopBackgroundScan(
+    BmStopScanRequest request,
+  ) {
+    return Future.value(false);
+  }
+
+  Future<bool> flushBackgroundScan(
+    BmFlushBackgroundScanRequest request,
+  ) {
+    return Future.value(false);
+  }
+
   Future<bool> turnOff(
     BmTurnOffRequest request,
   ) {
@@ -283,6 +357,13 @@ abstract base class FlutterBluePlusPlatform {
     return Future.value(false);
   }
 
+  /// writes a large value in chunks, without response. see: [onBulkWriteProgress]
+  Future<bool> writeBulk(
+    BmWriteBulkRequest request,
+  ) {
+    return Future.value(false);
+  }
+
   Future<bool> writeCharacteristic(
     BmWriteCharacteristicRequest request,
   ) {
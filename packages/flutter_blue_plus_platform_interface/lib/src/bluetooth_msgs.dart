@@ -54,6 +54,26 @@ class BmMsdFilter {
   }
 }
 
+class BmBeaconFilter {
+  int? type; // see: BmBeacon.type
+  Guid? uuid;
+  int? major;
+  int? minor;
+  List<int>? namespace;
+  List<int>? instance;
+  BmBeaconFilter(this.type, this.uuid, this.major, this.minor, this.namespace, this.instance);
+  Map<dynamic, dynamic> toMap() {
+    final Map<dynamic, dynamic> map = {};
+    map['type'] = type;
+    map['uuid'] = uuid?.str128;
+    map['major'] = major;
+    map['minor'] = minor;
+    map['namespace'] = namespace != null ? Uint8List.fromList(namespace!) : null;
+    map['instance'] = instance != null ? Uint8List.fromList(instance!) : null;
+    return map;
+  }
+}
+
 class BmServiceDataFilter {
   Guid service;
   List<int> data;
@@ -81,6 +101,24 @@ class BmScanSettings {
   final int androidScanMode;
   final bool androidUsesFineLocation;
   final bool androidCheckLocationServices;
+  final int androidReportDelay;
+  final int androidCoalesceWindow;
+  final int androidCoalesceMaxSize;
+  final int androidScanStateCapacity;
+  final int androidScanStateTtl;
+  final bool androidBinaryScan;
+  final bool androidKeywordsIgnoreCase;
+  final int androidMaxHwFilters;
+  final int androidRssiDelta;
+  final int androidHeartbeat;
+  final int androidRateLimitInterval;
+  final int androidRateLimitBurst;
+  final bool androidDeviceTable;
+  final String? androidTracePath;
+  final bool androidPeriodicOnly;
+  final bool androidBeacons;
+  final bool androidBeaconCompact;
+  final List<BmBeaconFilter> androidWithBeacons;
   final List<Guid> webOptionalServices;
 
   BmScanSettings({
@@ -96,6 +134,24 @@ class BmScanSettings {
     required this.androidScanMode,
     required this.androidUsesFineLocation,
     this.androidCheckLocationServices = true,
+    this.androidReportDelay = 0,
+    this.androidCoalesceWindow = 0,
+    this.androidCoalesceMaxSize = 100,
+    this.androidScanStateCapacity = 2048,
+    this.androidScanStateTtl = 0,
+    this.androidBinaryScan = false,
+    this.androidKeywordsIgnoreCase = false,
+    this.androidMaxHwFilters = 0,
+    this.androidRssiDelta = 0,
+    this.androidHeartbeat = 0,
+    this.androidRateLimitInterval = 0,
+    this.androidRateLimitBurst = 1,
+    this.androidDeviceTable = false,
+    this.androidTracePath,
+    this.androidPeriodicOnly = false,
+    this.androidBeacons = false,
+    this.androidBeaconCompact = false,
+    this.androidWithBeacons = const [],
     required this.webOptionalServices,
   });
 
@@ -113,6 +169,24 @@ class BmScanSettings {
     data['android_scan_mode'] = androidScanMode;
     data['android_uses_fine_location'] = androidUsesFineLocation;
     data['android_check_location_services'] = androidCheckLocationServices;
+    data['android_report_delay'] = androidReportDelay;
+    data['android_coalesce_window'] = androidCoalesceWindow;
+    data['android_coalesce_max_size'] = androidCoalesceMaxSize;
+    data['android_scan_state_capacity'] = androidScanStateCapacity;
+    data['android_scan_state_ttl'] = androidScanStateTtl;
+    data['android_binary_scan'] = androidBinaryScan;
+    data['android_keywords_ignore_case'] = androidKeywordsIgnoreCase;
+    data['android_max_hw_filters'] = androidMaxHwFilters;
+    data['android_rssi_delta'] = androidRssiDelta;
+    data['android_heartbeat'] = androidHeartbeat;
+    data['android_rate_limit_interval'] = androidRateLimitInterval;
+    data['android_rate_limit_burst'] = androidRateLimitBurst;
+    data['android_device_table'] = androidDeviceTable;
+    data['android_trace_path'] = androidTracePath;
+    data['android_periodic_only'] = androidPeriodicOnly;
+    data['android_beacons'] = androidBeacons;
+    data['android_beacon_compact'] = androidBeaconCompact;
+    data['android_with_beacons'] = androidWithBeacons.map((d) => d.toMap()).toList();
     data['web_optional_services'] = webOptionalServices.map((s) => s.str).toList();
     return data;
   }
@@ -122,6 +196,140 @@ class BmStopScanRequest {
   BmStopScanRequest();
 }
 
+class BmFlushBackgroundScanRequest {
+  BmFlushBackgroundScanRequest();
+}
+
+class BmScanDevicesRequest {
+  final int since;
+
+  BmScanDevicesRequest({required this.since});
+
+  Map<dynamic, dynamic> toMap() {
+    final Map<dynamic, dynamic> data = {};
+    data['since'] = since;
+    return data;
+  }
+}
+
+class BmScanDevice {
+  final BmScanAdvertisement advertisement;
+  final DateTime firstSeen;
+  final DateTime lastSeen;
+  final int packets;
+  final int rssiMin;
+  final int rssiMax;
+  final int rssiAvg;
+
+  BmScanDevice({
+    required this.advertisement,
+    required this.firstSeen,
+    required this.lastSeen,
+    required this.packets,
+    required this.rssiMin,
+    required this.rssiMax,
+    required this.rssiAvg,
+  });
+
+  factory BmScanDevice.fromMap(Map<dynamic, dynamic> json) {
+    return BmScanDevice(
+      advertisement: BmScanAdvertisement.fromMap(json['advertisement']),
+      firstSeen: DateTime.fromMillisecondsSinceEpoch(json['first_seen']),
+      lastSeen: DateTime.fromMillisecondsSinceEpoch(json['last_seen']),
+      packets: json['packets'],
+      rssiMin: json['rssi_min'],
+      rssiMax: json['rssi_max'],
+      rssiAvg: json['rssi_avg'],
+    );
+  }
+}
+
+class BmScanDevicesResponse {
+  final int version;
+  final bool full;
+  final List<BmScanDevice> devices;
+  final List<DeviceIdentifier> removed;
+
+  BmScanDevicesResponse({
+    required this.version,
+    required this.full,
+    required this.devices,
+    required this.removed,
+  });
+
+  factory BmScanDevicesResponse.fromMap(Map<dynamic, dynamic> json) {
+    List<BmScanDevice> devices = [];
+    for (var item in json['devices']) {
+      devices.add(BmScanDevice.fromMap(item));
+    }
+
+    List<DeviceIdentifier> removed = [];
+    for (var item in json['removed']) {
+      removed.add(DeviceIdentifier(item));
+    }
+
+    return BmScanDevicesResponse(
+      version: json['version'],
+      full: json['full'] != 0,
+      devices: devices,
+      removed: removed,
+    );
+  }
+}
+
+class BmBeacon {
+  final int type; // 0: iBeacon, 1: AltBeacon, 2: Eddystone UID, 3: Eddystone URL, 4: Eddystone TLM
+  final Guid? uuid;
+  final int? major;
+  final int? minor;
+  final int? measuredPower;
+  final int? manufacturerId; // AltBeacon
+  final int? reserved; // AltBeacon
+  final List<int>? namespace;
+  final List<int>? instance;
+  final String? url;
+  final int? batteryMv;
+  final double? temperature;
+  final int? advCount;
+  final int? uptime; // milliseconds
+
+  BmBeacon({
+    required this.type,
+    this.uuid,
+    this.major,
+    this.minor,
+    this.measuredPower,
+    this.manufacturerId,
+    this.reserved,
+    this.namespace,
+    this.instance,
+    this.url,
+    this.batteryMv,
+    this.temperature,
+    this.advCount,
+    this.uptime,
+  });
+
+  factory BmBeacon.fromMap(Map<dynamic, dynamic> json) {
+    return BmBeacon(
+      type: json['type'],
+      uuid: json['uuid'] != null ? Guid(json['uuid']) : null,
+      major: json['major'],
+      minor: json['minor'],
+      measuredPower: json['measured_power'],
+      manufacturerId: json['manufacturer_id'],
+      reserved: json['reserved'],
+      namespace: json['namespace'],
+      instance: json['instance'],
+      url: json['url'],
+      batteryMv: json['battery_mv'],
+      temperature: json['temperature'],
+      advCount: json['adv_count'],
+      uptime: json['uptime'],
+    );
+  }
+}
+
 class BmScanAdvertisement {
   final DeviceIdentifier remoteId;
   final String? platformName;
@@ -133,6 +341,12 @@ class BmScanAdvertisement {
   final Map<Guid, List<int>> serviceData;
   final List<Guid> serviceUuids;
   final int rssi;
+  final DateTime? timestamp; // when received, if not just now (e.g. background scans)
+  final int? advSid; // android only, extended advertising
+  final int? periodicInterval; // android only, units of 1.25ms
+  final int? primaryPhy; // android only
+  final int? secondaryPhy; // android only
+  final BmBeacon? beacon; // android only
 
   BmScanAdvertisement({
     required this.remoteId,
@@ -145,6 +359,12 @@ class BmScanAdvertisement {
     required this.serviceData,
     required this.serviceUuids,
     required this.rssi,
+    this.timestamp,
+    this.advSid,
+    this.periodicInterval,
+    this.primaryPhy,
+    this.secondaryPhy,
+    this.beacon,
   });
 
   factory BmScanAdvertisement.fromMap(Map<dynamic, dynamic> json) {
@@ -178,6 +398,12 @@ class BmScanAdvertisement {
       serviceData: serviceData,
       serviceUuids: serviceUuids,
       rssi: json['rssi'] ?? 0,
+      timestamp: json['timestamp'] != null ? DateTime.fromMillisecondsSinceEpoch(json['timestamp']) : null,
+      advSid: json['adv_sid'],
+      periodicInterval: json['periodic_interval'],
+      primaryPhy: json['primary_phy'],
+      secondaryPhy: json['secondary_phy'],
+      beacon: json['beacon'] != null ? BmBeacon.fromMap(json['beacon']) : null,
     );
   }
 }
@@ -471,6 +697,46 @@ class BmReadCharacteristicRequest {
   }
 }
 
+class BmReadCharacteristicsRequest {
+  final DeviceIdentifier remoteId;
+  final int requestId; // echoed in the result
+  final List<BmReadCharacteristicRequest> characteristics;
+
+  BmReadCharacteristicsRequest({
+    required this.remoteId,
+    required this.requestId,
+    required this.characteristics,
+  });
+
+  Map<dynamic, dynamic> toMap() {
+    final Map<dynamic, dynamic> data = {};
+    data['remote_id'] = remoteId.str;
+    data['request_id'] = requestId;
+    data['characteristics'] = characteristics.map((c) => c.toMap()).toList();
+    return data;
+  }
+}
+
+class BmReadCharacteristicsResult {
+  final DeviceIdentifier remoteId;
+  final int requestId;
+  final List<BmCharacteristicData> values; // in request order
+
+  BmReadCharacteristicsResult({
+    required this.remoteId,
+    required this.requestId,
+    required this.values,
+  });
+
+  factory BmReadCharacteristicsResult.fromMap(Map<dynamic, dynamic> json) {
+    return BmReadCharacteristicsResult(
+      remoteId: DeviceIdentifier(json['remote_id']),
+      requestId: json['request_id'],
+      values: (json['values'] as List<dynamic>).map((v) => BmCharacteristicData.fromMap(v)).toList(),
+    );
+  }
+}
+
 class BmCharacteristicData {
   final DeviceIdentifier remoteId;
   final Guid serviceUuid;
@@ -580,6 +846,110 @@ class BmWriteCharacteristicRequest {
   }
 }
 
+class BmWriteBulkRequest {
+  final DeviceIdentifier remoteId;
+  final Guid? primaryServiceUuid;
+  final Guid serviceUuid;
+  final Guid characteristicUuid;
+  final int instanceId;
+  final List<int> value;
+
+  BmWriteBulkRequest({
+    required this.remoteId,
+    required this.primaryServiceUuid,
+    required this.serviceUuid,
+    required this.characteristicUuid,
+    required this.instanceId,
+    required this.value,
+  });
+
+  Map<dynamic, dynamic> toMap() {
+    final Map<dynamic, dynamic> data = {};
+    data['remote_id'] = remoteId.str;
+    data['primary_service_uuid'] = primaryServiceUuid?.str;
+    data['service_uuid'] = serviceUuid.str;
+    data['characteristic_uuid'] = characteristicUuid.str;
+    data['instance_id'] = instanceId;
+    data['value'] = Uint8List.fromList(value);
+    data.removeWhere((key, value) => value == null);
+    return data;
+  }
+}
+
+class BmCancelBulkWriteRequest {
+  final DeviceIdentifier remoteId;
+  final Guid? primaryServiceUuid;
+  final Guid serviceUuid;
+  final Guid characteristicUuid;
+  final int instanceId;
+
+  BmCancelBulkWriteRequest({
+    required this.remoteId,
+    required this.primaryServiceUuid,
+    required this.serviceUuid,
+    required this.characteristicUuid,
+    required this.instanceId,
+  });
+
+  Map<dynamic, dynamic> toMap() {
+    final Map<dynamic, dynamic> data = {};
+    data['remote_id'] = remoteId.str;
+    data['primary_service_uuid'] = primaryServiceUuid?.str;
+    data['service_uuid'] = serviceUuid.str;
+    data['characteristic_uuid'] = characteristicUuid.str;
+    data['instance_id'] = instanceId;
+    data.removeWhere((key, value) => value == null);
+    return data;
+  }
+}
+
+class BmBulkWriteProgress {
+  final DeviceIdentifier remoteId;
+  final Guid serviceUuid;
+  final Guid? primaryServiceUuid;
+  final Guid characteristicUuid;
+  final int instanceId;
+  final int bytesWritten;
+  final int totalBytes;
+  final double bytesPerSecond;
+  final bool done;
+  final bool success;
+  final int errorCode;
+  final String errorString;
+
+  BmBulkWriteProgress({
+    required this.remoteId,
+    required this.primaryServiceUuid,
+    required this.serviceUuid,
+    required this.characteristicUuid,
+    required this.instanceId,
+    required this.bytesWritten,
+    required this.totalBytes,
+    required this.bytesPerSecond,
+    required this.done,
+    required this.success,
+    required this.errorCode,
+    required this.errorString,
+  });
+
+  factory BmBulkWriteProgress.fromMap(Map<dynamic, dynamic> json) {
+    return BmBulkWriteProgress(
+      remoteId: DeviceIdentifier(json['remote_id']),
+      primaryServiceUuid: Guid.parse(json['primary_service_uuid']),
+      serviceUuid: Guid(json['service_uuid']),
+      characteristicUuid: Guid(json['characteristic_uuid']),
+      instanceId: json['instance_id'],
+      bytesWritten: json['bytes_written'],
+      totalBytes: json['total_bytes'],
+      bytesPerSecond: json['bytes_per_second'],
+      done: json['done'] != 0,
+      success: json['success'] != 0,
+      errorCode: json['error_code'],
+      errorString: json['error_string'],
+    );
+  }
+}
+
 class BmWriteDescriptorRequest {
   final DeviceIdentifier remoteId;
   final Guid? primaryServiceUuid;
@@ -687,6 +1057,43 @@ class BmSetNotifyValueRequest {
   }
 }
 
+// see: setNotifyValueStream
+class BmNotifyStream {
+  final bool hasCccd;
+  final int? handle; // null: not streamed, values arrive as OnCharacteristicReceived
+
+  BmNotifyStream({
+    required this.hasCccd,
+    required this.handle,
+  });
+
+  factory BmNotifyStream.fromMap(Map<dynamic, dynamic> json) {
+    return BmNotifyStream(
+      hasCccd: json['has_cccd'] != 0,
+      handle: json['handle'],
+    );
+  }
+}
+
+// a value received on a notify stream
+class BmNotifyValue {
+  final int timestamp; // microseconds since epoch
+  final Uint8List value;
+
+  BmNotifyValue({
+    required this.timestamp,
+    required this.value,
+  });
+
+  // [0..7] timestamp (int64, little-endian), [8..] value
+  factory BmNotifyValue.fromBytes(Uint8List bytes) {
+    return BmNotifyValue(
+      timestamp: ByteData.sublistView(bytes, 0, 8).getInt64(0, Endian.little),
+      value: Uint8List.sublistView(bytes, 8),
+    );
+  }
+}
+
 enum BmConnectionStateEnum {
   disconnected, // 0
   connected, // 1
@@ -974,10 +1381,12 @@ class BmSetLogLevelRequest {
 class BmSetOptionsRequest {
   bool? showPowerAlert;
   bool? restoreState;
+  bool? androidBinaryChannel;
 
   BmSetOptionsRequest({
     this.showPowerAlert,
     this.restoreState,
+    this.androidBinaryChannel,
   });
 
   Map<dynamic, dynamic> toMap() {
@@ -988,6 +1397,9 @@ class BmSetOptionsRequest {
     if (restoreState != null) {
       data['restore_state'] = restoreState;
     }
+    if (androidBinaryChannel != null) {
+      data['android_binary_channel'] = androidBinaryChannel;
+    }
     return data;
   }
 }